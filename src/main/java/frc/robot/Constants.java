@@ -37,6 +37,34 @@ public final class MotorConstants{
   public static final int RIGHT_ELEVATOR_MOTOR_ID = 12;
 }
 
+  public static final class ElevatorConstants
+  {
+
+    // Carriage and everything riding on it, used for tipping limits
+    public static final double CARRIAGE_MASS        = Units.lbsToKilograms(15);
+    // Carriage center of mass relative to the robot center when the elevator is fully down
+    public static final double CARRIAGE_X           = 0;
+    public static final double CARRIAGE_Y           = 0;
+    public static final double CARRIAGE_BASE_HEIGHT = Units.inchesToMeters(12);
+    public static final double MIN_HEIGHT           = 0;
+    public static final double MAX_HEIGHT           = Units.inchesToMeters(60);
+    // Carriage travel per motor rotation
+    public static final double METERS_PER_ROTATION  = Units.inchesToMeters(1);
+  }
+
+  public static final class VisionConstants
+  {
+
+    // Simulate vision geometrically without rendering camera streams, set HEADLESS_VISION_SIM=true for fast sim runs
+    public static final boolean HEADLESS_SIM           = Boolean.parseBoolean(System.getenv("HEADLESS_VISION_SIM"));
+    // Simulated camera frame rate and latency model
+    public static final double  SIM_FPS                = 30;
+    public static final double  SIM_LATENCY_MS         = 35;
+    public static final double  SIM_LATENCY_STD_DEV_MS = 5;
+    // 95th percentile of capture to pose estimator latency which raises a camera's latency alert
+    public static final double  LATENCY_ALERT_MS       = 100;
+  }
+
   public static final class DrivebaseConstants
   {
 
@@ -5,10 +5,14 @@ import com.ctre.phoenix6.hardware.TalonFX;
 import com.ctre.phoenix6.signals.NeutralModeValue;
 
 import frc.robot.Constants;
+import frc.robot.Constants.ElevatorConstants;
+import edu.wpi.first.math.geometry.Translation3d;
 import edu.wpi.first.math.util.Units;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import swervelib.math.MassProvider;
+import swervelib.math.Matter;
 
-public class Elevator extends SubsystemBase {
+public class Elevator extends SubsystemBase implements MassProvider {
     TalonFX elevatorMotor_1 = new TalonFX(Constants.MotorConstants.LEFT_ELEVATOR_MOTOR_ID);
     TalonFX elevatorMotor_2 = new TalonFX(Constants.MotorConstants.RIGHT_ELEVATOR_MOTOR_ID);
     TalonFXConfiguration elevatorConfig = new TalonFXConfiguration();
@@ -25,5 +29,37 @@ public class Elevator extends SubsystemBase {
         elevatorMotor_1.getConfigurator().apply(elevatorConfig);
         elevatorMotor_2.getConfigurator().apply(elevatorConfig);
     }
+
+    /**
+     * Get the height of the carriage above its lowest position.
+     *
+     * @return Carriage height in meters.
+     */
+    public double getHeightMeters() {
+        return elevatorMotor_1.getPosition().getValueAsDouble() * ElevatorConstants.METERS_PER_ROTATION;
+    }
+
+    @Override
+    public double getPosition() {
+        return getHeightMeters();
+    }
+
+    @Override
+    public double getMinPosition() {
+        return ElevatorConstants.MIN_HEIGHT;
+    }
+
+    @Override
+    public double getMaxPosition() {
+        return ElevatorConstants.MAX_HEIGHT;
+    }
+
+    @Override
+    public Matter getMatter(double position) {
+        return new Matter(new Translation3d(ElevatorConstants.CARRIAGE_X,
+                                            ElevatorConstants.CARRIAGE_Y,
+                                            ElevatorConstants.CARRIAGE_BASE_HEIGHT + position),
+                          ElevatorConstants.CARRIAGE_MASS);
+    }
     
 }
@@ -0,0 +1,177 @@
+package frc.robot.subsystems.swervedrive;
+
+import edu.wpi.first.apriltag.AprilTag;
+import edu.wpi.first.apriltag.AprilTagFieldLayout;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Pose3d;
+
+/**
+ * AprilTag poses from an {@link AprilTagFieldLayout} in arrays indexed by fiducial ID, so lookups are array reads
+ * instead of searching the layout and allocating an {@link java.util.Optional} and 2D pose for every target.
+ */
+public class AprilTagTable
+{
+
+  /**
+   * Tag x positions in meters.
+   */
+  private final double[]  x;
+  /**
+   * Tag y positions in meters.
+   */
+  private final double[]  y;
+  /**
+   * Tag z positions in meters.
+   */
+  private final double[]  z;
+  /**
+   * Tag yaw in radians.
+   */
+  private final double[]  yaw;
+  /**
+   * Tag poses, null for IDs which are not on the field.
+   */
+  private final Pose3d[]  poses3d;
+  /**
+   * Tag poses projected onto the floor, null for IDs which are not on the field.
+   */
+  private final Pose2d[]  poses2d;
+  /**
+   * Whether each ID is on the field.
+   */
+  private final boolean[] present;
+
+  /**
+   * Build the table.
+   *
+   * @param layout Field layout to read the tags from.
+   */
+  public AprilTagTable(AprilTagFieldLayout layout)
+  {
+    int maxId = 0;
+    for (AprilTag tag : layout.getTags())
+    {
+      maxId = Math.max(maxId, tag.ID);
+    }
+    x = new double[maxId + 1];
+    y = new double[maxId + 1];
+    z = new double[maxId + 1];
+    yaw = new double[maxId + 1];
+    poses3d = new Pose3d[maxId + 1];
+    poses2d = new Pose2d[maxId + 1];
+    present = new boolean[maxId + 1];
+    for (AprilTag tag : layout.getTags())
+    {
+      // Use the layout lookup so the layout origin is applied.
+      layout.getTagPose(tag.ID).ifPresent(pose -> {
+        x[tag.ID] = pose.getX();
+        y[tag.ID] = pose.getY();
+        z[tag.ID] = pose.getZ();
+        yaw[tag.ID] = pose.getRotation().getZ();
+        poses3d[tag.ID] = pose;
+        poses2d[tag.ID] = pose.toPose2d();
+        present[tag.ID] = true;
+      });
+    }
+  }
+
+  /**
+   * Whether a tag is on the field.
+   *
+   * @param id Fiducial ID.
+   * @return True if the layout has the tag.
+   */
+  public boolean contains(int id)
+  {
+    return id >= 0 && id < present.length && present[id];
+  }
+
+  /**
+   * Get the largest fiducial ID the table can hold.
+   *
+   * @return Largest ID in the layout.
+   */
+  public int getMaxId()
+  {
+    return present.length - 1;
+  }
+
+  /**
+   * Get the x position of a tag, check {@link AprilTagTable#contains(int)} first.
+   *
+   * @param id Fiducial ID.
+   * @return X position in meters.
+   */
+  public double getX(int id)
+  {
+    return x[id];
+  }
+
+  /**
+   * Get the y position of a tag, check {@link AprilTagTable#contains(int)} first.
+   *
+   * @param id Fiducial ID.
+   * @return Y position in meters.
+   */
+  public double getY(int id)
+  {
+    return y[id];
+  }
+
+  /**
+   * Get the z position of a tag, check {@link AprilTagTable#contains(int)} first.
+   *
+   * @param id Fiducial ID.
+   * @return Z position in meters.
+   */
+  public double getZ(int id)
+  {
+    return z[id];
+  }
+
+  /**
+   * Get the yaw of a tag, check {@link AprilTagTable#contains(int)} first.
+   *
+   * @param id Fiducial ID.
+   * @return Yaw in radians.
+   */
+  public double getYaw(int id)
+  {
+    return yaw[id];
+  }
+
+  /**
+   * Get the pose of a tag.
+   *
+   * @param id Fiducial ID.
+   * @return {@link Pose3d} of the tag, null if it is not on the field.
+   */
+  public Pose3d getPose3d(int id)
+  {
+    return contains(id) ? poses3d[id] : null;
+  }
+
+  /**
+   * Get the pose of a tag projected onto the floor.
+   *
+   * @param id Fiducial ID.
+   * @return {@link Pose2d} of the tag, null if it is not on the field.
+   */
+  public Pose2d getPose2d(int id)
+  {
+    return contains(id) ? poses2d[id] : null;
+  }
+
+  /**
+   * Get the distance on the floor from a point to a tag, check {@link AprilTagTable#contains(int)} first.
+   *
+   * @param id    Fiducial ID.
+   * @param fromX X position in meters.
+   * @param fromY Y position in meters.
+   * @return Distance in meters.
+   */
+  public double getDistance(int id, double fromX, double fromY)
+  {
+    return Math.hypot(x[id] - fromX, y[id] - fromY);
+  }
+}
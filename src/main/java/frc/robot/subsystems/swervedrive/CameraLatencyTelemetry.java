@@ -0,0 +1,321 @@
+package frc.robot.subsystems.swervedrive;
+
+import edu.wpi.first.networktables.DoubleArrayPublisher;
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.IntegerArrayPublisher;
+import edu.wpi.first.networktables.IntegerPublisher;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.wpilibj.Alert;
+import java.util.Arrays;
+import org.photonvision.targeting.PhotonPipelineResult;
+
+/**
+ * Latency, frame rate, dropped frame and multi-tag telemetry of one camera. Every result is followed from capture
+ * through processing on the coprocessor, transport to and ingestion by the robot, pose solve and application to the
+ * pose estimator, and the time of each stage goes into a histogram. Once a second the histograms are published with
+ * their mean, median, 95th percentile and maximum and reset, and the camera's latency alert is raised while the 95th
+ * percentile of the total latency is over the threshold. Samples may be recorded from any thread, publishing and the
+ * alert only happen in {@link CameraLatencyTelemetry#update(long)} since {@link Alert} is not thread safe. All
+ * timestamps are in microseconds of the NT time base.
+ */
+public class CameraLatencyTelemetry
+{
+
+  /**
+   * Capture to publish, the coprocessor pipeline latency from the result metadata.
+   */
+  public static final  int                     PROCESSING       = 0;
+  /**
+   * Publish to ingestion, the network transport and the wait until the robot reads the result.
+   */
+  public static final  int                     TRANSPORT        = 1;
+  /**
+   * Ingestion to pose solved.
+   */
+  public static final  int                     SOLVE            = 2;
+  /**
+   * Pose solved to applied to the pose estimator.
+   */
+  public static final  int                     APPLY            = 3;
+  /**
+   * Capture to applied to the pose estimator.
+   */
+  public static final  int                     TOTAL            = 4;
+  /**
+   * Stage names used for the topics.
+   */
+  private static final String[]                STAGE_NAMES      = {"processing", "transport", "solve", "apply", "total"};
+  /**
+   * Histogram bin width in milliseconds.
+   */
+  private static final double                  BIN_MS           = 5;
+  /**
+   * Number of histogram bins, the last bin holds everything past the others.
+   */
+  private static final int                     BINS             = 41;
+  /**
+   * Microseconds between publishes.
+   */
+  private static final long                    PUBLISH_PERIOD   = 1_000_000;
+  /**
+   * Histogram counts per stage.
+   */
+  private final        long[][]                histograms       = new long[STAGE_NAMES.length][BINS];
+  /**
+   * Sum of each stage in milliseconds.
+   */
+  private final        double[]                sums             = new double[STAGE_NAMES.length];
+  /**
+   * Longest time of each stage in milliseconds.
+   */
+  private final        double[]                maximums         = new double[STAGE_NAMES.length];
+  /**
+   * Number of samples of each stage.
+   */
+  private final        long[]                  counts           = new long[STAGE_NAMES.length];
+  /**
+   * Summary scratch buffer for publishing, [mean, median, 95th percentile, max].
+   */
+  private final        double[]                summary          = new double[4];
+  /**
+   * Summary publisher of each stage.
+   */
+  private final        DoubleArrayPublisher[]  summaryPublishers;
+  /**
+   * Histogram publisher of each stage.
+   */
+  private final        IntegerArrayPublisher[] histogramPublishers;
+  /**
+   * Frame rate publisher.
+   */
+  private final        DoublePublisher         frameRatePublisher;
+  /**
+   * Dropped frame publisher.
+   */
+  private final        IntegerPublisher        droppedFramesPublisher;
+  /**
+   * Multi-tag ratio publisher.
+   */
+  private final        DoublePublisher         multiTagRatioPublisher;
+  /**
+   * Alert raised on high latency.
+   */
+  private final        Alert                   latencyAlert;
+  /**
+   * 95th percentile of the total latency in milliseconds which raises the alert.
+   */
+  private final        double                  alertThresholdMs;
+  /**
+   * Start of the current publish window.
+   */
+  private              long                    windowStart      = 0;
+  /**
+   * Frames received in the current publish window.
+   */
+  private              long                    frames           = 0;
+  /**
+   * Frames with targets in the current publish window.
+   */
+  private              long                    targetFrames     = 0;
+  /**
+   * Frames with a multi-tag result in the current publish window.
+   */
+  private              long                    multiTagFrames   = 0;
+  /**
+   * Frames missing from the sequence IDs since startup.
+   */
+  private              long                    droppedFrames    = 0;
+  /**
+   * Sequence ID of the last frame, -1 before the first.
+   */
+  private              long                    lastSequence     = -1;
+  /**
+   * Ingestion time of the last frame, 0 before the first.
+   */
+  private              long                    lastIngestMicros = 0;
+
+  /**
+   * Create the telemetry.
+   *
+   * @param cameraName       Camera name used for the topics.
+   * @param latencyAlert     Alert raised on high latency.
+   * @param alertThresholdMs 95th percentile of the total latency in milliseconds which raises the alert.
+   */
+  public CameraLatencyTelemetry(String cameraName, Alert latencyAlert, double alertThresholdMs)
+  {
+    this.latencyAlert = latencyAlert;
+    this.alertThresholdMs = alertThresholdMs;
+    NetworkTable table  = NetworkTableInstance.getDefault().getTable("SmartDashboard");
+    String       prefix = "vision/" + cameraName + "/";
+    summaryPublishers = new DoubleArrayPublisher[STAGE_NAMES.length];
+    histogramPublishers = new IntegerArrayPublisher[STAGE_NAMES.length];
+    for (int stage = 0; stage < STAGE_NAMES.length; stage++)
+    {
+      summaryPublishers[stage] = table.getDoubleArrayTopic(prefix + STAGE_NAMES[stage] + "Ms").publish();
+      histogramPublishers[stage] = table.getIntegerArrayTopic(prefix + STAGE_NAMES[stage] + "Histogram").publish();
+    }
+    frameRatePublisher = table.getDoubleTopic(prefix + "frameRate").publish();
+    droppedFramesPublisher = table.getIntegerTopic(prefix + "droppedFrames").publish();
+    multiTagRatioPublisher = table.getDoubleTopic(prefix + "multiTagRatio").publish();
+  }
+
+  /**
+   * Record a result read from the camera. PhotonLib places the capture time at the NT receive time minus the
+   * coprocessor's publish to capture delta, so the publish time is recovered by adding that delta back.
+   *
+   * @param result       Camera result.
+   * @param ingestMicros Time the result was read.
+   */
+  public synchronized void ingested(PhotonPipelineResult result, long ingestMicros)
+  {
+    long processingMicros = result.metadata.getPublishTimestampMicros() - result.metadata.getCaptureTimestampMicros();
+    long captureMicros    = (long) (result.getTimestampSeconds() * 1e6);
+    add(PROCESSING, processingMicros);
+    add(TRANSPORT, ingestMicros - captureMicros - processingMicros);
+    lastIngestMicros = ingestMicros;
+
+    long sequence = result.metadata.getSequenceID();
+    if (lastSequence >= 0 && sequence > lastSequence + 1)
+    {
+      droppedFrames += sequence - lastSequence - 1;
+    }
+    // A lower sequence ID means the coprocessor restarted, count from it.
+    lastSequence = sequence;
+    frames++;
+    if (result.hasTargets())
+    {
+      targetFrames++;
+      if (result.getMultiTagResult().isPresent())
+      {
+        multiTagFrames++;
+      }
+    }
+  }
+
+  /**
+   * Record a pose solved from the last result read.
+   *
+   * @param solvedMicros Time the pose was solved.
+   */
+  public synchronized void solved(long solvedMicros)
+  {
+    if (lastIngestMicros > 0)
+    {
+      add(SOLVE, solvedMicros - lastIngestMicros);
+    }
+  }
+
+  /**
+   * Record a measurement from a result applied to the pose estimator. Only call it for measurements the pose estimator
+   * took, not ones dropped by the gate.
+   *
+   * @param result        Camera result.
+   * @param solvedMicros  Time the pose was solved.
+   * @param appliedMicros Time the measurement was applied.
+   */
+  public synchronized void applied(PhotonPipelineResult result, long solvedMicros, long appliedMicros)
+  {
+    add(APPLY, appliedMicros - solvedMicros);
+    add(TOTAL, appliedMicros - (long) (result.getTimestampSeconds() * 1e6));
+  }
+
+  /**
+   * Publish the window and update the latency alert once a second, also when no results arrive so they do not freeze
+   * when the camera goes silent. Call periodically from the main robot thread.
+   *
+   * @param nowMicros Current time.
+   */
+  public synchronized void update(long nowMicros)
+  {
+    publishIfDue(nowMicros);
+  }
+
+  /**
+   * Add a sample to a stage histogram.
+   *
+   * @param stage  Stage index.
+   * @param micros Stage time in microseconds, negative times from clock differences count as 0.
+   */
+  private void add(int stage, long micros)
+  {
+    double milliseconds = Math.max(0, micros) / 1e3;
+    histograms[stage][Math.min((int) (milliseconds / BIN_MS), BINS - 1)]++;
+    sums[stage] += milliseconds;
+    maximums[stage] = Math.max(maximums[stage], milliseconds);
+    counts[stage]++;
+  }
+
+  /**
+   * Get a percentile from a stage histogram.
+   *
+   * @param stage    Stage index.
+   * @param fraction Percentile as a fraction.
+   * @return Upper edge of the bin holding the percentile in milliseconds.
+   */
+  private double percentile(int stage, double fraction)
+  {
+    long target     = (long) Math.ceil(counts[stage] * fraction);
+    long cumulative = 0;
+    for (int bin = 0; bin < BINS - 1; bin++)
+    {
+      cumulative += histograms[stage][bin];
+      if (cumulative >= target)
+      {
+        return (bin + 1) * BIN_MS;
+      }
+    }
+    return maximums[stage];
+  }
+
+  /**
+   * Publish and reset the window once a second.
+   *
+   * @param nowMicros Current time.
+   */
+  private void publishIfDue(long nowMicros)
+  {
+    if (windowStart == 0)
+    {
+      windowStart = nowMicros;
+      return;
+    }
+    long elapsed = nowMicros - windowStart;
+    if (elapsed < PUBLISH_PERIOD)
+    {
+      return;
+    }
+
+    for (int stage = 0; stage < STAGE_NAMES.length; stage++)
+    {
+      if (counts[stage] > 0)
+      {
+        summary[0] = sums[stage] / counts[stage];
+        summary[1] = percentile(stage, 0.5);
+        summary[2] = percentile(stage, 0.95);
+        summary[3] = maximums[stage];
+        summaryPublishers[stage].set(summary);
+        if (stage == TOTAL)
+        {
+          latencyAlert.set(summary[2] > alertThresholdMs);
+        }
+      } else if (stage == TOTAL)
+      {
+        // Nothing was applied, the frame rate shows whether the camera went silent.
+        latencyAlert.set(false);
+      }
+      histogramPublishers[stage].set(histograms[stage]);
+      Arrays.fill(histograms[stage], 0);
+      sums[stage] = 0;
+      maximums[stage] = 0;
+      counts[stage] = 0;
+    }
+    frameRatePublisher.set(frames * 1e6 / elapsed);
+    droppedFramesPublisher.set(droppedFrames);
+    multiTagRatioPublisher.set(targetFrames == 0 ? 0 : (double) multiTagFrames / targetFrames);
+    frames = 0;
+    targetFrames = 0;
+    multiTagFrames = 0;
+    windowStart = nowMicros;
+  }
+}
@@ -0,0 +1,305 @@
+package frc.robot.subsystems.swervedrive;
+
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Pose3d;
+import edu.wpi.first.math.geometry.Rotation3d;
+import edu.wpi.first.math.geometry.Transform3d;
+import edu.wpi.first.math.geometry.Translation3d;
+import edu.wpi.first.math.interpolation.TimeInterpolatableBuffer;
+import edu.wpi.first.math.numbers.N3;
+import edu.wpi.first.math.util.Units;
+import edu.wpi.first.util.WPIUtilJNI;
+import edu.wpi.first.wpilibj.Timer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import org.photonvision.simulation.PhotonCameraSim;
+import org.photonvision.simulation.SimCameraProperties;
+import org.photonvision.targeting.MultiTargetPNPResult;
+import org.photonvision.targeting.PhotonPipelineResult;
+import org.photonvision.targeting.PhotonTrackedTarget;
+import org.photonvision.targeting.PnpResult;
+import org.photonvision.targeting.TargetCorner;
+
+/**
+ * Vision simulation without rendering. Instead of drawing camera frames and detecting tags in them like
+ * {@link org.photonvision.simulation.VisionSystemSim}, visible tags are found geometrically from
+ * {@link Vision#tagTable} with a pinhole projection of their corners, and results are published through each
+ * {@link PhotonCameraSim} at the camera frame rate with the capture timestamp delayed by the camera latency model.
+ * Lets simulations with vision run faster than real time.
+ */
+public class HeadlessVisionSim
+{
+
+  /**
+   * Edge length of the tags in meters.
+   */
+  private static final double                           TAG_SIZE      = Units.inchesToMeters(6.5);
+  /**
+   * Reprojection error of the best single tag solve in pixels, the corner noise of a real detector.
+   */
+  private static final double                           CORNER_ERROR  = 0.5;
+  /**
+   * Simulated cameras.
+   */
+  private final        List<SimulatedCamera>            cameras       = new ArrayList<>();
+  /**
+   * Robot poses of the last second, so frames see the robot where it was when they were captured.
+   */
+  private final        TimeInterpolatableBuffer<Pose2d> poseHistory   = TimeInterpolatableBuffer.createBuffer(1.0);
+  /**
+   * Noise source.
+   */
+  private final        Random                           random        = new Random();
+  /**
+   * Largest distance in meters a tag is detected at.
+   */
+  private              double                           maxDistance   = 7;
+  /**
+   * Standard deviation of the target yaw and pitch in degrees.
+   */
+  private              double                           angleNoise    = 0.1;
+  /**
+   * Standard deviation of the camera to target distance as a fraction of the distance.
+   */
+  private              double                           distanceNoise = 0.02;
+
+  /**
+   * Camera state.
+   */
+  private static class SimulatedCamera
+  {
+
+    /**
+     * Camera simulation publishing the results.
+     */
+    final PhotonCameraSim     cameraSim;
+    /**
+     * Camera properties, for the frame rate and latency.
+     */
+    final SimCameraProperties properties;
+    /**
+     * Camera transform relative to the center of the robot.
+     */
+    final Transform3d         robotToCamera;
+    /**
+     * Camera intrinsics [fx, fy, cx, cy] in pixels.
+     */
+    final double              fx, fy, cx, cy;
+    /**
+     * FPGA time of the next frame in seconds.
+     */
+          double              nextFrameTime = 0;
+    /**
+     * Sequence ID of the next frame.
+     */
+          long                sequence      = 0;
+
+    /**
+     * Create the camera state.
+     *
+     * @param cameraSim     Camera simulation publishing the results.
+     * @param properties    Camera properties.
+     * @param robotToCamera Camera transform relative to the center of the robot.
+     */
+    SimulatedCamera(PhotonCameraSim cameraSim, SimCameraProperties properties, Transform3d robotToCamera)
+    {
+      this.cameraSim = cameraSim;
+      this.properties = properties;
+      this.robotToCamera = robotToCamera;
+      Matrix<N3, N3> intrinsics = properties.getIntrinsics();
+      fx = intrinsics.get(0, 0);
+      fy = intrinsics.get(1, 1);
+      cx = intrinsics.get(0, 2);
+      cy = intrinsics.get(1, 2);
+    }
+  }
+
+  /**
+   * Add a camera. Disable the stream rendering of the {@link PhotonCameraSim}, it is never drawn to.
+   *
+   * @param cameraSim     Camera simulation publishing the results.
+   * @param properties    Camera properties, the resolution, intrinsics, frame rate and latency are used.
+   * @param robotToCamera Camera transform relative to the center of the robot.
+   */
+  public void addCamera(PhotonCameraSim cameraSim, SimCameraProperties properties, Transform3d robotToCamera)
+  {
+    cameras.add(new SimulatedCamera(cameraSim, properties, robotToCamera));
+  }
+
+  /**
+   * Set the detection noise.
+   *
+   * @param angleNoiseDegrees    Standard deviation of the target yaw and pitch in degrees, 0.1 by default.
+   * @param distanceNoisePercent Standard deviation of the camera to target distance as a fraction of the distance, 0.02
+   *                             by default.
+   */
+  public void setNoise(double angleNoiseDegrees, double distanceNoisePercent)
+  {
+    this.angleNoise = angleNoiseDegrees;
+    this.distanceNoise = distanceNoisePercent;
+  }
+
+  /**
+   * Set the largest distance a tag is detected at.
+   *
+   * @param maxDistanceMeters Distance in meters, 7 by default.
+   */
+  public void setMaxDistance(double maxDistanceMeters)
+  {
+    this.maxDistance = maxDistanceMeters;
+  }
+
+  /**
+   * Record the robot pose and publish a result from every camera with a frame due.
+   *
+   * @param robotPose Simulated robot pose.
+   */
+  public void update(Pose2d robotPose)
+  {
+    double now = Timer.getFPGATimestamp();
+    poseHistory.addSample(now, robotPose);
+    for (SimulatedCamera camera : cameras)
+    {
+      if (now < camera.nextFrameTime)
+      {
+        continue;
+      }
+      double period = 1.0 / camera.properties.getFPS();
+      camera.nextFrameTime = Math.max(camera.nextFrameTime + period, now);
+
+      double                    latencySeconds = Math.max(0, camera.properties.estLatencyMs()) / 1000.0;
+      Pose3d                    cameraPose     = new Pose3d(poseHistory.getSample(now - latencySeconds)
+                                                                       .orElse(robotPose))
+                                                     .transformBy(camera.robotToCamera);
+      List<PhotonTrackedTarget> targets        = new ArrayList<>();
+      List<Short>               ids            = new ArrayList<>();
+      for (int id = 0; id <= Vision.tagTable.getMaxId(); id++)
+      {
+        if (Vision.tagTable.contains(id) && detect(camera, cameraPose, id, targets))
+        {
+          ids.add((short) id);
+        }
+      }
+
+      // The coprocessor solves every tag at once when more than one is visible.
+      Optional<MultiTargetPNPResult> multiTag = Optional.empty();
+      if (targets.size() > 1)
+      {
+        Transform3d fieldToCamera = new Transform3d(Pose3d.kZero, cameraPose);
+        double      noise         = 0;
+        for (PhotonTrackedTarget target : targets)
+        {
+          noise += target.getBestCameraToTarget().getTranslation().getNorm();
+        }
+        noise *= distanceNoise / targets.size() / Math.sqrt(targets.size());
+        fieldToCamera = new Transform3d(fieldToCamera.getTranslation()
+                                                     .plus(new Translation3d(random.nextGaussian() * noise,
+                                                                             random.nextGaussian() * noise,
+                                                                             random.nextGaussian() * noise)),
+                                        fieldToCamera.getRotation());
+        multiTag = Optional.of(new MultiTargetPNPResult(new PnpResult(fieldToCamera, 0), ids));
+      }
+
+      long nowMicros = WPIUtilJNI.now();
+      camera.cameraSim.submitProcessedFrame(new PhotonPipelineResult(camera.sequence++,
+                                                                     nowMicros - (long) (latencySeconds * 1e6),
+                                                                     nowMicros,
+                                                                     0,
+                                                                     targets,
+                                                                     multiTag));
+    }
+  }
+
+  /**
+   * Check if a tag is visible from a camera and add the target if it is.
+   *
+   * @param camera     Camera state.
+   * @param cameraPose Field pose of the camera at the capture time.
+   * @param id         Fiducial ID, must be on the field.
+   * @param targets    List the target is added to.
+   * @return True if the tag is visible.
+   */
+  private boolean detect(SimulatedCamera camera, Pose3d cameraPose, int id, List<PhotonTrackedTarget> targets)
+  {
+    Pose3d        tagPose     = Vision.tagTable.getPose3d(id);
+    Transform3d   cameraToTag = new Transform3d(cameraPose, tagPose);
+    Translation3d center      = cameraToTag.getTranslation();
+    double        distance    = center.getNorm();
+    // The camera has to be in front of the tag face, which points along the tag x axis.
+    if (center.getX() <= 0 || distance > maxDistance || new Transform3d(tagPose, cameraPose).getX() <= 0)
+    {
+      return false;
+    }
+
+    List<TargetCorner> corners = new ArrayList<>(4);
+    double             area    = 0;
+    double             half    = TAG_SIZE / 2;
+    double[][]         offsets = {{-half, -half}, {half, -half}, {half, half}, {-half, half}};
+    for (double[] offset : offsets)
+    {
+      Translation3d corner = new Translation3d(0, offset[0], offset[1]).rotateBy(cameraToTag.getRotation())
+                                                                        .plus(center);
+      if (corner.getX() <= 0)
+      {
+        return false;
+      }
+      double u = camera.cx - camera.fx * corner.getY() / corner.getX();
+      double v = camera.cy - camera.fy * corner.getZ() / corner.getX();
+      if (u < 0 || u > camera.properties.getResWidth() || v < 0 || v > camera.properties.getResHeight())
+      {
+        return false;
+      }
+      corners.add(new TargetCorner(u, v));
+    }
+    for (int i = 0; i < 4; i++)
+    {
+      TargetCorner a = corners.get(i);
+      TargetCorner b = corners.get((i + 1) % 4);
+      area += a.x * b.y - b.x * a.y;
+    }
+    area = Math.abs(area) / 2 / (camera.properties.getResWidth() * camera.properties.getResHeight()) * 100;
+
+    // The alternate single tag solve has the tag face mirrored about the line of sight, which is hard to tell apart
+    // when the tag is far away or seen head on. PhotonVision reports the ratio of the best to the alternate
+    // reprojection error as the pose ambiguity.
+    Translation3d normal      = new Translation3d(1, 0, 0).rotateBy(cameraToTag.getRotation());
+    Translation3d sight       = center.div(distance);
+    double        cosine      = normal.getX() * sight.getX() + normal.getY() * sight.getY() +
+                                normal.getZ() * sight.getZ();
+    Rotation3d    altRotation = cameraToTag.getRotation()
+                                           .rotateBy(new Rotation3d(normal.toVector(),
+                                                                    sight.times(2 * cosine).minus(normal).toVector()));
+    double        altError    = 0;
+    for (int i = 0; i < 4; i++)
+    {
+      Translation3d corner = new Translation3d(0, offsets[i][0], offsets[i][1]).rotateBy(altRotation).plus(center);
+      double        du     = camera.cx - camera.fx * corner.getY() / corner.getX() - corners.get(i).x;
+      double        dv     = camera.cy - camera.fy * corner.getZ() / corner.getX() - corners.get(i).y;
+      altError += du * du + dv * dv;
+    }
+    double ambiguity = Math.min(1, CORNER_ERROR / Math.max(Math.sqrt(altError / 4), 1e-9));
+
+    double      scale      = 1 + random.nextGaussian() * distanceNoise;
+    Transform3d noisyToTag = new Transform3d(center.times(scale), cameraToTag.getRotation());
+    Transform3d noisyToAlt = new Transform3d(center.times(scale), altRotation);
+    // PhotonVision yaw is positive to the right.
+    double      yaw        = -Math.toDegrees(Math.atan2(center.getY(), center.getX()));
+    double      pitch      = Math.toDegrees(Math.atan2(center.getZ(), Math.hypot(center.getX(), center.getY())));
+    targets.add(new PhotonTrackedTarget(yaw + random.nextGaussian() * angleNoise,
+                                        pitch + random.nextGaussian() * angleNoise,
+                                        area,
+                                        0,
+                                        id,
+                                        -1,
+                                        -1,
+                                        noisyToTag,
+                                        noisyToAlt,
+                                        ambiguity,
+                                        corners,
+                                        corners));
+    return true;
+  }
+}
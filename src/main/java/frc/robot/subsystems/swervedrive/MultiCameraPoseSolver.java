@@ -0,0 +1,437 @@
+package frc.robot.subsystems.swervedrive;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Rotation3d;
+import edu.wpi.first.math.geometry.Transform3d;
+import edu.wpi.first.math.geometry.Translation3d;
+
+/**
+ * Joint robot pose solve over AprilTags seen by any number of cameras. Each tag observation is the direction and range
+ * to the tag center in the camera frame, and the robot pose [x, y, theta] minimizing the weighted bearing and range
+ * errors over every observation is found with Gauss-Newton. Observations captured at different times carry the
+ * odometry motion between their capture and the reference time, so frames from unsynchronized cameras solve for one
+ * pose.
+ * <p>
+ * Observations are held in primitive arrays sized on construction. Not thread safe.
+ */
+public class MultiCameraPoseSolver
+{
+
+  /**
+   * Residuals per observation, yaw, pitch and range.
+   */
+  private static final int      RESIDUALS          = 3;
+  /**
+   * Step used for the numerical Jacobian.
+   */
+  private static final double   EPSILON            = 1e-6;
+  /**
+   * Camera axes in the robot frame, [forward, left, up] x [x, y, z] per observation.
+   */
+  private final        double[] cameraAxes;
+  /**
+   * Camera positions in the robot frame, [x, y, z] per observation.
+   */
+  private final        double[] cameraPositions;
+  /**
+   * Odometry motion from the reference time to the capture time in the reference robot frame, [x, y, theta] per
+   * observation.
+   */
+  private final        double[] odometryDeltas;
+  /**
+   * Tag field positions, [x, y, z] per observation.
+   */
+  private final        double[] tagPositions;
+  /**
+   * Measured [yaw, pitch, range] per observation.
+   */
+  private final        double[] measurements;
+  /**
+   * Residual scratch buffer.
+   */
+  private final        double[] residuals;
+  /**
+   * Perturbed residual scratch buffer.
+   */
+  private final        double[] perturbedResiduals;
+  /**
+   * Weighted residual derivatives, one row of every residual per pose component.
+   */
+  private final        double[] jacobian;
+  /**
+   * Normal equation matrix J^T W J, row major.
+   */
+  private final        double[] normal             = new double[9];
+  /**
+   * Normal equation right hand side J^T W r.
+   */
+  private final        double[] gradient           = new double[3];
+  /**
+   * Inverse of the normal matrix scratch buffer, row major.
+   */
+  private final        double[] inverse            = new double[9];
+  /**
+   * Current estimate [x, y, theta].
+   */
+  private final        double[] estimate           = new double[3];
+  /**
+   * Perturbed estimate scratch buffer.
+   */
+  private final        double[] perturbed          = new double[3];
+  /**
+   * Standard deviations [x, y, theta] of the last solution.
+   */
+  private final        double[] stdDevs            = new double[3];
+  /**
+   * Number of observations added.
+   */
+  private              int      count              = 0;
+  /**
+   * Bearing standard deviation in radians.
+   */
+  private              double   bearingStdDev      = 0.01;
+  /**
+   * Range standard deviation as a fraction of the range.
+   */
+  private              double   rangeStdDevPercent = 0.1;
+  /**
+   * Maximum Gauss-Newton iterations.
+   */
+  private              int      maxIterations      = 10;
+
+  /**
+   * Create the solver.
+   *
+   * @param capacity Maximum number of tag observations per solve.
+   */
+  public MultiCameraPoseSolver(int capacity)
+  {
+    cameraAxes = new double[capacity * 9];
+    cameraPositions = new double[capacity * 3];
+    odometryDeltas = new double[capacity * 3];
+    tagPositions = new double[capacity * 3];
+    measurements = new double[capacity * RESIDUALS];
+    residuals = new double[capacity * RESIDUALS];
+    perturbedResiduals = new double[capacity * RESIDUALS];
+    jacobian = new double[capacity * RESIDUALS * 3];
+  }
+
+  /**
+   * Set the measurement noise.
+   *
+   * @param bearingStdDev      Bearing standard deviation in radians, 0.01 by default.
+   * @param rangeStdDevPercent Range standard deviation as a fraction of the range, 0.1 by default.
+   */
+  public void setNoise(double bearingStdDev, double rangeStdDevPercent)
+  {
+    this.bearingStdDev = bearingStdDev;
+    this.rangeStdDevPercent = rangeStdDevPercent;
+  }
+
+  /**
+   * Set the maximum number of Gauss-Newton iterations.
+   *
+   * @param maxIterations Iterations, 10 by default.
+   */
+  public void setMaxIterations(int maxIterations)
+  {
+    this.maxIterations = maxIterations;
+  }
+
+  /**
+   * Drop all observations.
+   */
+  public void reset()
+  {
+    count = 0;
+  }
+
+  /**
+   * Get the number of observations added.
+   *
+   * @return Observations.
+   */
+  public int getObservationCount()
+  {
+    return count;
+  }
+
+  /**
+   * Add a tag observation.
+   *
+   * @param robotToCamera  Camera transform relative to the center of the robot.
+   * @param cameraToTag    Tag transform relative to the camera, only the translation is used.
+   * @param tagId          Fiducial ID, must be in {@link Vision#tagTable}.
+   * @param odometryDx     Odometry x motion from the reference time to the capture time in meters, in the reference
+   *                       robot frame.
+   * @param odometryDy     Odometry y motion from the reference time to the capture time in meters, in the reference
+   *                       robot frame.
+   * @param odometryDtheta Odometry rotation from the reference time to the capture time in radians.
+   * @return False if the solver is full or the tag is not on the field.
+   */
+  public boolean addObservation(Transform3d robotToCamera, Transform3d cameraToTag, int tagId,
+                                double odometryDx, double odometryDy, double odometryDtheta)
+  {
+    if (count * 3 >= cameraPositions.length || !Vision.tagTable.contains(tagId))
+    {
+      return false;
+    }
+    Translation3d toTag = cameraToTag.getTranslation();
+    double        range = toTag.getNorm();
+    if (range <= 0)
+    {
+      return false;
+    }
+
+    Rotation3d    rotation = robotToCamera.getRotation();
+    Translation3d forward  = new Translation3d(1, 0, 0).rotateBy(rotation);
+    Translation3d left     = new Translation3d(0, 1, 0).rotateBy(rotation);
+    Translation3d up       = new Translation3d(0, 0, 1).rotateBy(rotation);
+    int           axes     = count * 9;
+    cameraAxes[axes] = forward.getX();
+    cameraAxes[axes + 1] = forward.getY();
+    cameraAxes[axes + 2] = forward.getZ();
+    cameraAxes[axes + 3] = left.getX();
+    cameraAxes[axes + 4] = left.getY();
+    cameraAxes[axes + 5] = left.getZ();
+    cameraAxes[axes + 6] = up.getX();
+    cameraAxes[axes + 7] = up.getY();
+    cameraAxes[axes + 8] = up.getZ();
+
+    int i = count * 3;
+    cameraPositions[i] = robotToCamera.getX();
+    cameraPositions[i + 1] = robotToCamera.getY();
+    cameraPositions[i + 2] = robotToCamera.getZ();
+    odometryDeltas[i] = odometryDx;
+    odometryDeltas[i + 1] = odometryDy;
+    odometryDeltas[i + 2] = odometryDtheta;
+    tagPositions[i] = Vision.tagTable.getX(tagId);
+    tagPositions[i + 1] = Vision.tagTable.getY(tagId);
+    tagPositions[i + 2] = Vision.tagTable.getZ(tagId);
+
+    int m = count * RESIDUALS;
+    measurements[m] = Math.atan2(toTag.getY(), toTag.getX());
+    measurements[m + 1] = Math.atan2(toTag.getZ(), Math.hypot(toTag.getX(), toTag.getY()));
+    measurements[m + 2] = range;
+    count++;
+    return true;
+  }
+
+  /**
+   * Calculate the weighted residuals of every observation.
+   *
+   * @param pose   Robot pose [x, y, theta] at the reference time.
+   * @param output Buffer for the residuals.
+   * @return False if a tag is behind its camera.
+   */
+  private boolean calculateResiduals(double[] pose, double[] output)
+  {
+    for (int k = 0; k < count; k++)
+    {
+      int i = k * 3;
+      // Robot pose at the capture time.
+      double cos    = Math.cos(pose[2]);
+      double sin    = Math.sin(pose[2]);
+      double robotX = pose[0] + cos * odometryDeltas[i] - sin * odometryDeltas[i + 1];
+      double robotY = pose[1] + sin * odometryDeltas[i] + cos * odometryDeltas[i + 1];
+      double theta  = pose[2] + odometryDeltas[i + 2];
+      cos = Math.cos(theta);
+      sin = Math.sin(theta);
+
+      // Tag relative to the camera, in the robot frame.
+      double vx = tagPositions[i] - (robotX + cos * cameraPositions[i] - sin * cameraPositions[i + 1]);
+      double vy = tagPositions[i + 1] - (robotY + sin * cameraPositions[i] + cos * cameraPositions[i + 1]);
+      double vz = tagPositions[i + 2] - cameraPositions[i + 2];
+      double rx = cos * vx + sin * vy;
+      double ry = -sin * vx + cos * vy;
+
+      // Tag in the camera frame.
+      int    a  = k * 9;
+      double cx = cameraAxes[a] * rx + cameraAxes[a + 1] * ry + cameraAxes[a + 2] * vz;
+      double cy = cameraAxes[a + 3] * rx + cameraAxes[a + 4] * ry + cameraAxes[a + 5] * vz;
+      double cz = cameraAxes[a + 6] * rx + cameraAxes[a + 7] * ry + cameraAxes[a + 8] * vz;
+      if (cx <= 0)
+      {
+        return false;
+      }
+
+      int    m     = k * RESIDUALS;
+      double range = Math.sqrt(cx * cx + cy * cy + cz * cz);
+      output[m] = MathUtil.angleModulus(Math.atan2(cy, cx) - measurements[m]) / bearingStdDev;
+      output[m + 1] = (Math.atan2(cz, Math.hypot(cx, cy)) - measurements[m + 1]) / bearingStdDev;
+      output[m + 2] = (range - measurements[m + 2]) / (rangeStdDevPercent * measurements[m + 2]);
+    }
+    return true;
+  }
+
+  /**
+   * Solve for the robot pose at the reference time.
+   *
+   * @param initialX     Initial guess x in meters.
+   * @param initialY     Initial guess y in meters.
+   * @param initialTheta Initial guess heading in radians.
+   * @return False if there are too few observations or the solve did not converge.
+   */
+  public boolean solve(double initialX, double initialY, double initialTheta)
+  {
+    int residualCount = count * RESIDUALS;
+    if (count < 2)
+    {
+      return false;
+    }
+    estimate[0] = initialX;
+    estimate[1] = initialY;
+    estimate[2] = initialTheta;
+
+    boolean converged = false;
+    for (int iteration = 0; iteration < maxIterations && !converged; iteration++)
+    {
+      if (!buildNormalEquations(residualCount) || !invert())
+      {
+        return false;
+      }
+      double stepX     = -(inverse[0] * gradient[0] + inverse[1] * gradient[1] + inverse[2] * gradient[2]);
+      double stepY     = -(inverse[3] * gradient[0] + inverse[4] * gradient[1] + inverse[5] * gradient[2]);
+      double stepTheta = -(inverse[6] * gradient[0] + inverse[7] * gradient[1] + inverse[8] * gradient[2]);
+      estimate[0] += stepX;
+      estimate[1] += stepY;
+      estimate[2] = MathUtil.angleModulus(estimate[2] + stepTheta);
+      converged = Math.abs(stepX) < 1e-5 && Math.abs(stepY) < 1e-5 && Math.abs(stepTheta) < 1e-5;
+    }
+    if (!converged || !buildNormalEquations(residualCount) || !invert())
+    {
+      return false;
+    }
+
+    // Scale the covariance by the fit quality so inconsistent observations are trusted less.
+    double chiSquared = 0;
+    for (int i = 0; i < residualCount; i++)
+    {
+      chiSquared += residuals[i] * residuals[i];
+    }
+    double scale = Math.max(1, chiSquared / (residualCount - 3));
+    stdDevs[0] = Math.sqrt(inverse[0] * scale);
+    stdDevs[1] = Math.sqrt(inverse[4] * scale);
+    stdDevs[2] = Math.sqrt(inverse[8] * scale);
+    return Double.isFinite(stdDevs[0]) && Double.isFinite(stdDevs[1]) && Double.isFinite(stdDevs[2]);
+  }
+
+  /**
+   * Build the normal equations at the current estimate with a numerical Jacobian.
+   *
+   * @param residualCount Number of residuals.
+   * @return False if a tag is behind its camera.
+   */
+  private boolean buildNormalEquations(int residualCount)
+  {
+    if (!calculateResiduals(estimate, residuals))
+    {
+      return false;
+    }
+    int stride = residuals.length;
+    for (int column = 0; column < 3; column++)
+    {
+      perturbed[0] = estimate[0];
+      perturbed[1] = estimate[1];
+      perturbed[2] = estimate[2];
+      perturbed[column] += EPSILON;
+      if (!calculateResiduals(perturbed, perturbedResiduals))
+      {
+        return false;
+      }
+      double sum = 0;
+      for (int i = 0; i < residualCount; i++)
+      {
+        double derivative = (perturbedResiduals[i] - residuals[i]) / EPSILON;
+        jacobian[column * stride + i] = derivative;
+        sum += derivative * residuals[i];
+      }
+      gradient[column] = sum;
+    }
+    for (int row = 0; row < 3; row++)
+    {
+      for (int column = row; column < 3; column++)
+      {
+        double sum = 0;
+        for (int i = 0; i < residualCount; i++)
+        {
+          sum += jacobian[row * stride + i] * jacobian[column * stride + i];
+        }
+        normal[row * 3 + column] = sum;
+        normal[column * 3 + row] = sum;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Invert the normal matrix into {@link MultiCameraPoseSolver#inverse}.
+   *
+   * @return False if the matrix is singular, meaning the observations do not constrain the pose.
+   */
+  private boolean invert()
+  {
+    double a = normal[0], b = normal[1], c = normal[2];
+    double d = normal[3], e = normal[4], f = normal[5];
+    double g = normal[6], h = normal[7], k = normal[8];
+    double cofactor0   = e * k - f * h;
+    double cofactor1   = f * g - d * k;
+    double cofactor2   = d * h - e * g;
+    double determinant = a * cofactor0 + b * cofactor1 + c * cofactor2;
+    if (!(Math.abs(determinant) > 1e-12))
+    {
+      return false;
+    }
+    inverse[0] = cofactor0 / determinant;
+    inverse[1] = (c * h - b * k) / determinant;
+    inverse[2] = (b * f - c * e) / determinant;
+    inverse[3] = cofactor1 / determinant;
+    inverse[4] = (a * k - c * g) / determinant;
+    inverse[5] = (c * d - a * f) / determinant;
+    inverse[6] = cofactor2 / determinant;
+    inverse[7] = (b * g - a * h) / determinant;
+    inverse[8] = (a * e - b * d) / determinant;
+    return true;
+  }
+
+  /**
+   * Get the x position of the last solution.
+   *
+   * @return X in meters.
+   */
+  public double getX()
+  {
+    return estimate[0];
+  }
+
+  /**
+   * Get the y position of the last solution.
+   *
+   * @return Y in meters.
+   */
+  public double getY()
+  {
+    return estimate[1];
+  }
+
+  /**
+   * Get the heading of the last solution.
+   *
+   * @return Heading in radians.
+   */
+  public double getTheta()
+  {
+    return estimate[2];
+  }
+
+  /**
+   * Get the standard deviations of the last solution.
+   *
+   * @param index 0 for x, 1 for y and 2 for theta.
+   * @return Standard deviation in meters or radians.
+   */
+  public double getStdDev(int index)
+  {
+    return stdDevs[index];
+  }
+}
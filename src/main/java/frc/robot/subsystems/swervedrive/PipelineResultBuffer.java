@@ -0,0 +1,132 @@
+package frc.robot.subsystems.swervedrive;
+
+import java.util.Optional;
+import org.photonvision.targeting.PhotonPipelineResult;
+
+/**
+ * Fixed size ring buffer of the most recent {@link PhotonPipelineResult}s from a camera, kept in timestamp order.
+ * Written by the camera's vision worker and read from the main loop, results are returned as stored without copying.
+ */
+public class PipelineResultBuffer
+{
+
+  /**
+   * Results, oldest at {@link PipelineResultBuffer#head} once full.
+   */
+  private final PhotonPipelineResult[] results;
+  /**
+   * Index the next result is written to.
+   */
+  private       int                    head = 0;
+  /**
+   * Number of results held.
+   */
+  private       int                    size = 0;
+
+  /**
+   * Create the buffer.
+   *
+   * @param capacity Number of results kept.
+   */
+  public PipelineResultBuffer(int capacity)
+  {
+    results = new PhotonPipelineResult[capacity];
+  }
+
+  /**
+   * Add a result, dropping the oldest result when full. Results older than the newest held result are inserted in
+   * timestamp order.
+   *
+   * @param result Result to add.
+   */
+  public synchronized void add(PhotonPipelineResult result)
+  {
+    int index = head;
+    results[head] = result;
+    head = (head + 1) % results.length;
+    size = Math.min(size + 1, results.length);
+    // Results almost always arrive in order, this only runs for late ones.
+    for (int i = 1; i < size; i++)
+    {
+      int previous = (index - 1 + results.length) % results.length;
+      if (results[previous].getTimestampSeconds() <= results[index].getTimestampSeconds())
+      {
+        break;
+      }
+      PhotonPipelineResult swap = results[previous];
+      results[previous] = results[index];
+      results[index] = swap;
+      index = previous;
+    }
+  }
+
+  /**
+   * Get a result by age.
+   *
+   * @param age 0 for the newest result, up to {@link PipelineResultBuffer#size()} - 1 for the oldest.
+   * @return The result.
+   */
+  public synchronized PhotonPipelineResult get(int age)
+  {
+    if (age < 0 || age >= size)
+    {
+      throw new IndexOutOfBoundsException("Result " + age + " of " + size);
+    }
+    return results[(head - 1 - age + 2 * results.length) % results.length];
+  }
+
+  /**
+   * Get the number of results held.
+   *
+   * @return Number of results.
+   */
+  public synchronized int size()
+  {
+    return size;
+  }
+
+  /**
+   * Get the newest result.
+   *
+   * @return Newest result, empty if there are none.
+   */
+  public synchronized Optional<PhotonPipelineResult> getLatest()
+  {
+    return size == 0 ? Optional.empty() : Optional.of(get(0));
+  }
+
+  /**
+   * Get the result whose best target has the lowest ambiguity. This may not be the most recent result!
+   *
+   * @return Least ambiguous result with targets, empty if no result has targets.
+   */
+  public synchronized Optional<PhotonPipelineResult> getBest()
+  {
+    PhotonPipelineResult best          = null;
+    double               bestAmbiguity = Double.MAX_VALUE;
+    for (int age = 0; age < size; age++)
+    {
+      PhotonPipelineResult result = get(age);
+      if (!result.hasTargets())
+      {
+        continue;
+      }
+      double ambiguity = result.getBestTarget().getPoseAmbiguity();
+      if (best == null || (ambiguity > 0 && ambiguity < bestAmbiguity))
+      {
+        best = result;
+        bestAmbiguity = ambiguity;
+      }
+    }
+    return Optional.ofNullable(best);
+  }
+
+  /**
+   * Drop all results.
+   */
+  public synchronized void clear()
+  {
+    head = 0;
+    size = 0;
+  }
+}
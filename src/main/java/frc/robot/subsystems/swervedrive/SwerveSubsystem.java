@@ -14,9 +14,6 @@ import com.pathplanner.lib.config.RobotConfig;
 import com.pathplanner.lib.controllers.PPHolonomicDriveController;
 import com.pathplanner.lib.path.PathConstraints;
 import com.pathplanner.lib.path.PathPlannerPath;
-import com.pathplanner.lib.util.DriveFeedforwards;
-import com.pathplanner.lib.util.swerve.SwerveSetpoint;
-import com.pathplanner.lib.util.swerve.SwerveSetpointGenerator;
 import edu.wpi.first.apriltag.AprilTagFieldLayout;
 import edu.wpi.first.apriltag.AprilTagFields;
 import edu.wpi.first.math.controller.SimpleMotorFeedforward;
@@ -28,26 +25,28 @@ import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
 import edu.wpi.first.math.trajectory.Trajectory;
 import edu.wpi.first.math.util.Units;
 import edu.wpi.first.wpilibj.DriverStation;
+import edu.wpi.first.wpilibj.TimedRobot;
 import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj2.command.Command;
-import edu.wpi.first.wpilibj2.command.Commands;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 import edu.wpi.first.wpilibj2.command.sysid.SysIdRoutine.Config;
 import frc.robot.Constants;
 import frc.robot.subsystems.swervedrive.Vision.Cameras;
 import java.io.File;
-import java.io.IOException;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.DoubleSupplier;
 import java.util.function.Supplier;
-import org.json.simple.parser.ParseException;
 import org.photonvision.targeting.PhotonPipelineResult;
 import swervelib.SwerveController;
 import swervelib.SwerveDrive;
 import swervelib.SwerveDriveTest;
+import swervelib.math.DynamicTippingLimiter;
+import swervelib.math.MassProvider;
+import swervelib.math.Matter;
 import swervelib.math.SwerveMath;
+import swervelib.math.SwerveSetpointGenerator;
 import swervelib.parser.SwerveControllerConfiguration;
 import swervelib.parser.SwerveDriveConfiguration;
 import swervelib.parser.SwerveParser;
@@ -102,8 +101,8 @@ public class SwerveSubsystem extends SubsystemBase
     if (visionDriveTest)
     {
       setupPhotonVision();
-      // Stop the odometry thread if we are using vision that way we can synchronize updates better.
-      swerveDrive.stopOdometryThread();
+      // Process each camera on its own thread, measurements are added to the odometry as soon as they arrive.
+      vision.startWorkers(swerveDrive);
     }
     setupPathPlanner();
   }
@@ -134,10 +133,9 @@ public class SwerveSubsystem extends SubsystemBase
   @Override
   public void periodic()
   {
-    // When vision is enabled we must manually update odometry in SwerveDrive
+    // Cameras are processed by the vision workers, this only updates the vision simulation.
     if (visionDriveTest)
     {
-      swerveDrive.updateOdometry();
       vision.updatePoseEstimation(swerveDrive);
     }
   }
@@ -276,59 +274,28 @@ public class SwerveSubsystem extends SubsystemBase
   }
 
   /**
-   * Drive with {@link SwerveSetpointGenerator} from 254, implemented by PathPlanner.
+   * Drive with the swervelib {@link SwerveSetpointGenerator}, based on the one from 254.
    *
    * @param robotRelativeChassisSpeed Robot relative {@link ChassisSpeeds} to achieve.
    * @return {@link Command} to run.
-   * @throws IOException    If the PathPlanner GUI settings is invalid
-   * @throws ParseException If PathPlanner GUI settings is nonexistent.
    */
   private Command driveWithSetpointGenerator(Supplier<ChassisSpeeds> robotRelativeChassisSpeed)
-  throws IOException, ParseException
   {
-    SwerveSetpointGenerator setpointGenerator = new SwerveSetpointGenerator(RobotConfig.fromGUISettings(),
-                                                                            swerveDrive.getMaximumChassisAngularVelocity());
-    AtomicReference<SwerveSetpoint> prevSetpoint
-        = new AtomicReference<>(new SwerveSetpoint(swerveDrive.getRobotVelocity(),
-                                                   swerveDrive.getStates(),
-                                                   DriveFeedforwards.zeros(swerveDrive.getModules().length)));
-    AtomicReference<Double> previousTime = new AtomicReference<>();
-
-    return startRun(() -> previousTime.set(Timer.getFPGATimestamp()),
-                    () -> {
-                      double newTime = Timer.getFPGATimestamp();
-                      SwerveSetpoint newSetpoint = setpointGenerator.generateSetpoint(prevSetpoint.get(),
-                                                                                      robotRelativeChassisSpeed.get(),
-                                                                                      newTime - previousTime.get());
-                      swerveDrive.drive(newSetpoint.robotRelativeSpeeds(),
-                                        newSetpoint.moduleStates(),
-                                        newSetpoint.feedforwards().linearForces());
-                      prevSetpoint.set(newSetpoint);
-                      previousTime.set(newTime);
-
-                    });
+    return run(() -> swerveDrive.driveWithSetpointGenerator(robotRelativeChassisSpeed.get()));
   }
 
   /**
-   * Drive with 254's Setpoint generator; port written by PathPlanner.
+   * Drive with 254's Setpoint generator, using the swervelib implementation.
    *
    * @param fieldRelativeSpeeds Field-Relative {@link ChassisSpeeds}
    * @return Command to drive the robot using the setpoint generator.
    */
   public Command driveWithSetpointGeneratorFieldRelative(Supplier<ChassisSpeeds> fieldRelativeSpeeds)
   {
-    try
-    {
-      return driveWithSetpointGenerator(() -> {
-        return ChassisSpeeds.fromFieldRelativeSpeeds(fieldRelativeSpeeds.get(), getHeading());
-
-      });
-    } catch (Exception e)
-    {
-      DriverStation.reportError(e.toString(), true);
-    }
-    return Commands.none();
+    return driveWithSetpointGenerator(() -> {
+      return ChassisSpeeds.fromFieldRelativeSpeeds(fieldRelativeSpeeds.get(), getHeading());
 
+    });
   }
 
 
@@ -397,6 +364,25 @@ public class SwerveSubsystem extends SubsystemBase
     swerveDrive.replaceSwerveModuleFeedforward(new SimpleMotorFeedforward(kS, kV, kA));
   }
 
+  /**
+   * Limit acceleration to prevent tipping, taking mechanisms which move mass (e.g. the elevator) into account.
+   * {@link Constants#ROBOT_MASS} includes the mechanisms, so their moving mass is taken out of the static chassis.
+   *
+   * @param providers Mechanisms which move mass, none to only use the chassis.
+   */
+  public void setTippingLimiter(MassProvider... providers)
+  {
+    double chassisMass = Constants.CHASSIS.mass;
+    for (MassProvider provider : providers)
+    {
+      chassisMass -= provider.getMatter(provider.getMinPosition()).mass;
+    }
+    Matter chassis = new Matter(Constants.CHASSIS.position, chassisMass);
+    swerveDrive.setTippingLimiter(new DynamicTippingLimiter(List.of(chassis),
+                                                            List.of(providers),
+                                                            swerveDrive.swerveDriveConfiguration));
+  }
+
   /**
    * Command to drive the robot using translative values and heading as angular velocity.
    *
@@ -681,6 +667,21 @@ public class SwerveSubsystem extends SubsystemBase
     return swerveDrive.swerveController;
   }
 
+  /**
+   * Get the time over which to limit velocity changes against tipping, one robot loop plus the measured actuation
+   * latency once it has been estimated, {@link Constants#LOOP_TIME} until then.
+   *
+   * @return Velocity limit period in seconds.
+   */
+  public double getVelocityLimitPeriod()
+  {
+    if (swerveDrive.hasActuationLatencyEstimate())
+    {
+      return TimedRobot.kDefaultPeriod + swerveDrive.getActuationLatency();
+    }
+    return Constants.LOOP_TIME;
+  }
+
   /**
    * Get the {@link SwerveDriveConfiguration} object.
    *
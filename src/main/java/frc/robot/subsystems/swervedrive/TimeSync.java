@@ -0,0 +1,201 @@
+package frc.robot.subsystems.swervedrive;
+
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.IntegerPublisher;
+import edu.wpi.first.networktables.NetworkTable;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.util.WPIUtilJNI;
+import edu.wpi.first.wpilibj.Timer;
+
+/**
+ * Estimates the offset and drift between the NT time base, which camera capture timestamps are in, and the FPGA time
+ * base of {@link Timer#getFPGATimestamp()}, which the pose estimator and its odometry history are in. Both clocks are
+ * read back to back every {@link TimeSync#SAMPLE_PERIOD} and a line is fit through the offsets of the last
+ * {@link TimeSync#WINDOW} samples. On a roboRIO the offset stays near zero, in simulation the clocks diverge whenever
+ * simulated time is paused or stepped. A sample far off the fit means one clock jumped, and the fit restarts from it.
+ */
+public class TimeSync
+{
+
+  /**
+   * Number of samples the fit is made over.
+   */
+  private static final int              WINDOW        = 64;
+  /**
+   * FPGA seconds between samples.
+   */
+  private static final double           SAMPLE_PERIOD = 0.1;
+  /**
+   * Longest time in seconds reading both clocks may take, longer reads were preempted and are skipped.
+   */
+  private static final double           MAX_BRACKET   = 0.001;
+  /**
+   * Distance in seconds from the fit which restarts it.
+   */
+  private static final double           MAX_RESIDUAL  = 0.005;
+  /**
+   * NT time of each sample in seconds.
+   */
+  private final        double[]         ntTimes       = new double[WINDOW];
+  /**
+   * FPGA minus NT time of each sample in seconds.
+   */
+  private final        double[]         offsets       = new double[WINDOW];
+  /**
+   * Offset publisher.
+   */
+  private final        DoublePublisher  offsetPublisher;
+  /**
+   * Drift publisher.
+   */
+  private final        DoublePublisher  driftPublisher;
+  /**
+   * Restart publisher.
+   */
+  private final        IntegerPublisher resetPublisher;
+  /**
+   * Index the next sample is written to.
+   */
+  private              int              head          = 0;
+  /**
+   * Number of samples in the window.
+   */
+  private              int              size          = 0;
+  /**
+   * FPGA time of the last sample in seconds.
+   */
+  private              double           lastSample    = Double.NEGATIVE_INFINITY;
+  /**
+   * NT time in seconds the fit is centered on.
+   */
+  private              double           referenceTime = 0;
+  /**
+   * Fit offset at {@link TimeSync#referenceTime} in seconds.
+   */
+  private              double           offset        = 0;
+  /**
+   * Fit drift in seconds per second.
+   */
+  private              double           drift         = 0;
+  /**
+   * Number of times a clock jump restarted the fit.
+   */
+  private              long             resets        = 0;
+
+  /**
+   * Create the time sync and take the first sample, so conversions are valid right away.
+   */
+  public TimeSync()
+  {
+    NetworkTable table = NetworkTableInstance.getDefault().getTable("SmartDashboard");
+    offsetPublisher = table.getDoubleTopic("vision/timeSync/offsetMs").publish();
+    driftPublisher = table.getDoubleTopic("vision/timeSync/driftPpm").publish();
+    resetPublisher = table.getIntegerTopic("vision/timeSync/resets").publish();
+    update();
+  }
+
+  /**
+   * Sample both clocks and refit if a sample is due. Call periodically.
+   */
+  public synchronized void update()
+  {
+    double before = Timer.getFPGATimestamp();
+    if (before - lastSample < SAMPLE_PERIOD)
+    {
+      return;
+    }
+    double ntTime = WPIUtilJNI.now() / 1e6;
+    double after  = Timer.getFPGATimestamp();
+    if (after - before > MAX_BRACKET)
+    {
+      return;
+    }
+    lastSample = after;
+
+    double sample = (before + after) / 2 - ntTime;
+    if (size > 0 && Math.abs(sample - getOffset(ntTime)) > MAX_RESIDUAL)
+    {
+      size = 0;
+      resets++;
+    }
+    ntTimes[head] = ntTime;
+    offsets[head] = sample;
+    head = (head + 1) % WINDOW;
+    size = Math.min(size + 1, WINDOW);
+    fit();
+
+    offsetPublisher.set(offset * 1e3);
+    driftPublisher.set(drift * 1e6);
+    resetPublisher.set(resets);
+  }
+
+  /**
+   * Least squares fit of a line through the samples in the window.
+   */
+  private void fit()
+  {
+    double timeSum   = 0;
+    double offsetSum = 0;
+    for (int i = 0; i < size; i++)
+    {
+      int index = (head - 1 - i + WINDOW) % WINDOW;
+      timeSum += ntTimes[index];
+      offsetSum += offsets[index];
+    }
+    referenceTime = timeSum / size;
+    offset = offsetSum / size;
+
+    double covariance = 0;
+    double variance   = 0;
+    for (int i = 0; i < size; i++)
+    {
+      int    index = (head - 1 - i + WINDOW) % WINDOW;
+      double dt    = ntTimes[index] - referenceTime;
+      covariance += dt * (offsets[index] - offset);
+      variance += dt * dt;
+    }
+    drift = variance > 0 ? covariance / variance : 0;
+  }
+
+  /**
+   * Get the FPGA minus NT time offset at an NT time.
+   *
+   * @param ntSeconds NT time in seconds.
+   * @return Offset in seconds.
+   */
+  public synchronized double getOffset(double ntSeconds)
+  {
+    return offset + drift * (ntSeconds - referenceTime);
+  }
+
+  /**
+   * Convert an NT timestamp, like a camera capture timestamp, into the FPGA time base.
+   *
+   * @param ntSeconds NT time in seconds.
+   * @return FPGA time in seconds.
+   */
+  public double toFpgaSeconds(double ntSeconds)
+  {
+    return ntSeconds + getOffset(ntSeconds);
+  }
+
+  /**
+   * Get the fit drift.
+   *
+   * @return Drift of the FPGA clock against the NT clock in seconds per second.
+   */
+  public synchronized double getDrift()
+  {
+    return drift;
+  }
+
+  /**
+   * Get the number of times a clock jump restarted the fit.
+   *
+   * @return Restarts.
+   */
+  public synchronized long getResets()
+  {
+    return resets;
+  }
+}
@@ -1,9 +1,5 @@
 package frc.robot.subsystems.swervedrive;
 
-import static edu.wpi.first.units.Units.Microseconds;
-import static edu.wpi.first.units.Units.Milliseconds;
-import static edu.wpi.first.units.Units.Seconds;
-
 import edu.wpi.first.apriltag.AprilTagFieldLayout;
 import edu.wpi.first.apriltag.AprilTagFields;
 import edu.wpi.first.math.Matrix;
@@ -18,15 +14,22 @@ import edu.wpi.first.math.geometry.Translation3d;
 import edu.wpi.first.math.numbers.N1;
 import edu.wpi.first.math.numbers.N3;
 import edu.wpi.first.math.util.Units;
-import edu.wpi.first.networktables.NetworkTablesJNI;
+import edu.wpi.first.networktables.NetworkTableEvent;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.NetworkTableListenerPoller;
 import edu.wpi.first.wpilibj.Alert;
 import edu.wpi.first.wpilibj.Alert.AlertType;
+import edu.wpi.first.util.WPIUtilJNI;
 import edu.wpi.first.wpilibj.smartdashboard.Field2d;
+import frc.robot.Constants.VisionConstants;
 import frc.robot.Robot;
 import java.awt.Desktop;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.DoubleFunction;
 import java.util.function.Supplier;
 import org.photonvision.EstimatedRobotPose;
 import org.photonvision.PhotonCamera;
@@ -52,28 +55,57 @@ public class Vision
   /**
    * April Tag Field Layout of the year.
    */
-  public static final AprilTagFieldLayout fieldLayout                     = AprilTagFieldLayout.loadField(
+  public static final AprilTagFieldLayout      fieldLayout                     = AprilTagFieldLayout.loadField(
       AprilTagFields.k2025ReefscapeWelded);
+  /**
+   * Tag poses of the {@link Vision#fieldLayout} indexed by fiducial ID.
+   */
+  public static final AprilTagTable            tagTable                        = new AprilTagTable(fieldLayout);
   /**
    * Ambiguity defined as a value between (0,1). Used in {@link Vision#filterPose}.
    */
-  private final       double              maximumAmbiguity                = 0.25;
+  private final       double                   maximumAmbiguity                = 0.25;
   /**
    * Photon Vision Simulation
    */
-  public              VisionSystemSim     visionSim;
+  public              VisionSystemSim          visionSim;
+  /**
+   * Geometric vision simulation used instead of {@link Vision#visionSim} when {@link VisionConstants#HEADLESS_SIM} is
+   * set.
+   */
+  private             HeadlessVisionSim        headlessVisionSim;
   /**
    * Count of times that the odom thinks we're more than 10meters away from the april tag.
    */
-  private             double              longDistangePoseEstimationCount = 0;
+  private             double                   longDistangePoseEstimationCount = 0;
   /**
    * Current pose from the pose estimator using wheel odometry.
    */
-  private             Supplier<Pose2d>    currentPose;
+  private             Supplier<Pose2d>         currentPose;
   /**
    * Field from {@link swervelib.SwerveDrive#field}
    */
-  private             Field2d             field2d;
+  private             Field2d                  field2d;
+  /**
+   * Outlier gate checking measurements against the odometry history, created with the first measurement.
+   */
+  private             VisionGate               gate;
+  /**
+   * Fusion stage grouping results from every camera into joint solves, created with the first result.
+   */
+  private             VisionFusion             fusion;
+  /**
+   * Recorder of every camera result, created with the first result and empty when recording is disabled.
+   */
+  private             Optional<VisionRecorder> recorder;
+  /**
+   * Worker threads processing each camera, empty when vision runs on the main loop.
+   */
+  private final       List<VisionWorker>       workers                         = new ArrayList<>();
+  /**
+   * NT to FPGA clock offset estimate, converts capture timestamps into the pose estimator time base.
+   */
+  private final       TimeSync                 timeSync                        = new TimeSync();
 
 
   /**
@@ -89,15 +121,25 @@ public class Vision
 
     if (Robot.isSimulation())
     {
-      visionSim = new VisionSystemSim("Vision");
-      visionSim.addAprilTags(fieldLayout);
-
-      for (Cameras c : Cameras.values())
+      if (VisionConstants.HEADLESS_SIM)
       {
-        c.addToVisionSim(visionSim);
-      }
+        headlessVisionSim = new HeadlessVisionSim();
+        for (Cameras c : Cameras.values())
+        {
+          c.addToHeadlessVisionSim(headlessVisionSim);
+        }
+      } else
+      {
+        visionSim = new VisionSystemSim("Vision");
+        visionSim.addAprilTags(fieldLayout);
+
+        for (Cameras c : Cameras.values())
+        {
+          c.addToVisionSim(visionSim);
+        }
 
-      openSimCameraViews();
+        openSimCameraViews();
+      }
     }
   }
 
@@ -111,10 +153,10 @@ public class Vision
    */
   public static Pose2d getAprilTagPose(int aprilTag, Transform2d robotOffset)
   {
-    Optional<Pose3d> aprilTagPose3d = fieldLayout.getTagPose(aprilTag);
-    if (aprilTagPose3d.isPresent())
+    Pose2d aprilTagPose = tagTable.getPose2d(aprilTag);
+    if (aprilTagPose != null)
     {
-      return aprilTagPose3d.get().toPose2d().transformBy(robotOffset);
+      return aprilTagPose.transformBy(robotOffset);
     } else
     {
       throw new RuntimeException("Cannot get AprilTag " + aprilTag + " from field " + fieldLayout.toString());
@@ -123,12 +165,191 @@ public class Vision
   }
 
   /**
-   * Update the pose estimation inside of {@link SwerveDrive} with all of the given poses.
+   * Process each camera on its own worker thread, adding vision measurements to the {@link SwerveDrive} as soon as the
+   * results are read instead of in {@link Vision#updatePoseEstimation(SwerveDrive)}.
+   *
+   * @param swerveDrive {@link SwerveDrive} instance.
+   */
+  public void startWorkers(SwerveDrive swerveDrive)
+  {
+    stopWorkers();
+    for (Cameras camera : Cameras.values())
+    {
+      workers.add(new VisionWorker("Vision-" + camera.name(), () -> {
+        // Wake up by the end of the open fusion group's window at the latest, so it is closed without waiting for a
+        // later result or the main loop.
+        VisionFusion visionFusion = getFusion(swerveDrive);
+        if (camera.waitForResults(Math.min(0.1, visionFusion.getTimeUntilStale())))
+        {
+          processCamera(camera, swerveDrive);
+        }
+        visionFusion.flushStale();
+      }, 0));
+    }
+  }
+
+  /**
+   * Stop the camera worker threads, {@link Vision#updatePoseEstimation(SwerveDrive)} processes the cameras again.
+   */
+  public void stopWorkers()
+  {
+    for (VisionWorker worker : workers)
+    {
+      worker.close();
+    }
+    workers.clear();
+  }
+
+  /**
+   * Read the unread results of a camera, estimate a pose from each and pass them to the {@link VisionFusion} stage,
+   * which adds the vision measurements.
+   *
+   * @param camera      Camera to process.
+   * @param swerveDrive {@link SwerveDrive} instance.
+   */
+  private void processCamera(Cameras camera, SwerveDrive swerveDrive)
+  {
+    VisionFusion visionFusion = getFusion(swerveDrive);
+    Optional<VisionRecorder> visionRecorder = getRecorder(swerveDrive);
+    for (PhotonPipelineResult result : camera.readUnreadResults())
+    {
+      visionRecorder.ifPresent(r -> r.record(camera, result));
+      Optional<EstimatedRobotPose> poseEst = estimate(camera, result,
+                                                      timestamp -> samplePoseAt(swerveDrive, timestamp));
+      visionFusion.add(camera, result, poseEst, camera.curStdDevs);
+      updateDebugField(poseEst);
+    }
+  }
+
+  /**
+   * Estimate the robot pose from a camera result. Results with a single tag are solved with the heading from the pose
+   * history, everything else goes through the camera's {@link PhotonPoseEstimator}.
+   *
+   * @param camera      Camera the result came from.
+   * @param result      Camera result, given in timestamp order for each camera.
+   * @param poseHistory Odometry history, gives the pose at a timestamp or empty when there is none.
+   * @return An {@link EstimatedRobotPose}, empty if no pose could be estimated.
+   */
+  static Optional<EstimatedRobotPose> estimate(Cameras camera, PhotonPipelineResult result,
+                                               DoubleFunction<Optional<Pose2d>> poseHistory)
+  {
+    if (result.getTargets().size() == 1)
+    {
+      // Fix the heading from the pose history so a single tag only has to solve the translation.
+      Optional<Pose2d> historyPose = poseHistory.apply(result.getTimestampSeconds());
+      if (historyPose.isPresent())
+      {
+        Optional<EstimatedRobotPose> poseEst = camera.estimateSingleTag(result, historyPose.get().getRotation());
+        if (poseEst.isPresent())
+        {
+          camera.telemetry.solved(WPIUtilJNI.now());
+          return poseEst;
+        }
+      }
+    }
+    Optional<EstimatedRobotPose> poseEst = camera.estimate(result);
+    camera.telemetry.solved(WPIUtilJNI.now());
+    return poseEst;
+  }
+
+  /**
+   * Get the vision recorder, creating it on first use if {@link VisionRecorder#DIRECTORY_VARIABLE} is set.
+   *
+   * @param swerveDrive {@link SwerveDrive} to read the odometry state from.
+   * @return {@link VisionRecorder}, empty if recording is disabled.
+   */
+  private synchronized Optional<VisionRecorder> getRecorder(SwerveDrive swerveDrive)
+  {
+    if (recorder == null)
+    {
+      recorder = VisionRecorder.fromEnvironment(swerveDrive, timeSync);
+    }
+    return recorder;
+  }
+
+  /**
+   * Get the fusion stage, creating it on first use.
+   *
+   * @param swerveDrive {@link SwerveDrive} to add the measurements to.
+   * @return {@link VisionFusion} for the drive.
+   */
+  private synchronized VisionFusion getFusion(SwerveDrive swerveDrive)
+  {
+    if (fusion == null)
+    {
+      fusion = new VisionFusion(timestamp -> samplePoseAt(swerveDrive, timestamp),
+                                (pose, timestamp, stdDevs) -> addVisionMeasurement(swerveDrive,
+                                                                                   pose,
+                                                                                   timestamp,
+                                                                                   stdDevs));
+    }
+    return fusion;
+  }
+
+  /**
+   * Get the outlier gate, creating it on first use.
+   *
+   * @param swerveDrive {@link SwerveDrive} to sample the odometry history from.
+   * @return {@link VisionGate} for the drive.
+   */
+  private synchronized VisionGate getGate(SwerveDrive swerveDrive)
+  {
+    if (gate == null)
+    {
+      gate = new VisionGate(swerveDrive);
+    }
+    return gate;
+  }
+
+  /**
+   * Sample the odometry history of the {@link SwerveDrive} at a capture timestamp.
+   *
+   * @param swerveDrive      {@link SwerveDrive} instance.
+   * @param timestampSeconds Capture timestamp in seconds, in the NT time base.
+   * @return Pose at the timestamp, empty if there is no history.
+   */
+  private Optional<Pose2d> samplePoseAt(SwerveDrive swerveDrive, double timestampSeconds)
+  {
+    return swerveDrive.samplePoseAt(timeSync.toFpgaSeconds(timestampSeconds));
+  }
+
+  /**
+   * Add a vision measurement to the {@link SwerveDrive} if it passes the {@link VisionGate}. Measurements the standard
+   * deviation heuristic already rejected are dropped without touching the pose estimator.
+   *
+   * @param swerveDrive      {@link SwerveDrive} instance.
+   * @param visionPose       Estimated robot pose.
+   * @param timestampSeconds Capture timestamp in seconds, in the NT time base.
+   * @param stdDevs          Standard deviations of the estimate.
+   * @return True if the measurement was added to the pose estimator.
+   */
+  private boolean addVisionMeasurement(SwerveDrive swerveDrive, Pose2d visionPose, double timestampSeconds,
+                                       Matrix<N3, N1> stdDevs)
+  {
+    if (stdDevs.get(0, 0) == Double.MAX_VALUE)
+    {
+      return false;
+    }
+    double                   fpgaTimestamp = timeSync.toFpgaSeconds(timestampSeconds);
+    Optional<Matrix<N3, N1>> gatedStdDevs  = getGate(swerveDrive).gate(visionPose, fpgaTimestamp, stdDevs);
+    if (gatedStdDevs.isEmpty())
+    {
+      return false;
+    }
+    swerveDrive.addVisionMeasurement(visionPose, fpgaTimestamp, gatedStdDevs.get());
+    return true;
+  }
+
+  /**
+   * Update the pose estimation inside of {@link SwerveDrive} with all of the given poses. Only runs the vision
+   * simulation and closes stale fusion groups while the camera worker threads are running. Publishes the camera
+   * telemetry even when no results arrive.
    *
    * @param swerveDrive {@link SwerveDrive} instance.
    */
   public void updatePoseEstimation(SwerveDrive swerveDrive)
   {
+    timeSync.update();
     if (SwerveDriveTelemetry.isSimulation && swerveDrive.getSimulationDriveTrainPose().isPresent())
     {
       /*
@@ -138,20 +359,27 @@ public class Vision
        * (This is why teams implement vision system to correct odometry.)
        * Therefore, we must ensure that the actual robot pose is provided in the simulator when updating the vision simulation during the simulation.
        */
-      visionSim.update(swerveDrive.getSimulationDriveTrainPose().get());
+      if (headlessVisionSim != null)
+      {
+        headlessVisionSim.update(swerveDrive.getSimulationDriveTrainPose().get());
+      } else
+      {
+        visionSim.update(swerveDrive.getSimulationDriveTrainPose().get());
+      }
     }
-    for (Cameras camera : Cameras.values())
+    if (workers.isEmpty())
     {
-      Optional<EstimatedRobotPose> poseEst = getEstimatedGlobalPose(camera);
-      if (poseEst.isPresent())
+      for (Cameras camera : Cameras.values())
       {
-        var pose = poseEst.get();
-        swerveDrive.addVisionMeasurement(pose.estimatedPose.toPose2d(),
-                                         pose.timestampSeconds,
-                                         camera.curStdDevs);
+        processCamera(camera, swerveDrive);
       }
     }
-
+    getFusion(swerveDrive).flushStale();
+    long nowMicros = WPIUtilJNI.now();
+    for (Cameras camera : Cameras.values())
+    {
+      camera.telemetry.update(nowMicros);
+    }
   }
 
   /**
@@ -166,7 +394,18 @@ public class Vision
   public Optional<EstimatedRobotPose> getEstimatedGlobalPose(Cameras camera)
   {
     Optional<EstimatedRobotPose> poseEst = camera.getEstimatedGlobalPose();
-    if (Robot.isSimulation())
+    updateDebugField(poseEst);
+    return poseEst;
+  }
+
+  /**
+   * Show a vision pose estimate on the simulation debug field.
+   *
+   * @param poseEst Estimated robot pose, clears the field object when empty.
+   */
+  private void updateDebugField(Optional<EstimatedRobotPose> poseEst)
+  {
+    if (visionSim != null)
     {
       Field2d debugField = visionSim.getDebugField();
       // Uncomment to enable outputting of vision targets in sim.
@@ -179,7 +418,6 @@ public class Vision
             debugField.getObject("VisionEstimation").setPoses();
           });
     }
-    return poseEst;
   }
 
 
@@ -238,8 +476,12 @@ public class Vision
    */
   public double getDistanceFromAprilTag(int id)
   {
-    Optional<Pose3d> tag = fieldLayout.getTagPose(id);
-    return tag.map(pose3d -> PhotonUtils.getDistanceToPose(currentPose.get(), pose3d.toPose2d())).orElse(-1.0);
+    if (!tagTable.contains(id))
+    {
+      return -1.0;
+    }
+    Pose2d pose = currentPose.get();
+    return tagTable.getDistance(id, pose.getX(), pose.getY());
   }
 
   /**
@@ -252,8 +494,9 @@ public class Vision
   public PhotonTrackedTarget getTargetFromId(int id, Cameras camera)
   {
     PhotonTrackedTarget target = null;
-    for (PhotonPipelineResult result : camera.resultsList)
+    for (int age = 0; age < camera.results.size(); age++)
     {
+      PhotonPipelineResult result = camera.results.get(age);
       if (result.hasTargets())
       {
         for (PhotonTrackedTarget i : result.getTargets())
@@ -307,23 +550,20 @@ public class Vision
     List<PhotonTrackedTarget> targets = new ArrayList<PhotonTrackedTarget>();
     for (Cameras c : Cameras.values())
     {
-      if (!c.resultsList.isEmpty())
-      {
-        PhotonPipelineResult latest = c.resultsList.get(0);
+      c.results.getLatest().ifPresent(latest -> {
         if (latest.hasTargets())
         {
           targets.addAll(latest.targets);
         }
-      }
+      });
     }
 
     List<Pose2d> poses = new ArrayList<>();
     for (PhotonTrackedTarget target : targets)
     {
-      if (fieldLayout.getTagPose(target.getFiducialId()).isPresent())
+      if (tagTable.contains(target.getFiducialId()))
       {
-        Pose2d targetPose = fieldLayout.getTagPose(target.getFiducialId()).get().toPose2d();
-        poses.add(targetPose);
+        poses.add(tagTable.getPose2d(target.getFiducialId()));
       }
     }
 
@@ -366,48 +606,71 @@ public class Vision
     /**
      * Latency alert to use when high latency is detected.
      */
-    public final  Alert                        latencyAlert;
+    public final    Alert                        latencyAlert;
+    /**
+     * Latency, frame rate and multi-tag telemetry, drives the {@link Cameras#latencyAlert}.
+     */
+    public final    CameraLatencyTelemetry       telemetry;
+    /**
+     * Standard deviations which make the pose estimator ignore a measurement.
+     */
+    private static final Matrix<N3, N1>                   REJECTED_STD_DEVS       = VecBuilder.fill(Double.MAX_VALUE,
+                                                                                                    Double.MAX_VALUE,
+                                                                                                    Double.MAX_VALUE);
+    /**
+     * Orders results from oldest to newest.
+     */
+    private static final Comparator<PhotonPipelineResult> TIMESTAMP_ORDER         =
+        Comparator.comparingDouble(PhotonPipelineResult::getTimestampSeconds);
+    /**
+     * Largest tag distance in meters the heading constrained single tag solve is used at.
+     */
+    private static final double                           MAX_SINGLE_TAG_DISTANCE = 8;
     /**
      * Camera instance for comms.
      */
-    public final  PhotonCamera                 camera;
+    public final    PhotonCamera                 camera;
     /**
      * Pose estimator for camera.
      */
-    public final  PhotonPoseEstimator          poseEstimator;
+    public final    PhotonPoseEstimator          poseEstimator;
     /**
      * Standard Deviation for single tag readings for pose estimation.
      */
-    private final Matrix<N3, N1>               singleTagStdDevs;
+    private final   Matrix<N3, N1>               singleTagStdDevs;
     /**
      * Standard deviation for multi-tag readings for pose estimation.
      */
-    private final Matrix<N3, N1>               multiTagStdDevs;
+    private final   Matrix<N3, N1>               multiTagStdDevs;
     /**
      * Transform of the camera rotation and translation relative to the center of the robot
      */
-    private final Transform3d                  robotToCamTransform;
+    private final   Transform3d                  robotToCamTransform;
     /**
      * Current standard deviations used.
      */
-    public        Matrix<N3, N1>               curStdDevs;
+    public volatile Matrix<N3, N1>               curStdDevs;
     /**
      * Estimated robot pose.
      */
-    public        Optional<EstimatedRobotPose> estimatedRobotPose = Optional.empty();
+    public volatile Optional<EstimatedRobotPose> estimatedRobotPose = Optional.empty();
 
     /**
      * Simulated camera instance which only exists during simulations.
      */
-    public        PhotonCameraSim              cameraSim;
+    public          PhotonCameraSim              cameraSim;
+    /**
+     * Simulated camera properties which only exist during simulations.
+     */
+    private         SimCameraProperties          cameraProp;
     /**
-     * Results list to be updated periodically and cached to avoid unnecessary queries.
+     * Most recent results from the camera in timestamp order.
      */
-    public        List<PhotonPipelineResult>   resultsList       = new ArrayList<>();
+    public final    PipelineResultBuffer         results            = new PipelineResultBuffer(16);
     /**
-     * Last read from the camera timestamp to prevent lag due to slow data fetches.
+     * Poller signalled by NetworkTables whenever the camera publishes a result.
      */
-    private       double                       lastReadTimestamp = Microseconds.of(NetworkTablesJNI.now()).in(Seconds);
+    private final   NetworkTableListenerPoller   resultPoller;
 
     /**
      * Construct a Photon Camera class with help. Standard deviations are fake values, experiment and determine
@@ -423,8 +686,15 @@ public class Vision
             Matrix<N3, N1> singleTagStdDevs, Matrix<N3, N1> multiTagStdDevsMatrix)
     {
       latencyAlert = new Alert("'" + name + "' Camera is experiencing high latency.", AlertType.kWarning);
+      telemetry = new CameraLatencyTelemetry(name, latencyAlert, VisionConstants.LATENCY_ALERT_MS);
 
       camera = new PhotonCamera(name);
+      resultPoller = new NetworkTableListenerPoller(NetworkTableInstance.getDefault());
+      resultPoller.addListener(NetworkTableInstance.getDefault()
+                                                   .getTable("photonvision")
+                                                   .getSubTable(name)
+                                                   .getRawTopic("rawBytes"),
+                               EnumSet.of(NetworkTableEvent.Kind.kValueAll));
 
       // https://docs.wpilib.org/en/stable/docs/software/basic-programming/coordinate-system.html
       robotToCamTransform = new Transform3d(robotToCamTranslation, robotToCamRotation);
@@ -439,19 +709,28 @@ public class Vision
 
       if (Robot.isSimulation())
       {
-        SimCameraProperties cameraProp = new SimCameraProperties();
+        cameraProp = new SimCameraProperties();
         // A 640 x 480 camera with a 100 degree diagonal FOV.
         cameraProp.setCalibration(960, 720, Rotation2d.fromDegrees(100));
         // Approximate detection noise with average and standard deviation error in pixels.
         cameraProp.setCalibError(0.25, 0.08);
         // Set the camera image capture framerate (Note: this is limited by robot loop rate).
-        cameraProp.setFPS(30);
+        cameraProp.setFPS(VisionConstants.SIM_FPS);
         // The average and standard deviation in milliseconds of image data latency.
-        cameraProp.setAvgLatencyMs(35);
-        cameraProp.setLatencyStdDevMs(5);
+        cameraProp.setAvgLatencyMs(VisionConstants.SIM_LATENCY_MS);
+        cameraProp.setLatencyStdDevMs(VisionConstants.SIM_LATENCY_STD_DEV_MS);
 
         cameraSim = new PhotonCameraSim(camera, cameraProp);
-        cameraSim.enableDrawWireframe(true);
+        if (VisionConstants.HEADLESS_SIM)
+        {
+          // Nothing is rendered, results are computed by the HeadlessVisionSim.
+          cameraSim.enableRawStream(false);
+          cameraSim.enableProcessedStream(false);
+          cameraSim.enableDrawWireframe(false);
+        } else
+        {
+          cameraSim.enableDrawWireframe(true);
+        }
       }
     }
 
@@ -468,6 +747,40 @@ public class Vision
       }
     }
 
+    /**
+     * Add camera to {@link HeadlessVisionSim} for geometric simulated photon vision.
+     *
+     * @param systemSim {@link HeadlessVisionSim} to use.
+     */
+    public void addToHeadlessVisionSim(HeadlessVisionSim systemSim)
+    {
+      if (Robot.isSimulation())
+      {
+        systemSim.addCamera(cameraSim, cameraProp, robotToCamTransform);
+      }
+    }
+
+    /**
+     * Get the transform of the camera relative to the center of the robot.
+     *
+     * @return {@link Transform3d} of the camera.
+     */
+    Transform3d getRobotToCamTransform()
+    {
+      return robotToCamTransform;
+    }
+
+    /**
+     * Get the multi-tag standard deviations of this camera at a distance, as used by the estimation heuristic.
+     *
+     * @param averageDistance Average distance to the tags in meters.
+     * @return Standard deviations [x, y, theta].
+     */
+    Matrix<N3, N1> getMultiTagStdDevs(double averageDistance)
+    {
+      return multiTagStdDevs.times(1 + (averageDistance * averageDistance / 30));
+    }
+
     /**
      * Get the result with the least ambiguity from the best tracked target within the Cache. This may not be the most
      * recent result!
@@ -476,24 +789,7 @@ public class Vision
      */
     public Optional<PhotonPipelineResult> getBestResult()
     {
-      if (resultsList.isEmpty())
-      {
-        return Optional.empty();
-      }
-
-      PhotonPipelineResult bestResult       = resultsList.get(0);
-      double               amiguity         = bestResult.getBestTarget().getPoseAmbiguity();
-      double               currentAmbiguity = 0;
-      for (PhotonPipelineResult result : resultsList)
-      {
-        currentAmbiguity = result.getBestTarget().getPoseAmbiguity();
-        if (currentAmbiguity < amiguity && currentAmbiguity > 0)
-        {
-          bestResult = result;
-          amiguity = currentAmbiguity;
-        }
-      }
-      return Optional.of(bestResult);
+      return results.getBest();
     }
 
     /**
@@ -503,7 +799,7 @@ public class Vision
      */
     public Optional<PhotonPipelineResult> getLatestResult()
     {
-      return resultsList.isEmpty() ? Optional.empty() : Optional.of(resultsList.get(0));
+      return results.getLatest();
     }
 
     /**
@@ -519,51 +815,126 @@ public class Vision
     }
 
     /**
-     * Update the latest results, cached with a maximum refresh rate of 1req/15ms. Sorts the list by timestamp.
+     * Read and estimate poses from any results published since the last read.
      */
     private void updateUnreadResults()
     {
-      double mostRecentTimestamp = resultsList.isEmpty() ? 0.0 : resultsList.get(0).getTimestampSeconds();
-      double currentTimestamp    = Microseconds.of(NetworkTablesJNI.now()).in(Seconds);
-      double debounceTime        = Milliseconds.of(15).in(Seconds);
-      for (PhotonPipelineResult result : resultsList)
+      List<PhotonPipelineResult> unreadResults = readUnreadResults();
+      for (PhotonPipelineResult result : unreadResults)
       {
-        mostRecentTimestamp = Math.max(mostRecentTimestamp, result.getTimestampSeconds());
+        estimate(result);
       }
-      if ((resultsList.isEmpty() || (currentTimestamp - mostRecentTimestamp >= debounceTime)) &&
-          (currentTimestamp - lastReadTimestamp) >= debounceTime)
+    }
+
+    /**
+     * Wait until the camera publishes a result.
+     *
+     * @param timeoutSeconds Maximum time to wait in seconds.
+     * @return True if a result was published, false on timeout or interruption.
+     */
+    boolean waitForResults(double timeoutSeconds)
+    {
+      try
+      {
+        if (WPIUtilJNI.waitForObjectTimeout(resultPoller.getHandle(), timeoutSeconds))
+        {
+          return false;
+        }
+      } catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+      // Only the signal is needed, the results are read through the camera.
+      resultPoller.readQueue();
+      return true;
+    }
+
+    /**
+     * Read all unread results from the camera into {@link Cameras#results}, sorted by timestamp.
+     *
+     * @return The unread results, may be empty.
+     */
+    List<PhotonPipelineResult> readUnreadResults()
+    {
+      List<PhotonPipelineResult> unreadResults = camera.getAllUnreadResults();
+      long                       ingestMicros  = WPIUtilJNI.now();
+      resultPoller.readQueue();
+      for (int i = 1; i < unreadResults.size(); i++)
       {
-        resultsList = Robot.isReal() ? camera.getAllUnreadResults() : cameraSim.getCamera().getAllUnreadResults();
-        lastReadTimestamp = currentTimestamp;
-        resultsList.sort((PhotonPipelineResult a, PhotonPipelineResult b) -> {
-          return a.getTimestampSeconds() >= b.getTimestampSeconds() ? 1 : -1;
-        });
-        if (!resultsList.isEmpty())
+        if (unreadResults.get(i).getTimestampSeconds() < unreadResults.get(i - 1).getTimestampSeconds())
         {
-          updateEstimatedGlobalPose();
+          unreadResults.sort(TIMESTAMP_ORDER);
+          break;
         }
       }
+      for (PhotonPipelineResult result : unreadResults)
+      {
+        results.add(result);
+        telemetry.ingested(result, ingestMicros);
+      }
+      return unreadResults;
     }
 
     /**
-     * The latest estimated robot pose on the field from vision data. This may be empty. This should only be called once
-     * per loop.
+     * Estimate the robot pose from a single result, updating {@link Cameras#curStdDevs} and
+     * {@link Cameras#estimatedRobotPose}. Results must be given in timestamp order.
      *
-     * <p>Also includes updates for the standard deviations, which can (optionally) be retrieved with
-     * {@link Cameras#updateEstimationStdDevs}
+     * @param result Result to estimate the pose from.
+     * @return An {@link EstimatedRobotPose}, empty if no pose could be estimated.
+     */
+    Optional<EstimatedRobotPose> estimate(PhotonPipelineResult result)
+    {
+      Optional<EstimatedRobotPose> visionEst = poseEstimator.update(result);
+      updateEstimationStdDevs(visionEst, result.getTargets());
+      estimatedRobotPose = visionEst;
+      return visionEst;
+    }
+
+    /**
+     * Estimate the robot pose from a result with a single tag, with the heading fixed to a known value. The tag
+     * direction comes from the target yaw and pitch and the distance from the coprocessor's solve, so only the
+     * translation is solved and the pose ambiguity of a single tag does not matter. Updates
+     * {@link Cameras#curStdDevs} and {@link Cameras#estimatedRobotPose}, with a heading standard deviation that keeps
+     * the pose estimator from correcting its own heading.
      *
-     * @return An {@link EstimatedRobotPose} with an estimated pose, estimate timestamp, and targets used for
-     * estimation.
+     * @param result  Result with one target.
+     * @param heading Robot heading at the capture time, from the pose history.
+     * @return An {@link EstimatedRobotPose}, empty if the tag is not on the field or too far away to use.
      */
-    private void updateEstimatedGlobalPose()
+    Optional<EstimatedRobotPose> estimateSingleTag(PhotonPipelineResult result, Rotation2d heading)
     {
-      Optional<EstimatedRobotPose> visionEst = Optional.empty();
-      for (var change : resultsList)
+      PhotonTrackedTarget target   = result.getBestTarget();
+      int                 id       = target.getFiducialId();
+      double              distance = target.getBestCameraToTarget().getTranslation().getNorm();
+      if (!tagTable.contains(id) || distance <= 0 || distance > MAX_SINGLE_TAG_DISTANCE)
       {
-        visionEst = poseEstimator.update(change);
-        updateEstimationStdDevs(visionEst, change.getTargets());
+        return Optional.empty();
       }
+
+      // PhotonVision yaw is positive to the right, the camera frame is positive to the left.
+      double        yaw        = Math.toRadians(-target.getYaw());
+      double        pitch      = Math.toRadians(target.getPitch());
+      Translation3d robotToTag = new Translation3d(distance * Math.cos(pitch) * Math.cos(yaw),
+                                                   distance * Math.cos(pitch) * Math.sin(yaw),
+                                                   distance * Math.sin(pitch))
+          .rotateBy(robotToCamTransform.getRotation())
+          .plus(robotToCamTransform.getTranslation());
+
+      double cos = heading.getCos();
+      double sin = heading.getSin();
+      double x   = tagTable.getX(id) - (cos * robotToTag.getX() - sin * robotToTag.getY());
+      double y   = tagTable.getY(id) - (sin * robotToTag.getX() + cos * robotToTag.getY());
+
+      Matrix<N3, N1> translationStdDevs = singleTagStdDevs.times(1 + (distance * distance / 30));
+      curStdDevs = VecBuilder.fill(translationStdDevs.get(0, 0), translationStdDevs.get(1, 0), Double.MAX_VALUE);
+      Optional<EstimatedRobotPose> visionEst = Optional.of(
+          new EstimatedRobotPose(new Pose3d(x, y, 0, new Rotation3d(0, 0, heading.getRadians())),
+                                 result.getTimestampSeconds(),
+                                 result.getTargets(),
+                                 PoseStrategy.PNP_DISTANCE_TRIG_SOLVE));
       estimatedRobotPose = visionEst;
+      return visionEst;
     }
 
     /**
@@ -588,21 +959,19 @@ public class Vision
         int    numTags    = 0;
         double avgDist    = 0;
 
+        double robotX     = estimatedPose.get().estimatedPose.getX();
+        double robotY     = estimatedPose.get().estimatedPose.getY();
+
         // Precalculation - see how many tags we found, and calculate an average-distance metric
-        for (var tgt : targets)
+        for (int i = 0; i < targets.size(); i++)
         {
-          var tagPose = poseEstimator.getFieldTags().getTagPose(tgt.getFiducialId());
-          if (tagPose.isEmpty())
+          int id = targets.get(i).getFiducialId();
+          if (!tagTable.contains(id))
           {
             continue;
           }
           numTags++;
-          avgDist +=
-              tagPose
-                  .get()
-                  .toPose2d()
-                  .getTranslation()
-                  .getDistance(estimatedPose.get().estimatedPose.toPose2d().getTranslation());
+          avgDist += tagTable.getDistance(id, robotX, robotY);
         }
 
         if (numTags == 0)
@@ -621,7 +990,7 @@ public class Vision
           // Increase std devs based on (average) distance
           if (numTags == 1 && avgDist > 4)
           {
-            estStdDevs = VecBuilder.fill(Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE);
+            estStdDevs = REJECTED_STD_DEVS;
           } else
           {
             estStdDevs = estStdDevs.times(1 + (avgDist * avgDist / 30));
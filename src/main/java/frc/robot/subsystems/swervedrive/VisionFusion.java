@@ -0,0 +1,469 @@
+package frc.robot.subsystems.swervedrive;
+
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Transform2d;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N3;
+import edu.wpi.first.util.WPIUtilJNI;
+import edu.wpi.first.wpilibj.Timer;
+import frc.robot.subsystems.swervedrive.Vision.Cameras;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.DoubleFunction;
+import org.photonvision.EstimatedRobotPose;
+import org.photonvision.targeting.PhotonPipelineResult;
+import org.photonvision.targeting.PhotonTrackedTarget;
+import swervelib.SwerveDrive;
+
+/**
+ * Groups camera results captured within a time window and solves one robot pose from the targets of every camera in
+ * the group with {@link MultiCameraPoseSolver}. Single tag views from two cameras become one multi-tag measurement
+ * instead of two weak ones. Groups with only one camera, or which fail to solve, fall back to each camera's own
+ * estimate.
+ */
+public class VisionFusion
+{
+
+  /**
+   * Receives the measurements to add to the pose estimator.
+   */
+  @FunctionalInterface
+  public interface MeasurementConsumer
+  {
+
+    /**
+     * Accept a vision measurement.
+     *
+     * @param pose             Robot pose.
+     * @param timestampSeconds Capture timestamp in seconds.
+     * @param stdDevs          Standard deviations [x, y, theta].
+     * @return True if the measurement was added to the pose estimator, false if it was dropped.
+     */
+    boolean accept(Pose2d pose, double timestampSeconds, Matrix<N3, N1> stdDevs);
+  }
+
+  /**
+   * One camera result waiting to be fused.
+   */
+  private static class Observation
+  {
+
+    /**
+     * Camera the result came from.
+     */
+    final Cameras                      camera;
+    /**
+     * Camera result.
+     */
+    final PhotonPipelineResult         result;
+    /**
+     * Pose estimated from the result by the camera alone.
+     */
+    final Optional<EstimatedRobotPose> estimate;
+    /**
+     * Standard deviations of the camera's own estimate.
+     */
+    final Matrix<N3, N1>               stdDevs;
+    /**
+     * NT time in microseconds the camera's estimate was solved.
+     */
+    final long                         solvedMicros = WPIUtilJNI.now();
+
+    /**
+     * Create the observation.
+     *
+     * @param camera   Camera the result came from.
+     * @param result   Camera result.
+     * @param estimate Pose estimated from the result by the camera alone.
+     * @param stdDevs  Standard deviations of the camera's own estimate.
+     */
+    Observation(Cameras camera, PhotonPipelineResult result, Optional<EstimatedRobotPose> estimate,
+                Matrix<N3, N1> stdDevs)
+    {
+      this.camera = camera;
+      this.result = result;
+      this.estimate = estimate;
+      this.stdDevs = stdDevs;
+    }
+  }
+
+  /**
+   * Measurement closed from a group, applied to the {@link MeasurementConsumer} outside the fusion lock.
+   */
+  private static class Measurement
+  {
+
+    /**
+     * Robot pose.
+     */
+    final Pose2d            pose;
+    /**
+     * Capture timestamp in seconds.
+     */
+    final double            timestampSeconds;
+    /**
+     * Standard deviations [x, y, theta].
+     */
+    final Matrix<N3, N1>    stdDevs;
+    /**
+     * Observations the measurement was made from.
+     */
+    final List<Observation> observations;
+
+    /**
+     * Create the measurement.
+     *
+     * @param pose             Robot pose.
+     * @param timestampSeconds Capture timestamp in seconds.
+     * @param stdDevs          Standard deviations [x, y, theta].
+     * @param observations     Observations the measurement was made from.
+     */
+    Measurement(Pose2d pose, double timestampSeconds, Matrix<N3, N1> stdDevs, List<Observation> observations)
+    {
+      this.pose = pose;
+      this.timestampSeconds = timestampSeconds;
+      this.stdDevs = stdDevs;
+      this.observations = observations;
+    }
+  }
+
+  /**
+   * Odometry history used to line up results captured at different times.
+   */
+  private final DoubleFunction<Optional<Pose2d>> poseHistory;
+  /**
+   * Receives the fused and fallback measurements.
+   */
+  private final MeasurementConsumer              consumer;
+  /**
+   * Joint solver over every target of a group.
+   */
+  private final MultiCameraPoseSolver            solver        = new MultiCameraPoseSolver(32);
+  /**
+   * Results of the current group.
+   */
+  private final List<Observation>                pending       = new ArrayList<>();
+  /**
+   * Longest time between captures in one group in seconds.
+   */
+  private       double                           windowSeconds = 0.04;
+  /**
+   * Capture timestamp of the first result of the current group in seconds.
+   */
+  private       double                           groupCaptureTime;
+  /**
+   * FPGA time the first result of the current group arrived in seconds.
+   */
+  private       double                           groupArrivalTime;
+  /**
+   * Number of groups fused into one measurement.
+   */
+  private       long                             fusedCount    = 0;
+
+  /**
+   * Create the fusion stage.
+   *
+   * @param poseHistory Odometry history, gives the pose at a timestamp or empty when there is none.
+   * @param consumer    Receives the measurements to add to the pose estimator.
+   */
+  public VisionFusion(DoubleFunction<Optional<Pose2d>> poseHistory, MeasurementConsumer consumer)
+  {
+    this.poseHistory = poseHistory;
+    this.consumer = consumer;
+  }
+
+  /**
+   * Create the fusion stage.
+   *
+   * @param swerveDrive {@link SwerveDrive} to sample the odometry history from.
+   * @param consumer    Receives the measurements to add to the pose estimator.
+   */
+  public VisionFusion(SwerveDrive swerveDrive, MeasurementConsumer consumer)
+  {
+    this(swerveDrive::samplePoseAt, consumer);
+  }
+
+  /**
+   * Set the longest time between captures in one group. Results are held for up to this long after the first result
+   * of a group arrives.
+   *
+   * @param windowSeconds Window in seconds, 0.04 by default.
+   */
+  public synchronized void setWindow(double windowSeconds)
+  {
+    this.windowSeconds = windowSeconds;
+  }
+
+  /**
+   * Get the number of groups fused into one measurement.
+   *
+   * @return Fused groups.
+   */
+  public synchronized long getFusedCount()
+  {
+    return fusedCount;
+  }
+
+  /**
+   * Add a camera result, closing the current group first if the result was captured outside its window. The group is
+   * closed right away once every camera has reported, since no result can join it anymore.
+   *
+   * @param camera   Camera the result came from.
+   * @param result   Camera result.
+   * @param estimate Pose estimated from the result by the camera alone.
+   * @param stdDevs  Standard deviations of the camera's own estimate.
+   */
+  public void add(Cameras camera, PhotonPipelineResult result, Optional<EstimatedRobotPose> estimate,
+                  Matrix<N3, N1> stdDevs)
+  {
+    apply(group(camera, result, estimate, stdDevs));
+  }
+
+  /**
+   * Close the current group if it has waited longer than the window for more results. Call when a camera worker wakes
+   * up, including on timeout, and periodically.
+   */
+  public void flushStale()
+  {
+    apply(closeIfStale());
+  }
+
+  /**
+   * Close the current group, fusing it if more than one camera saw targets and otherwise passing on each camera's own
+   * estimate.
+   */
+  public void flush()
+  {
+    apply(close());
+  }
+
+  /**
+   * Get the time until the current group is stale, for camera workers to wake up and close it.
+   *
+   * @return Time in seconds, {@link Double#POSITIVE_INFINITY} when there is no group.
+   */
+  public synchronized double getTimeUntilStale()
+  {
+    if (pending.isEmpty())
+    {
+      return Double.POSITIVE_INFINITY;
+    }
+    return Math.max(0, groupArrivalTime + windowSeconds - Timer.getFPGATimestamp());
+  }
+
+  /**
+   * Add a camera result to the current group.
+   *
+   * @param camera   Camera the result came from.
+   * @param result   Camera result.
+   * @param estimate Pose estimated from the result by the camera alone.
+   * @param stdDevs  Standard deviations of the camera's own estimate.
+   * @return Measurements of the groups closed.
+   */
+  private synchronized List<Measurement> group(Cameras camera, PhotonPipelineResult result,
+                                               Optional<EstimatedRobotPose> estimate, Matrix<N3, N1> stdDevs)
+  {
+    List<Measurement> measurements = new ArrayList<>();
+    double            timestamp    = result.getTimestampSeconds();
+    if (!pending.isEmpty() && Math.abs(timestamp - groupCaptureTime) > windowSeconds)
+    {
+      measurements.addAll(close());
+    }
+    if (pending.isEmpty())
+    {
+      groupCaptureTime = timestamp;
+      groupArrivalTime = Timer.getFPGATimestamp();
+    }
+    pending.add(new Observation(camera, result, estimate, stdDevs));
+    if (reportedCameras() == Cameras.values().length)
+    {
+      measurements.addAll(close());
+    }
+    return measurements;
+  }
+
+  /**
+   * Count the cameras with a result in the current group.
+   *
+   * @return Number of cameras.
+   */
+  private int reportedCameras()
+  {
+    EnumSet<Cameras> cameras = EnumSet.noneOf(Cameras.class);
+    for (Observation observation : pending)
+    {
+      cameras.add(observation.camera);
+    }
+    return cameras.size();
+  }
+
+  /**
+   * Close the current group if it is stale.
+   *
+   * @return Measurements of the group, empty if it was not closed.
+   */
+  private synchronized List<Measurement> closeIfStale()
+  {
+    if (!pending.isEmpty() && Timer.getFPGATimestamp() - groupArrivalTime > windowSeconds)
+    {
+      return close();
+    }
+    return List.of();
+  }
+
+  /**
+   * Close the current group into the fused measurement, or each camera's own estimate if it cannot be fused.
+   *
+   * @return Measurements of the group.
+   */
+  private synchronized List<Measurement> close()
+  {
+    Cameras firstCamera = null;
+    boolean multiCamera = false;
+    for (Observation observation : pending)
+    {
+      if (!observation.result.hasTargets())
+      {
+        continue;
+      }
+      if (firstCamera == null)
+      {
+        firstCamera = observation.camera;
+      } else if (observation.camera != firstCamera)
+      {
+        multiCamera = true;
+      }
+    }
+
+    List<Measurement> measurements = new ArrayList<>();
+    Measurement       fused        = multiCamera ? fuse() : null;
+    if (fused != null)
+    {
+      measurements.add(fused);
+    } else
+    {
+      for (Observation observation : pending)
+      {
+        if (observation.estimate.isPresent())
+        {
+          EstimatedRobotPose est = observation.estimate.get();
+          measurements.add(new Measurement(est.estimatedPose.toPose2d(), est.timestampSeconds, observation.stdDevs,
+                                           List.of(observation)));
+        }
+      }
+    }
+    pending.clear();
+    return measurements;
+  }
+
+  /**
+   * Pass measurements to the {@link MeasurementConsumer}, outside the fusion lock so camera workers do not wait on the
+   * pose estimator. Only measurements the pose estimator took count towards the applied latency.
+   *
+   * @param measurements Measurements to apply.
+   */
+  private void apply(List<Measurement> measurements)
+  {
+    for (Measurement measurement : measurements)
+    {
+      if (!consumer.accept(measurement.pose, measurement.timestampSeconds, measurement.stdDevs))
+      {
+        continue;
+      }
+      long appliedMicros = WPIUtilJNI.now();
+      for (Observation observation : measurement.observations)
+      {
+        if (observation.result.hasTargets())
+        {
+          observation.camera.telemetry.applied(observation.result, observation.solvedMicros, appliedMicros);
+        }
+      }
+    }
+  }
+
+  /**
+   * Solve one pose at the newest capture time of the group from every target in it.
+   *
+   * @return Fused measurement, null if the group could not be solved.
+   */
+  private Measurement fuse()
+  {
+    double referenceTime = Double.NEGATIVE_INFINITY;
+    for (Observation observation : pending)
+    {
+      referenceTime = Math.max(referenceTime, observation.result.getTimestampSeconds());
+    }
+    Optional<Pose2d> referenceOdometry = poseHistory.apply(referenceTime);
+
+    solver.reset();
+    Pose2d         initialGuess    = referenceOdometry.orElse(null);
+    double         initialStdDev   = Double.MAX_VALUE;
+    double         distanceSum     = 0;
+    Matrix<N3, N1> multiTagStdDevs = null;
+    for (Observation observation : pending)
+    {
+      // Odometry motion from the reference time to this capture, zero when the history is unavailable.
+      Pose2d delta = Pose2d.kZero;
+      if (referenceOdometry.isPresent())
+      {
+        Optional<Pose2d> odometry = poseHistory.apply(observation.result.getTimestampSeconds());
+        if (odometry.isPresent())
+        {
+          delta = odometry.get().relativeTo(referenceOdometry.get());
+        }
+      }
+
+      boolean used = false;
+      for (PhotonTrackedTarget target : observation.result.getTargets())
+      {
+        if (solver.addObservation(observation.camera.getRobotToCamTransform(), target.getBestCameraToTarget(),
+                                  target.getFiducialId(), delta.getX(), delta.getY(),
+                                  delta.getRotation().getRadians()))
+        {
+          distanceSum += target.getBestCameraToTarget().getTranslation().getNorm();
+          used = true;
+        }
+      }
+
+      if (used && observation.estimate.isPresent() && observation.stdDevs.get(0, 0) < initialStdDev)
+      {
+        // Move the camera's own estimate back to the reference time.
+        initialStdDev = observation.stdDevs.get(0, 0);
+        initialGuess = observation.estimate.get().estimatedPose.toPose2d()
+                                           .transformBy(new Transform2d(delta.getTranslation(),
+                                                                        delta.getRotation()).inverse());
+      }
+    }
+
+    int tags = solver.getObservationCount();
+    if (initialGuess == null || tags < 2 ||
+        !solver.solve(initialGuess.getX(), initialGuess.getY(), initialGuess.getRotation().getRadians()))
+    {
+      return null;
+    }
+
+    // Treat the fused pose at least as cautiously as a multi-tag estimate from one camera at the same distance.
+    double averageDistance = distanceSum / tags;
+    for (Observation observation : pending)
+    {
+      Matrix<N3, N1> cameraStdDevs = observation.camera.getMultiTagStdDevs(averageDistance);
+      if (multiTagStdDevs == null || cameraStdDevs.get(0, 0) < multiTagStdDevs.get(0, 0))
+      {
+        multiTagStdDevs = cameraStdDevs;
+      }
+    }
+    Matrix<N3, N1> stdDevs = VecBuilder.fill(Math.max(solver.getStdDev(0), multiTagStdDevs.get(0, 0)),
+                                             Math.max(solver.getStdDev(1), multiTagStdDevs.get(1, 0)),
+                                             Math.max(solver.getStdDev(2), multiTagStdDevs.get(2, 0)));
+    fusedCount++;
+    return new Measurement(new Pose2d(solver.getX(), solver.getY(), new Rotation2d(solver.getTheta())),
+                           referenceTime,
+                           stdDevs,
+                           new ArrayList<>(pending));
+  }
+}
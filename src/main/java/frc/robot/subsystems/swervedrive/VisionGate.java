@@ -0,0 +1,240 @@
+package frc.robot.subsystems.swervedrive;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N3;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleFunction;
+import swervelib.SwerveDrive;
+
+/**
+ * Outlier gate for vision measurements. Each measurement is compared to the odometry pose interpolated at its capture
+ * time, and the Mahalanobis distance of the difference is checked against chi-squared thresholds for 3 degrees of
+ * freedom. The innovation covariance is the sum of the pose estimator's state covariance and the measurement's own
+ * covariance, both diagonal. Measurements past the down-weight threshold have their standard deviations inflated,
+ * measurements past the reject threshold never reach the pose estimator.
+ * <p>
+ * Odometry drifts while no vision is applied, so the state variance grows with the time since the last measurement
+ * passed. When odometry is wrong for good, e.g. after a collision or a bad reset, the gate would otherwise reject
+ * vision forever. Rejected measurements which agree with each other mean odometry is off, not the cameras, so after
+ * {@link VisionGate#RECOVERY_COUNT} mutually consistent rejections in a row they are passed again until the estimate
+ * converges back inside the gate.
+ */
+public class VisionGate
+{
+
+  /**
+   * Chi-squared value with 3 degrees of freedom at 95%, measurements past it are down-weighted.
+   */
+  public static final double                           DOWN_WEIGHT_THRESHOLD = 7.81;
+  /**
+   * Chi-squared value with 3 degrees of freedom at 99%, measurements past it are rejected.
+   */
+  public static final double                           REJECT_THRESHOLD      = 11.34;
+  /**
+   * Number of mutually consistent rejections in a row after which measurements are passed again.
+   */
+  public static final int                              RECOVERY_COUNT        = 5;
+  /**
+   * Odometry history, gives the pose at a timestamp.
+   */
+  private final       DoubleFunction<Optional<Pose2d>> poseHistory;
+  /**
+   * Pose estimator state variances [x, y, theta] in meters squared and radians squared.
+   */
+  private final       double[]                         stateVariances;
+  /**
+   * Number of measurements passed unchanged.
+   */
+  private final       AtomicLong                       accepted              = new AtomicLong();
+  /**
+   * Number of measurements passed with inflated standard deviations.
+   */
+  private final       AtomicLong                       downWeighted          = new AtomicLong();
+  /**
+   * Number of measurements rejected.
+   */
+  private final       AtomicLong                       rejected              = new AtomicLong();
+  /**
+   * Number of measurements passed past the reject threshold to recover from bad odometry.
+   */
+  private final       AtomicLong                       recovered             = new AtomicLong();
+  /**
+   * State variance growth [x, y, theta] in meters squared and radians squared per second without passed measurements.
+   */
+  private final       double[]                         varianceGrowth        = {0.01, 0.01, 0.01};
+  /**
+   * Innovation [x, y, theta] of the last rejected measurement.
+   */
+  private final       double[]                         lastInnovation        = new double[3];
+  /**
+   * Timestamp in seconds of the last passed measurement, NaN before the first.
+   */
+  private             double                           lastPassedTimestamp   = Double.NaN;
+  /**
+   * Mutually consistent rejections in a row.
+   */
+  private             int                              consistentRejections  = 0;
+
+  /**
+   * Create the gate.
+   *
+   * @param poseHistory         Odometry history, gives the pose at a timestamp or empty when there is none.
+   * @param stateStdDevsMeters  Pose estimator state standard deviation of x and y in meters.
+   * @param stateStdDevsRadians Pose estimator state standard deviation of the heading in radians.
+   */
+  public VisionGate(DoubleFunction<Optional<Pose2d>> poseHistory, double stateStdDevsMeters,
+                    double stateStdDevsRadians)
+  {
+    this.poseHistory = poseHistory;
+    stateVariances = new double[]{stateStdDevsMeters * stateStdDevsMeters,
+                                  stateStdDevsMeters * stateStdDevsMeters,
+                                  stateStdDevsRadians * stateStdDevsRadians};
+  }
+
+  /**
+   * Create the gate with the WPILib default state standard deviations of 0.1m and 0.1rad.
+   *
+   * @param swerveDrive {@link SwerveDrive} to sample the odometry history from.
+   */
+  public VisionGate(SwerveDrive swerveDrive)
+  {
+    this(swerveDrive::samplePoseAt, 0.1, 0.1);
+  }
+
+  /**
+   * Set how fast the state variance grows while no measurement passes the gate, 0.01 per second by default.
+   *
+   * @param metersSquaredPerSecond  Growth of the x and y variance in meters squared per second.
+   * @param radiansSquaredPerSecond Growth of the heading variance in radians squared per second.
+   */
+  public synchronized void setVarianceGrowth(double metersSquaredPerSecond, double radiansSquaredPerSecond)
+  {
+    varianceGrowth[0] = metersSquaredPerSecond;
+    varianceGrowth[1] = metersSquaredPerSecond;
+    varianceGrowth[2] = radiansSquaredPerSecond;
+  }
+
+  /**
+   * Gate a vision measurement.
+   *
+   * @param visionPose       Robot pose measured by vision.
+   * @param timestampSeconds Capture timestamp in seconds.
+   * @param stdDevs          Measurement standard deviations [x, y, theta].
+   * @return Standard deviations to add the measurement with, empty if it should be rejected.
+   */
+  public synchronized Optional<Matrix<N3, N1>> gate(Pose2d visionPose, double timestampSeconds,
+                                                   Matrix<N3, N1> stdDevs)
+  {
+    Optional<Pose2d> odometryPose = poseHistory.apply(timestampSeconds);
+    if (odometryPose.isEmpty())
+    {
+      accepted.incrementAndGet();
+      passed(timestampSeconds);
+      return Optional.of(stdDevs);
+    }
+
+    double   elapsed    = Double.isNaN(lastPassedTimestamp) ? 0 : Math.max(0, timestampSeconds - lastPassedTimestamp);
+    double[] innovation = {visionPose.getX() - odometryPose.get().getX(),
+                           visionPose.getY() - odometryPose.get().getY(),
+                           MathUtil.angleModulus(visionPose.getRotation().getRadians() -
+                                                 odometryPose.get().getRotation().getRadians())};
+    double distanceSquared    = 0;
+    double consistencySquared = 0;
+    for (int i = 0; i < 3; i++)
+    {
+      double measurementVariance = stdDevs.get(i, 0) * stdDevs.get(i, 0);
+      double change              = innovation[i] - lastInnovation[i];
+      if (i == 2)
+      {
+        change = MathUtil.angleModulus(change);
+      }
+      distanceSquared += innovation[i] * innovation[i] /
+                         (stateVariances[i] + varianceGrowth[i] * elapsed + measurementVariance);
+      // The odometry error is shared, only the noise of both measurements separates their innovations.
+      consistencySquared += change * change / (2 * measurementVariance);
+    }
+
+    if (Double.isNaN(distanceSquared))
+    {
+      rejected.incrementAndGet();
+      return Optional.empty();
+    }
+    if (distanceSquared > REJECT_THRESHOLD)
+    {
+      consistentRejections = consistentRejections > 0 && consistencySquared <= REJECT_THRESHOLD
+                             ? consistentRejections + 1 : 1;
+      System.arraycopy(innovation, 0, lastInnovation, 0, 3);
+      if (consistentRejections > RECOVERY_COUNT)
+      {
+        recovered.incrementAndGet();
+        lastPassedTimestamp = timestampSeconds;
+        return Optional.of(stdDevs);
+      }
+      rejected.incrementAndGet();
+      return Optional.empty();
+    }
+    passed(timestampSeconds);
+    if (distanceSquared > DOWN_WEIGHT_THRESHOLD)
+    {
+      downWeighted.incrementAndGet();
+      return Optional.of(stdDevs.times(Math.sqrt(distanceSquared / DOWN_WEIGHT_THRESHOLD)));
+    }
+    accepted.incrementAndGet();
+    return Optional.of(stdDevs);
+  }
+
+  /**
+   * Record a measurement passing the gate, ending any recovery.
+   *
+   * @param timestampSeconds Capture timestamp in seconds.
+   */
+  private void passed(double timestampSeconds)
+  {
+    lastPassedTimestamp = timestampSeconds;
+    consistentRejections = 0;
+  }
+
+  /**
+   * Get the number of measurements passed unchanged.
+   *
+   * @return Accepted measurements.
+   */
+  public long getAccepted()
+  {
+    return accepted.get();
+  }
+
+  /**
+   * Get the number of measurements passed with inflated standard deviations.
+   *
+   * @return Down-weighted measurements.
+   */
+  public long getDownWeighted()
+  {
+    return downWeighted.get();
+  }
+
+  /**
+   * Get the number of measurements rejected.
+   *
+   * @return Rejected measurements.
+   */
+  public long getRejected()
+  {
+    return rejected.get();
+  }
+
+  /**
+   * Get the number of measurements passed past the reject threshold to recover from bad odometry.
+   *
+   * @return Recovery measurements.
+   */
+  public long getRecovered()
+  {
+    return recovered.get();
+  }
+}
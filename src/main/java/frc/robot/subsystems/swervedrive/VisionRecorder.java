@@ -0,0 +1,230 @@
+package frc.robot.subsystems.swervedrive;
+
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.wpilibj.DriverStation;
+import frc.robot.subsystems.swervedrive.Vision.Cameras;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.photonvision.common.dataflow.structures.Packet;
+import org.photonvision.targeting.PhotonPipelineResult;
+import swervelib.OdometryInputs;
+import swervelib.SwerveDrive;
+
+/**
+ * Records every {@link PhotonPipelineResult} the cameras receive, with the odometry state at the time, into a binary
+ * file for {@link VisionReplay}. Records are encoded on the calling thread and written by a background thread, and are
+ * dropped rather than blocking vision when the writer falls behind.
+ * <p>
+ * File layout, big endian:
+ * <ul>
+ *   <li>Header: int {@link VisionRecorder#MAGIC}, int module count, module count x (double x, double y) module
+ *   locations in meters.</li>
+ *   <li>Record: byte camera ordinal, double FPGA time in seconds of the last odometry update, double FPGA minus NT
+ *   time offset at the capture time in seconds, double x, y and heading of the estimated pose at the capture time (NaN
+ *   when unavailable), double gyro heading in radians and module count x (double distance in meters, double angle in
+ *   radians) of the last odometry update, int length, PhotonVision serialized result.</li>
+ * </ul>
+ */
+public class VisionRecorder implements AutoCloseable
+{
+
+  /**
+   * File magic, "PVR2".
+   */
+  public static final  int                   MAGIC                = 0x50565232;
+  /**
+   * Environment variable with the directory to record to, recording is disabled when unset.
+   */
+  public static final  String                DIRECTORY_VARIABLE   = "VISION_RECORD_DIR";
+  /**
+   * Encoded records waiting to be written.
+   */
+  private final        BlockingQueue<byte[]> queue                = new ArrayBlockingQueue<>(256);
+  /**
+   * Swerve drive the odometry state is read from.
+   */
+  private final        SwerveDrive           swerveDrive;
+  /**
+   * Converts the capture timestamps into the odometry time base.
+   */
+  private final        TimeSync              timeSync;
+  /**
+   * File being written.
+   */
+  private final        DataOutputStream      output;
+  /**
+   * Thread writing the records.
+   */
+  private final        Thread                writer;
+  /**
+   * Number of records dropped because the writer fell behind.
+   */
+  private final        AtomicLong            dropped              = new AtomicLong();
+  /**
+   * Whether the recorder is open.
+   */
+  private volatile     boolean               running              = true;
+
+  /**
+   * Create the recorder and write the file header.
+   *
+   * @param swerveDrive {@link SwerveDrive} to read the odometry state from.
+   * @param timeSync    {@link TimeSync} converting the capture timestamps into the odometry time base.
+   * @param file        File to record to, overwritten if it exists.
+   * @throws IOException If the file could not be opened.
+   */
+  public VisionRecorder(SwerveDrive swerveDrive, TimeSync timeSync, File file) throws IOException
+  {
+    this.swerveDrive = swerveDrive;
+    this.timeSync = timeSync;
+    output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+    Translation2d[] modules = swerveDrive.kinematics.getModules();
+    output.writeInt(MAGIC);
+    output.writeInt(modules.length);
+    for (Translation2d module : modules)
+    {
+      output.writeDouble(module.getX());
+      output.writeDouble(module.getY());
+    }
+    writer = new Thread(this::write, "VisionRecorder");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  /**
+   * Create a recorder if {@link VisionRecorder#DIRECTORY_VARIABLE} is set, recording to a new file in that directory.
+   *
+   * @param swerveDrive {@link SwerveDrive} to read the odometry state from.
+   * @param timeSync    {@link TimeSync} converting the capture timestamps into the odometry time base.
+   * @return The recorder, empty if recording is disabled or the file could not be opened.
+   */
+  public static Optional<VisionRecorder> fromEnvironment(SwerveDrive swerveDrive, TimeSync timeSync)
+  {
+    String directory = System.getenv(DIRECTORY_VARIABLE);
+    if (directory == null || directory.isEmpty())
+    {
+      return Optional.empty();
+    }
+    File file = new File(directory, "vision-" + System.currentTimeMillis() + ".pvr");
+    try
+    {
+      return Optional.of(new VisionRecorder(swerveDrive, timeSync, file));
+    } catch (IOException e)
+    {
+      DriverStation.reportError("Could not record vision to " + file + ": " + e, e.getStackTrace());
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Record a camera result with the inputs of the last odometry update. Results before the first update are skipped.
+   *
+   * @param camera Camera the result came from.
+   * @param result Camera result.
+   */
+  public void record(Cameras camera, PhotonPipelineResult result)
+  {
+    if (!running)
+    {
+      return;
+    }
+    Packet packet = new Packet(256);
+    PhotonPipelineResult.photonStruct.pack(packet, result);
+    byte[] serialized = packet.getWrittenDataCopy();
+
+    // Copy of the last odometry update, reading the sensors from this thread would race the odometry thread.
+    Optional<OdometryInputs> inputs = swerveDrive.getLastOdometryInputs();
+    if (inputs.isEmpty())
+    {
+      return;
+    }
+    SwerveModulePosition[] positions = inputs.get().modulePositions;
+    double                 offset    = timeSync.getOffset(result.getTimestampSeconds());
+    Optional<Pose2d>       pose      = swerveDrive.samplePoseAt(result.getTimestampSeconds() + offset);
+    ByteBuffer             record    = ByteBuffer.allocate(1 + 8 * 6 + 16 * positions.length + 4 + serialized.length);
+    record.put((byte) camera.ordinal());
+    record.putDouble(inputs.get().timestampSeconds);
+    record.putDouble(offset);
+    record.putDouble(pose.map(Pose2d::getX).orElse(Double.NaN));
+    record.putDouble(pose.map(Pose2d::getY).orElse(Double.NaN));
+    record.putDouble(pose.map(p -> p.getRotation().getRadians()).orElse(Double.NaN));
+    record.putDouble(inputs.get().gyroHeading.getRadians());
+    for (SwerveModulePosition position : positions)
+    {
+      record.putDouble(position.distanceMeters);
+      record.putDouble(position.angle.getRadians());
+    }
+    record.putInt(serialized.length);
+    record.put(serialized);
+    if (!queue.offer(record.array()))
+    {
+      dropped.incrementAndGet();
+    }
+  }
+
+  /**
+   * Get the number of records dropped because the writer fell behind.
+   *
+   * @return Dropped records.
+   */
+  public long getDropped()
+  {
+    return dropped.get();
+  }
+
+  /**
+   * Write queued records until closed.
+   */
+  private void write()
+  {
+    try
+    {
+      while (running || !queue.isEmpty())
+      {
+        byte[] record = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (record != null)
+        {
+          output.write(record);
+        } else
+        {
+          output.flush();
+        }
+      }
+      output.close();
+    } catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+    } catch (IOException e)
+    {
+      running = false;
+      DriverStation.reportError("Vision recording stopped: " + e, e.getStackTrace());
+    }
+  }
+
+  /**
+   * Stop recording, writing the queued records and closing the file.
+   */
+  @Override
+  public void close()
+  {
+    running = false;
+    try
+    {
+      writer.join(1000);
+    } catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
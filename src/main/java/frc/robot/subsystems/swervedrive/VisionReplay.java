@@ -0,0 +1,429 @@
+package frc.robot.subsystems.swervedrive;
+
+import edu.wpi.first.hal.HAL;
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.estimator.SwerveDrivePoseEstimator;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N3;
+import frc.robot.subsystems.swervedrive.Vision.Cameras;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import org.photonvision.EstimatedRobotPose;
+import org.photonvision.common.dataflow.structures.Packet;
+import org.photonvision.targeting.PhotonPipelineResult;
+
+/**
+ * Offline replay of a {@link VisionRecorder} file through the same vision pipeline as the robot: result decoding,
+ * {@link Cameras} pose estimation and standard deviation heuristics, {@link VisionFusion}, {@link VisionGate} and a
+ * {@link SwerveDrivePoseEstimator} driven by the recorded odometry. Runs as fast as possible and reports the
+ * throughput, the time spent in each stage and the pose error against the pose estimated on the robot.
+ * <p>
+ * Run with {@code ./gradlew replayVision --args="<recording>"}.
+ */
+public class VisionReplay
+{
+
+  /**
+   * One recorded camera result.
+   */
+  private static class Record
+  {
+
+    /**
+     * Camera the result came from.
+     */
+    final Cameras                camera;
+    /**
+     * FPGA time of the odometry update the record carries the inputs of in seconds.
+     */
+    final double                 timestamp;
+    /**
+     * FPGA minus NT time offset at the capture time in seconds.
+     */
+    final double                 timeOffset;
+    /**
+     * Pose estimated on the robot at the capture time, null when unavailable.
+     */
+    final Pose2d                 robotPose;
+    /**
+     * Gyro heading of the odometry update.
+     */
+    final Rotation2d             heading;
+    /**
+     * Module positions of the odometry update.
+     */
+    final SwerveModulePosition[] positions;
+    /**
+     * PhotonVision serialized result.
+     */
+    final byte[]                 serialized;
+
+    /**
+     * Create the record.
+     *
+     * @param camera     Camera the result came from.
+     * @param timestamp  FPGA time of the odometry update in seconds.
+     * @param timeOffset FPGA minus NT time offset at the capture time in seconds.
+     * @param robotPose  Pose estimated on the robot at the capture time, null when unavailable.
+     * @param heading    Gyro heading of the odometry update.
+     * @param positions  Module positions of the odometry update.
+     * @param serialized PhotonVision serialized result.
+     */
+    Record(Cameras camera, double timestamp, double timeOffset, Pose2d robotPose, Rotation2d heading,
+           SwerveModulePosition[] positions, byte[] serialized)
+    {
+      this.camera = camera;
+      this.timestamp = timestamp;
+      this.timeOffset = timeOffset;
+      this.robotPose = robotPose;
+      this.heading = heading;
+      this.positions = positions;
+      this.serialized = serialized;
+    }
+  }
+
+  /**
+   * Time spent in one pipeline stage.
+   */
+  private static class Stage
+  {
+
+    /**
+     * Stage name.
+     */
+    final String name;
+    /**
+     * Number of timed runs.
+     */
+          long   count      = 0;
+    /**
+     * Total time in nanoseconds.
+     */
+          long   totalNanos = 0;
+    /**
+     * Longest run in nanoseconds.
+     */
+          long   maxNanos   = 0;
+
+    /**
+     * Create the stage.
+     *
+     * @param name Stage name.
+     */
+    Stage(String name)
+    {
+      this.name = name;
+    }
+
+    /**
+     * Add a timed run.
+     *
+     * @param nanos Run time in nanoseconds.
+     */
+    void add(long nanos)
+    {
+      count++;
+      totalNanos += nanos;
+      maxNanos = Math.max(maxNanos, nanos);
+    }
+
+    /**
+     * Print the stage summary.
+     */
+    void print()
+    {
+      System.out.printf("  %-10s %8d runs  %9.2f us mean  %9.2f us max%n",
+                        name,
+                        count,
+                        count == 0 ? 0 : totalNanos / 1e3 / count,
+                        maxNanos / 1e3);
+    }
+  }
+
+  /**
+   * Pose estimator replaying the recorded odometry.
+   */
+  private final SwerveDrivePoseEstimator poseEstimator;
+  /**
+   * Outlier gate against the replayed odometry.
+   */
+  private final VisionGate               gate;
+  /**
+   * Fusion stage adding measurements to the replayed pose estimator.
+   */
+  private final VisionFusion             fusion;
+  /**
+   * Decoding stage timings.
+   */
+  private final Stage                    decode         = new Stage("decode");
+  /**
+   * Odometry stage timings.
+   */
+  private final Stage                    odometry       = new Stage("odometry");
+  /**
+   * Pose estimation stage timings.
+   */
+  private final Stage                    estimate       = new Stage("estimate");
+  /**
+   * Fusion stage timings, without the measurements applied.
+   */
+  private final Stage                    fuse           = new Stage("fuse");
+  /**
+   * Gating and pose estimator application stage timings.
+   */
+  private final Stage                    apply          = new Stage("apply");
+  /**
+   * Time spent applying measurements during the current fusion stage run.
+   */
+  private       long                     applyNanos     = 0;
+  /**
+   * FPGA minus NT time offset of the record being replayed in seconds.
+   */
+  private       double                   timeOffset     = 0;
+  /**
+   * Sum of the camera estimate translation errors in meters.
+   */
+  private       double                   visionError    = 0;
+  /**
+   * Largest camera estimate translation error in meters.
+   */
+  private       double                   visionMaxError = 0;
+  /**
+   * Number of camera estimates compared.
+   */
+  private       int                      visionCount    = 0;
+  /**
+   * Sum of the replayed pose translation errors in meters.
+   */
+  private       double                   poseError      = 0;
+  /**
+   * Sum of the replayed pose heading errors in radians.
+   */
+  private       double                   headingError   = 0;
+  /**
+   * Largest replayed pose translation error in meters.
+   */
+  private       double                   poseMaxError   = 0;
+  /**
+   * Number of replayed poses compared.
+   */
+  private       int                      poseCount      = 0;
+
+  /**
+   * Replay a recording.
+   *
+   * @param args Path to the recording.
+   * @throws IOException If the recording could not be read.
+   */
+  public static void main(String[] args) throws IOException
+  {
+    if (args.length != 1)
+    {
+      System.err.println("Usage: VisionReplay <recording>");
+      System.exit(1);
+    }
+    HAL.initialize(500, 0);
+
+    // Load everything first so file reads are not part of the timings.
+    List<Record>    records = new ArrayList<>();
+    Translation2d[] modules;
+    try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(args[0]))))
+    {
+      if (input.readInt() != VisionRecorder.MAGIC)
+      {
+        throw new IOException(args[0] + " is not a vision recording");
+      }
+      modules = new Translation2d[input.readInt()];
+      for (int i = 0; i < modules.length; i++)
+      {
+        modules[i] = new Translation2d(input.readDouble(), input.readDouble());
+      }
+      while (true)
+      {
+        int camera;
+        try
+        {
+          camera = input.readByte();
+        } catch (EOFException e)
+        {
+          break;
+        }
+        double timestamp  = input.readDouble();
+        double timeOffset = input.readDouble();
+        double x          = input.readDouble();
+        double y          = input.readDouble();
+        double theta      = input.readDouble();
+        double heading    = input.readDouble();
+        SwerveModulePosition[] positions = new SwerveModulePosition[modules.length];
+        for (int i = 0; i < positions.length; i++)
+        {
+          positions[i] = new SwerveModulePosition(input.readDouble(), Rotation2d.fromRadians(input.readDouble()));
+        }
+        byte[] serialized = new byte[input.readInt()];
+        input.readFully(serialized);
+        records.add(new Record(Cameras.values()[camera],
+                               timestamp,
+                               timeOffset,
+                               Double.isNaN(x) ? null : new Pose2d(x, y, Rotation2d.fromRadians(theta)),
+                               Rotation2d.fromRadians(heading),
+                               positions,
+                               serialized));
+      }
+    }
+    if (records.isEmpty())
+    {
+      System.out.println("No records in " + args[0]);
+      return;
+    }
+    new VisionReplay(new SwerveDriveKinematics(modules), records.get(0)).run(records);
+  }
+
+  /**
+   * Create the replay.
+   *
+   * @param kinematics Kinematics of the recorded drive.
+   * @param first      First record, the pose estimator starts from its state.
+   */
+  private VisionReplay(SwerveDriveKinematics kinematics, Record first)
+  {
+    poseEstimator = new SwerveDrivePoseEstimator(kinematics,
+                                                 first.heading,
+                                                 first.positions,
+                                                 first.robotPose == null ? Pose2d.kZero : first.robotPose);
+    gate = new VisionGate(this::samplePose, 0.1, 0.1);
+    fusion = new VisionFusion(this::sampleCapturePose, this::addVisionMeasurement);
+  }
+
+  /**
+   * Sample the replayed pose estimator.
+   *
+   * @param timestampSeconds Timestamp in seconds.
+   * @return Pose at the timestamp, empty if there is no history.
+   */
+  private Optional<Pose2d> samplePose(double timestampSeconds)
+  {
+    return poseEstimator.sampleAt(timestampSeconds);
+  }
+
+  /**
+   * Sample the replayed pose estimator at a capture timestamp.
+   *
+   * @param timestampSeconds Capture timestamp in seconds, in the NT time base.
+   * @return Pose at the timestamp, empty if there is no history.
+   */
+  private Optional<Pose2d> sampleCapturePose(double timestampSeconds)
+  {
+    return samplePose(timestampSeconds + timeOffset);
+  }
+
+  /**
+   * Gate a measurement and add it to the replayed pose estimator, as {@link Vision} does on the robot.
+   *
+   * @param pose             Robot pose.
+   * @param timestampSeconds Capture timestamp in seconds, in the NT time base.
+   * @param stdDevs          Standard deviations [x, y, theta].
+   * @return True if the measurement was added to the pose estimator.
+   */
+  private boolean addVisionMeasurement(Pose2d pose, double timestampSeconds, Matrix<N3, N1> stdDevs)
+  {
+    long                     start         = System.nanoTime();
+    double                   fpgaTimestamp = timestampSeconds + timeOffset;
+    Optional<Matrix<N3, N1>> gated         = Optional.empty();
+    if (stdDevs.get(0, 0) != Double.MAX_VALUE)
+    {
+      gated = gate.gate(pose, fpgaTimestamp, stdDevs);
+      gated.ifPresent(gatedStdDevs -> poseEstimator.addVisionMeasurement(pose, fpgaTimestamp, gatedStdDevs));
+    }
+    long nanos = System.nanoTime() - start;
+    apply.add(nanos);
+    applyNanos += nanos;
+    return gated.isPresent();
+  }
+
+  /**
+   * Replay the records and print the report.
+   *
+   * @param records Records in recorded order.
+   */
+  private void run(List<Record> records)
+  {
+    long start = System.nanoTime();
+    for (Record record : records)
+    {
+      long                 stageStart = System.nanoTime();
+      PhotonPipelineResult result     = PhotonPipelineResult.photonStruct.unpack(new Packet(record.serialized));
+      decode.add(System.nanoTime() - stageStart);
+
+      stageStart = System.nanoTime();
+      poseEstimator.updateWithTime(record.timestamp, record.heading, record.positions);
+      odometry.add(System.nanoTime() - stageStart);
+
+      timeOffset = record.timeOffset;
+      stageStart = System.nanoTime();
+      Optional<EstimatedRobotPose> poseEst = Vision.estimate(record.camera, result, this::sampleCapturePose);
+      estimate.add(System.nanoTime() - stageStart);
+
+      applyNanos = 0;
+      stageStart = System.nanoTime();
+      fusion.add(record.camera, result, poseEst, record.camera.curStdDevs);
+      fuse.add(System.nanoTime() - stageStart - applyNanos);
+
+      if (record.robotPose != null)
+      {
+        if (poseEst.isPresent())
+        {
+          double error = poseEst.get().estimatedPose.toPose2d().getTranslation()
+                                .getDistance(record.robotPose.getTranslation());
+          visionError += error;
+          visionMaxError = Math.max(visionMaxError, error);
+          visionCount++;
+        }
+        Optional<Pose2d> replayed = sampleCapturePose(result.getTimestampSeconds());
+        if (replayed.isPresent())
+        {
+          double error = replayed.get().getTranslation().getDistance(record.robotPose.getTranslation());
+          poseError += error;
+          headingError += Math.abs(MathUtil.angleModulus(replayed.get().getRotation().getRadians() -
+                                                         record.robotPose.getRotation().getRadians()));
+          poseMaxError = Math.max(poseMaxError, error);
+          poseCount++;
+        }
+      }
+    }
+    applyNanos = 0;
+    fusion.flush();
+    double seconds = (System.nanoTime() - start) / 1e9;
+
+    System.out.printf("Replayed %d results in %.3f s, %.0f results/s%n", records.size(), seconds,
+                      records.size() / seconds);
+    System.out.printf("Fused %d groups, gate accepted %d, down-weighted %d, rejected %d, recovered %d%n",
+                      fusion.getFusedCount(), gate.getAccepted(), gate.getDownWeighted(), gate.getRejected(),
+                      gate.getRecovered());
+    System.out.println("Stage latency:");
+    decode.print();
+    odometry.print();
+    estimate.print();
+    fuse.print();
+    apply.print();
+    System.out.println("Error against the pose estimated on the robot:");
+    System.out.printf("  camera estimates %6d  %.3f m mean  %.3f m max%n",
+                      visionCount, visionCount == 0 ? 0 : visionError / visionCount, visionMaxError);
+    System.out.printf("  replayed pose    %6d  %.3f m mean  %.3f m max  %.2f deg mean heading%n",
+                      poseCount,
+                      poseCount == 0 ? 0 : poseError / poseCount,
+                      poseMaxError,
+                      poseCount == 0 ? 0 : Math.toDegrees(headingError / poseCount));
+  }
+}
@@ -0,0 +1,87 @@
+package frc.robot.subsystems.swervedrive;
+
+import edu.wpi.first.wpilibj.DriverStation;
+
+/**
+ * Daemon thread which runs a vision task over and over, so each camera is processed off the main robot loop and in
+ * parallel with the other cameras.
+ */
+public class VisionWorker implements AutoCloseable
+{
+
+  /**
+   * Task to run each iteration.
+   */
+  private final    Runnable task;
+  /**
+   * Thread running the task.
+   */
+  private final    Thread   thread;
+  /**
+   * Milliseconds to sleep between iterations.
+   */
+  private final    long     idleMillis;
+  /**
+   * Whether the worker should keep running.
+   */
+  private volatile boolean  running = true;
+
+  /**
+   * Create and start the worker.
+   *
+   * @param name       Thread name.
+   * @param task       Task to run each iteration, should return quickly when there is nothing to do.
+   * @param idleMillis Milliseconds to sleep between iterations.
+   */
+  public VisionWorker(String name, Runnable task, long idleMillis)
+  {
+    this.task = task;
+    this.idleMillis = idleMillis;
+    thread = new Thread(this::run, name);
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Run the task until stopped.
+   */
+  private void run()
+  {
+    while (running)
+    {
+      try
+      {
+        task.run();
+        if (idleMillis > 0)
+        {
+          Thread.sleep(idleMillis);
+        }
+      } catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (Exception e)
+      {
+        // Keep processing the camera, a bad frame should not stop vision for the rest of the match.
+        DriverStation.reportError(thread.getName() + " error: " + e, e.getStackTrace());
+      }
+    }
+  }
+
+  /**
+   * Stop the worker and wait for the current iteration to finish.
+   */
+  @Override
+  public void close()
+  {
+    running = false;
+    thread.interrupt();
+    try
+    {
+      thread.join(100);
+    } catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
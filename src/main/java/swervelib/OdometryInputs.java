@@ -0,0 +1,43 @@
+package swervelib;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.kinematics.SwerveModulePosition;
+
+/**
+ * The sensor readings one {@link SwerveDrive#updateOdometry()} fed into the pose estimator. Instances are never
+ * modified after they are published, so they can be read from any thread without touching the sensors.
+ */
+public final class OdometryInputs
+{
+
+  /**
+   * FPGA timestamp in seconds of the odometry update.
+   */
+  public final double                 timestampSeconds;
+  /**
+   * Gyro heading passed to the pose estimator.
+   */
+  public final Rotation2d             gyroHeading;
+  /**
+   * Module positions passed to the pose estimator, indexed by module number. Do not modify.
+   */
+  public final SwerveModulePosition[] modulePositions;
+
+  /**
+   * Create the inputs, copying the module positions.
+   *
+   * @param timestampSeconds FPGA timestamp in seconds of the odometry update.
+   * @param gyroHeading      Gyro heading passed to the pose estimator.
+   * @param modulePositions  Module positions passed to the pose estimator.
+   */
+  OdometryInputs(double timestampSeconds, Rotation2d gyroHeading, SwerveModulePosition[] modulePositions)
+  {
+    this.timestampSeconds = timestampSeconds;
+    this.gyroHeading = gyroHeading;
+    this.modulePositions = new SwerveModulePosition[modulePositions.length];
+    for (int i = 0; i < modulePositions.length; i++)
+    {
+      this.modulePositions[i] = modulePositions[i].copy();
+    }
+  }
+}
@@ -0,0 +1,142 @@
+package swervelib;
+
+import edu.wpi.first.wpilibj.DriverStation;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Group of {@link SwerveModule}s which share a CAN bus. Each group owns a single worker thread so reads and writes to
+ * different CAN buses (e.g. "rio" and a CANivore) happen in parallel instead of one after another.
+ */
+public class SwerveBusGroup implements AutoCloseable
+{
+
+  /**
+   * Name of the CAN bus used by the rio when no bus is given in the JSON.
+   */
+  public static final String          RIO_BUS = "rio";
+  /**
+   * CAN bus name of the group.
+   */
+  public final        String          canbus;
+  /**
+   * Swerve modules on the CAN bus.
+   */
+  public final        SwerveModule[]  modules;
+  /**
+   * Worker thread for the CAN bus.
+   */
+  private final       ExecutorService executor;
+
+  /**
+   * Create a group of modules for a single CAN bus.
+   *
+   * @param canbus  CAN bus name.
+   * @param modules Swerve modules on the CAN bus.
+   */
+  public SwerveBusGroup(String canbus, SwerveModule[] modules)
+  {
+    this.canbus = canbus;
+    this.modules = modules;
+    this.executor = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "SwerveBus-" + canbus);
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Get the CAN bus name used for grouping, treats an empty bus name as the rio bus.
+   *
+   * @param canbus CAN bus name from the configuration.
+   * @return CAN bus name for grouping.
+   */
+  public static String normalize(String canbus)
+  {
+    return (canbus == null || canbus.isEmpty()) ? RIO_BUS : canbus;
+  }
+
+  /**
+   * Group the swerve modules by the CAN bus of their drive motor, keeping the module order within each group.
+   *
+   * @param modules Swerve modules to group.
+   * @return {@link List} of {@link SwerveBusGroup}, one per CAN bus.
+   */
+  public static List<SwerveBusGroup> group(SwerveModule[] modules)
+  {
+    Map<String, List<SwerveModule>> buses = new LinkedHashMap<>();
+    for (SwerveModule module : modules)
+    {
+      buses.computeIfAbsent(normalize(module.configuration.canbus), bus -> new ArrayList<>()).add(module);
+    }
+    List<SwerveBusGroup> groups = new ArrayList<>();
+    for (Map.Entry<String, List<SwerveModule>> bus : buses.entrySet())
+    {
+      groups.add(new SwerveBusGroup(bus.getKey(), bus.getValue().toArray(new SwerveModule[0])));
+    }
+    return groups;
+  }
+
+  /**
+   * Refresh the sensor caches of every module on the bus from the bus thread.
+   *
+   * @return {@link Future} which completes when all modules are sampled.
+   */
+  public Future<?> sample()
+  {
+    return submit(SwerveModule::invalidateCache);
+  }
+
+  /**
+   * Run an action on every module of the bus from the bus thread.
+   *
+   * @param action Action to run for each module.
+   * @return {@link Future} which completes when the action has been run on all modules.
+   */
+  public Future<?> submit(Consumer<SwerveModule> action)
+  {
+    return executor.submit(() -> {
+      for (SwerveModule module : modules)
+      {
+        action.accept(module);
+      }
+    });
+  }
+
+  /**
+   * Wait for all the bus threads to finish their work. Errors are reported to the driver station instead of thrown so
+   * one failing bus does not stop the others.
+   *
+   * @param futures Pending work from {@link SwerveBusGroup#sample()} or {@link SwerveBusGroup#submit(Consumer)}.
+   */
+  public static void join(List<Future<?>> futures)
+  {
+    for (Future<?> future : futures)
+    {
+      try
+      {
+        future.get();
+      } catch (InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+        return;
+      } catch (ExecutionException e)
+      {
+        DriverStation.reportError("Swerve CAN bus thread failed: " + e.getCause(), e.getStackTrace());
+      }
+    }
+  }
+
+  @Override
+  public void close()
+  {
+    executor.shutdownNow();
+  }
+}
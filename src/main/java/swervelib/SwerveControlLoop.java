@@ -0,0 +1,295 @@
+package swervelib;
+
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.networktables.IntegerPublisher;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.wpilibj.Alert;
+import edu.wpi.first.wpilibj.Alert.AlertType;
+import edu.wpi.first.wpilibj.Notifier;
+import edu.wpi.first.wpilibj.Timer;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * High rate control loop for a {@link SwerveDrive}, decoupled from the 20ms robot period. Commands post a target
+ * velocity which the loop picks up on its next cycle, so it reaches the modules within one control period instead of
+ * waiting for the next scheduler run. Each cycle runs heading correction, kinematics and the module commands against
+ * the latest sensor readings. Each cycle holds the {@link SwerveDrive} command lock, as do the methods commanding the
+ * modules directly, which also drop the posted target so the loop cannot override them afterwards.
+ * <p>
+ * Targets which are not refreshed within the stale timeout stop the robot once and are then dropped, so the loop never
+ * keeps driving after the command posting them ends. Cycles which start late or take longer than the period are counted
+ * as deadline misses, and after too many in a row the loop reports itself unhealthy so {@link SwerveDrive} falls back
+ * to commanding the modules from the calling thread.
+ */
+public class SwerveControlLoop implements AutoCloseable
+{
+
+  /**
+   * Swerve drive commanded by the loop.
+   */
+  private final SwerveDrive                  swerveDrive;
+  /**
+   * WPILib {@link Notifier} running the loop.
+   */
+  private final Notifier                     notifier;
+  /**
+   * Latest posted target, null when there is nothing to command.
+   */
+  private final AtomicReference<Target>      target                 = new AtomicReference<>();
+  /**
+   * Alert raised while the loop is unhealthy and {@link SwerveDrive} falls back to the main loop.
+   */
+  private final Alert                        fallbackAlert          = new Alert("Swerve Drive",
+                                                                                "Swerve control loop is missing its deadlines, commanding from the main loop.",
+                                                                                AlertType.kWarning);
+  /**
+   * NT4 publisher for the total number of deadline misses.
+   */
+  private final IntegerPublisher             deadlineMissPublisher;
+  /**
+   * Loop period in seconds.
+   */
+  private volatile double                    periodSeconds;
+  /**
+   * Age in seconds after which a target is stale.
+   */
+  private volatile double                    staleTimeoutSeconds    = 0.1;
+  /**
+   * Number of deadline misses in a row before the loop is unhealthy.
+   */
+  private volatile int                       maxConsecutiveMisses   = 5;
+  /**
+   * Whether the loop is running.
+   */
+  private volatile boolean                   running                = false;
+  /**
+   * Deadline misses since the last on time cycle.
+   */
+  private volatile int                       consecutiveMisses      = 0;
+  /**
+   * Total deadline misses since the loop was started.
+   */
+  private volatile long                      deadlineMisses         = 0;
+  /**
+   * FPGA timestamp in seconds of the start of the last cycle, 0 before the first cycle.
+   */
+  private double                             lastCycleStart         = 0;
+
+  /**
+   * Create the control loop, it does not run until {@link SwerveControlLoop#start(double)} is called.
+   *
+   * @param swerveDrive Swerve drive to command.
+   */
+  public SwerveControlLoop(SwerveDrive swerveDrive)
+  {
+    this.swerveDrive = swerveDrive;
+    notifier = new Notifier(this::cycle);
+    notifier.setName("SwerveControlLoop");
+    deadlineMissPublisher = NetworkTableInstance.getDefault()
+                                                .getTable("SmartDashboard")
+                                                .getIntegerTopic("swerve/controlLoopDeadlineMisses")
+                                                .publish();
+  }
+
+  /**
+   * Start the loop.
+   *
+   * @param periodSeconds Loop period in seconds, e.g. 0.005 for 200Hz.
+   */
+  public void start(double periodSeconds)
+  {
+    notifier.stop();
+    this.periodSeconds = periodSeconds;
+    lastCycleStart = 0;
+    consecutiveMisses = 0;
+    deadlineMisses = 0;
+    target.set(null);
+    running = true;
+    fallbackAlert.set(false);
+    notifier.startPeriodic(periodSeconds);
+  }
+
+  /**
+   * Stop the loop, commands are sent from the calling thread afterwards.
+   */
+  public void stop()
+  {
+    running = false;
+    notifier.stop();
+    target.set(null);
+    fallbackAlert.set(false);
+  }
+
+  /**
+   * Set the age after which a posted target is stale and the robot is stopped.
+   *
+   * @param staleTimeoutSeconds Stale timeout in seconds, 0.1 by default.
+   */
+  public void setStaleTimeout(double staleTimeoutSeconds)
+  {
+    this.staleTimeoutSeconds = staleTimeoutSeconds;
+  }
+
+  /**
+   * Set the number of deadline misses in a row after which the loop is unhealthy.
+   *
+   * @param maxConsecutiveMisses Deadline misses in a row, 5 by default.
+   */
+  public void setMaxConsecutiveMisses(int maxConsecutiveMisses)
+  {
+    this.maxConsecutiveMisses = maxConsecutiveMisses;
+  }
+
+  /**
+   * Whether the loop is running and keeping up with its period.
+   *
+   * @return True if targets should be posted to the loop.
+   */
+  public boolean isHealthy()
+  {
+    return running && consecutiveMisses < maxConsecutiveMisses;
+  }
+
+  /**
+   * Get the total number of deadline misses since the loop was started.
+   *
+   * @return Deadline misses.
+   */
+  public long getDeadlineMisses()
+  {
+    return deadlineMisses;
+  }
+
+  /**
+   * Get the loop period.
+   *
+   * @return Loop period in seconds.
+   */
+  public double getPeriod()
+  {
+    return periodSeconds;
+  }
+
+  /**
+   * Post a target velocity for the next cycle, replacing any target which has not been picked up yet.
+   *
+   * @param robotRelativeVelocity  Robot relative chassis speeds.
+   * @param isOpenLoop             Whether to use closed-loop velocity control. Set to true to disable closed-loop.
+   * @param centerOfRotationMeters The center of rotation in meters, 0 is the center of the robot.
+   */
+  public void post(ChassisSpeeds robotRelativeVelocity, boolean isOpenLoop, Translation2d centerOfRotationMeters)
+  {
+    target.set(new Target(robotRelativeVelocity, isOpenLoop, centerOfRotationMeters, Timer.getFPGATimestamp()));
+  }
+
+  /**
+   * Drop the posted target without stopping the robot, used when the modules are commanded from elsewhere.
+   */
+  public void clear()
+  {
+    target.set(null);
+  }
+
+  /**
+   * Run one cycle of the loop.
+   */
+  private void cycle()
+  {
+    double start = Timer.getFPGATimestamp();
+    boolean late = lastCycleStart != 0 && start - lastCycleStart > periodSeconds * 1.5;
+    lastCycleStart = start;
+
+    // Module commands from other threads hold the same lock and clear the target first, so a cycle either finishes
+    // before them or sees no target.
+    Lock commandLock = swerveDrive.getCommandLock();
+    commandLock.lock();
+    try
+    {
+      Target current = target.get();
+      if (current != null)
+      {
+        if (start - current.timestamp > staleTimeoutSeconds)
+        {
+          // Stop once, unless a new target was posted in the meantime.
+          if (target.compareAndSet(current, null))
+          {
+            swerveDrive.driveFromControlLoop(new ChassisSpeeds(), current.isOpenLoop, new Translation2d());
+          }
+        } else
+        {
+          // Copy the speeds, drive modifies them in place.
+          swerveDrive.driveFromControlLoop(new ChassisSpeeds(current.speeds.vxMetersPerSecond,
+                                                             current.speeds.vyMetersPerSecond,
+                                                             current.speeds.omegaRadiansPerSecond),
+                                           current.isOpenLoop,
+                                           current.centerOfRotation);
+        }
+      }
+    } finally
+    {
+      commandLock.unlock();
+    }
+
+    if (late || Timer.getFPGATimestamp() - start > periodSeconds)
+    {
+      deadlineMisses++;
+      consecutiveMisses++;
+      deadlineMissPublisher.set(deadlineMisses);
+    } else
+    {
+      consecutiveMisses = 0;
+    }
+    fallbackAlert.set(!isHealthy() && running);
+  }
+
+  @Override
+  public void close()
+  {
+    stop();
+    notifier.close();
+    deadlineMissPublisher.close();
+  }
+
+  /**
+   * Target posted to the loop.
+   */
+  private static final class Target
+  {
+
+    /**
+     * Robot relative chassis speeds.
+     */
+    final ChassisSpeeds speeds;
+    /**
+     * Whether to use open loop velocity control.
+     */
+    final boolean       isOpenLoop;
+    /**
+     * Center of rotation in meters.
+     */
+    final Translation2d centerOfRotation;
+    /**
+     * FPGA timestamp in seconds the target was posted.
+     */
+    final double        timestamp;
+
+    /**
+     * Create a target.
+     *
+     * @param speeds           Robot relative chassis speeds.
+     * @param isOpenLoop       Whether to use open loop velocity control.
+     * @param centerOfRotation Center of rotation in meters.
+     * @param timestamp        FPGA timestamp in seconds the target was posted.
+     */
+    Target(ChassisSpeeds speeds, boolean isOpenLoop, Translation2d centerOfRotation, double timestamp)
+    {
+      this.speeds = new ChassisSpeeds(speeds.vxMetersPerSecond, speeds.vyMetersPerSecond,
+                                      speeds.omegaRadiansPerSecond);
+      this.isOpenLoop = isOpenLoop;
+      this.centerOfRotation = centerOfRotation;
+      this.timestamp = timestamp;
+    }
+  }
+}
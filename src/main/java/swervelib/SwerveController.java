@@ -4,6 +4,7 @@ import edu.wpi.first.math.controller.PIDController;
 import edu.wpi.first.math.filter.SlewRateLimiter;
 import edu.wpi.first.math.geometry.Translation2d;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import swervelib.math.SwerveGeometry;
 import swervelib.parser.SwerveControllerConfiguration;
 
 /**
@@ -88,7 +89,7 @@ public class SwerveController
    */
   public boolean withinHypotDeadband(double x, double y)
   {
-    return Math.hypot(x, y) < config.angleJoyStickRadiusDeadband;
+    return SwerveGeometry.norm(x, y) < config.angleJoyStickRadiusDeadband;
   }
 
   /**
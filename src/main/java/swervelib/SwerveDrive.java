@@ -28,7 +28,6 @@ import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
 import edu.wpi.first.math.numbers.N1;
 import edu.wpi.first.math.numbers.N3;
-import edu.wpi.first.math.system.plant.DCMotor;
 import edu.wpi.first.math.trajectory.Trajectory;
 import edu.wpi.first.math.util.Units;
 import edu.wpi.first.networktables.DoublePublisher;
@@ -49,8 +48,11 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 import org.ironmaple.simulation.SimulatedArena;
 import org.ironmaple.simulation.drivesims.AbstractDriveTrainSimulation;
 import org.ironmaple.simulation.drivesims.GyroSimulation;
@@ -59,10 +61,17 @@ import org.ironmaple.simulation.drivesims.configs.DriveTrainSimulationConfig;
 import org.ironmaple.simulation.drivesims.configs.SwerveModuleSimulationConfig;
 import swervelib.encoders.CANCoderSwerve;
 import swervelib.imu.Pigeon2Swerve;
+import swervelib.imu.RedundantIMUSwerve;
 import swervelib.imu.SwerveIMU;
+import swervelib.math.DynamicTippingLimiter;
+import swervelib.math.LatencyEstimator;
+import swervelib.math.SwerveGeometry;
+import swervelib.math.SwerveKinematicsEngine;
 import swervelib.math.SwerveMath;
+import swervelib.math.SwerveSetpointGenerator;
 import swervelib.motors.TalonFXSwerve;
 import swervelib.parser.Cache;
+import swervelib.parser.EpochCache;
 import swervelib.parser.SwerveControllerConfiguration;
 import swervelib.parser.SwerveDriveConfiguration;
 import swervelib.simulation.SwerveIMUSimulation;
@@ -79,6 +88,11 @@ public class SwerveDrive implements AutoCloseable
    * Swerve Kinematics object.
    */
   public final  SwerveDriveKinematics    kinematics;
+  /**
+   * Allocation free kinematics for the module layout, used instead of {@link SwerveDrive#kinematics} in the control
+   * loop.
+   */
+  public final  SwerveKinematicsEngine   kinematicsEngine;
   /**
    * Swerve drive configuration.
    */
@@ -99,10 +113,81 @@ public class SwerveDrive implements AutoCloseable
    * WPILib {@link Notifier} to keep odometry up to date.
    */
   private final Notifier                 odometryThread;
+  /**
+   * Swerve modules grouped by CAN bus, each group has its own thread.
+   */
+  private final List<SwerveBusGroup>     busGroups;
+  /**
+   * Commanded module speeds in meters per second, written by the control loop.
+   */
+  private final double[]                 commandedSpeeds;
+  /**
+   * Commanded module headings in radians, written by the control loop.
+   */
+  private final double[]                 commandedAngles;
+  /**
+   * Commanded robot relative chassis speeds [vx, vy, omega], written by the control loop.
+   */
+  private final double[]                 commandedChassisSpeeds = new double[3];
+  /**
+   * Commanded module drive feedforward in volts, written by the control loop.
+   */
+  private final double[]                 commandedFeedforwardVolts;
+  /**
+   * Commanded module drive forces in Newtons along the commanded headings, used for force feedforward.
+   */
+  private final double[]                 commandedForces;
+  /**
+   * Measured module speeds in meters per second, guarded by {@link SwerveDrive#measuredChassisSpeeds}.
+   */
+  private final double[]                 measuredSpeeds;
+  /**
+   * Measured module headings in radians, guarded by {@link SwerveDrive#measuredChassisSpeeds}.
+   */
+  private final double[]                 measuredAngles;
+  /**
+   * Measured robot relative chassis speeds [vx, vy, omega].
+   */
+  private final double[]                 measuredChassisSpeeds  = new double[3];
+  /**
+   * Tipping limited robot relative velocity [vx, vy], written by the control loop.
+   */
+  private final double[]                 tippingLimitedVelocity = new double[2];
+  /**
+   * Epoch of the sensor readings, advanced on each odometry update and when the gyro is changed.
+   */
+  private final AtomicLong                sensorEpoch            = new AtomicLong();
+  /**
+   * Epoch of the pose estimate, advanced after each odometry update and when the pose is reset or corrected by vision.
+   */
+  private final AtomicLong                poseEpoch              = new AtomicLong();
+  /**
+   * Robot relative velocity for the current {@link SwerveDrive#sensorEpoch}.
+   */
+  private final EpochCache<ChassisSpeeds> robotVelocityCache     = new EpochCache<>(this::calculateRobotVelocity);
+  /**
+   * Field relative velocity for the current {@link SwerveDrive#sensorEpoch} and {@link SwerveDrive#poseEpoch}.
+   */
+  private final EpochCache<ChassisSpeeds> fieldVelocityCache     = new EpochCache<>(this::calculateFieldVelocity);
+  /**
+   * Odometry heading for the current {@link SwerveDrive#poseEpoch}.
+   */
+  private final EpochCache<Rotation2d>    odometryHeadingCache   = new EpochCache<>(
+      () -> this.swerveDrivePoseEstimator.getEstimatedPosition().getRotation());
+  /**
+   * IMU yaw for the current {@link SwerveDrive#sensorEpoch}.
+   */
+  private final EpochCache<Rotation2d>    yawCache               = new EpochCache<>(
+      () -> Rotation2d.fromRadians(this.imuReadingCache.getValue().getZ()));
   /**
    * Odometry lock to ensure thread safety.
    */
   private final Lock                odometryLock                                    = new ReentrantLock();
+  /**
+   * Command lock held by every path which writes the commanded module states or commands the modules, including each
+   * {@link SwerveControlLoop} cycle, so the loop thread and the calling thread never interleave.
+   */
+  private final Lock                commandLock                                     = new ReentrantLock();
   /**
    * Alert to recommend Tuner X if the configuration is compatible.
    */
@@ -190,6 +275,10 @@ public class SwerveDrive implements AutoCloseable
    * Counter to synchronize the modules relative encoder with absolute encoder when not moving.
    */
   private       int                 moduleSynchronizationCounter                    = 0;
+  /**
+   * Sensor readings of the last odometry update, null before the first, guarded by {@link SwerveDrive#odometryLock}.
+   */
+  private       OdometryInputs      lastOdometryInputs;
   /**
    * The last heading set in radians.
    */
@@ -206,6 +295,70 @@ public class SwerveDrive implements AutoCloseable
    * Maximum speed of the robot in meters per second.
    */
   private       double              maxChassisSpeedMPS;
+  /**
+   * Whether to sample and command each CAN bus from its own thread in parallel.
+   */
+  private       boolean             parallelBusAccess                               = false;
+  /**
+   * Whether to use latency compensated sensor readings for odometry.
+   */
+  private       boolean             latencyCompensation                             = false;
+  /**
+   * Limits commanded acceleration to prevent tipping, null when disabled.
+   */
+  private       DynamicTippingLimiter tippingLimiter;
+  /**
+   * Last robot relative x velocity commanded through {@link SwerveDrive#drive} in meters per second.
+   */
+  private       double              lastCommandedVxMetersPerSecond                  = 0;
+  /**
+   * Last robot relative y velocity commanded through {@link SwerveDrive#drive} in meters per second.
+   */
+  private       double              lastCommandedVyMetersPerSecond                  = 0;
+  /**
+   * FPGA timestamp in seconds of the last velocity commanded through {@link SwerveDrive#drive}.
+   */
+  private       double              lastCommandedTimestamp                          = 0;
+  /**
+   * Setpoint generator used by {@link SwerveDrive#driveWithSetpointGenerator(ChassisSpeeds)}, created on first use.
+   */
+  private       SwerveSetpointGenerator setpointGenerator;
+  /**
+   * Online estimate of the delay between commanding chassis speeds and the robot reaching them, sampled by
+   * {@link SwerveDrive#updateOdometry()}.
+   */
+  private final LatencyEstimator    latencyEstimator                                = new LatencyEstimator(100, 25,
+                                                                                                           0.02);
+  /**
+   * Latest actuation latency estimate in seconds, readable from any thread.
+   */
+  private volatile double           actuationLatencySeconds                         = 0.02;
+  /**
+   * Whether to predict the robot state at actuation time using {@link SwerveDrive#actuationLatencySeconds}.
+   */
+  private       boolean             actuationLatencyCompensation                    = false;
+  /**
+   * Last commanded robot relative x velocity in meters per second, sampled for latency estimation.
+   */
+  private volatile double           desiredVxMetersPerSecond                        = 0;
+  /**
+   * Last commanded robot relative y velocity in meters per second, sampled for latency estimation.
+   */
+  private volatile double           desiredVyMetersPerSecond                        = 0;
+  /**
+   * Last commanded angular velocity in radians per second, sampled for latency estimation.
+   */
+  private volatile double           desiredOmegaRadiansPerSecond                    = 0;
+  /**
+   * High rate control loop {@link SwerveDrive#drive(ChassisSpeeds, boolean, Translation2d)} posts to, null when
+   * disabled.
+   */
+  private       SwerveControlLoop   controlLoop;
+  /**
+   * FPGA timestamp in seconds of the last setpoint generated by
+   * {@link SwerveDrive#driveWithSetpointGenerator(ChassisSpeeds)}.
+   */
+  private       double              lastSetpointTimestamp                           = 0;
 
   /**
    * Creates a new swerve drivebase subsystem. Robot is controlled via the {@link SwerveDrive#drive} method, or via the
@@ -232,9 +385,19 @@ public class SwerveDrive implements AutoCloseable
     swerveController = new SwerveController(controllerConfig);
     // Create Kinematics from swerve module locations.
     kinematics = new SwerveDriveKinematics(config.moduleLocationsMeters);
+    kinematicsEngine = new SwerveKinematicsEngine(config.moduleLocationsMeters);
+    commandedSpeeds = new double[kinematicsEngine.moduleCount];
+    commandedAngles = new double[kinematicsEngine.moduleCount];
+    commandedFeedforwardVolts = new double[kinematicsEngine.moduleCount];
+    commandedForces = new double[kinematicsEngine.moduleCount];
+    measuredSpeeds = new double[kinematicsEngine.moduleCount];
+    measuredAngles = new double[kinematicsEngine.moduleCount];
     odometryThread = new Notifier(this::updateOdometry);
 
     this.swerveModules = config.modules;
+    busGroups = SwerveBusGroup.group(swerveModules);
+    // Only worth the thread hand-off when the modules are split across more than one bus.
+    parallelBusAccess = !SwerveDriveTelemetry.isSimulation && busGroups.size() > 1;
 
     // Create an integrator for angle if the robot is being simulated to emulate an IMU
     // If the robot is real, instantiate the IMU instead.
@@ -340,6 +503,13 @@ public class SwerveDrive implements AutoCloseable
   @Override
   public void close()
   {
+    if (controlLoop != null)
+    {
+      // Stop under the command lock first so no cycle commands the modules once they are closed. Closing joins the
+      // notifier thread, which must not be waiting on the lock.
+      stopControlLoop();
+      controlLoop.close();
+    }
     imu.close();
     tunerXRecommendation.close();
 
@@ -347,6 +517,10 @@ public class SwerveDrive implements AutoCloseable
     {
       module.close();
     }
+    for (SwerveBusGroup group : busGroups)
+    {
+      group.close();
+    }
   }
 
   /**
@@ -402,6 +576,135 @@ public class SwerveDrive implements AutoCloseable
     odometryThread.startPeriodic(period);
   }
 
+  /**
+   * Enable or disable actuation latency compensation. The delay between commanding chassis speeds and the robot
+   * reaching them is estimated online from the commanded and measured velocity, see {@link LatencyEstimator}. When
+   * enabled the heading correction uses the heading predicted at actuation time, and the commanded translation is
+   * rotated by the heading change expected before it is actuated.
+   *
+   * @param enabled Actuation latency compensation state.
+   */
+  public void setActuationLatencyCompensation(boolean enabled)
+  {
+    actuationLatencyCompensation = enabled;
+  }
+
+  /**
+   * Get the estimated delay between commanding chassis speeds and the robot reaching them.
+   *
+   * @return Actuation latency in seconds, 0.02 until the first estimate.
+   */
+  public double getActuationLatency()
+  {
+    return actuationLatencySeconds;
+  }
+
+  /**
+   * Whether the actuation latency has been estimated from the robot moving yet.
+   *
+   * @return True once {@link SwerveDrive#getActuationLatency()} is a measurement.
+   */
+  public boolean hasActuationLatencyEstimate()
+  {
+    return latencyEstimator.hasEstimate();
+  }
+
+  /**
+   * Get the odometry heading, predicted forward to actuation time when actuation latency compensation is enabled.
+   *
+   * @return Heading in radians.
+   */
+  private double getPredictedHeadingRadians()
+  {
+    double heading = getOdometryHeading().getRadians();
+    if (actuationLatencyCompensation)
+    {
+      heading += robotVelocityCache.getValue(sensorEpoch.get()).omegaRadiansPerSecond * actuationLatencySeconds;
+    }
+    return heading;
+  }
+
+  /**
+   * Record the commanded robot relative velocity for latency estimation.
+   *
+   * @param robotRelativeVelocity Commanded robot relative velocity.
+   */
+  private void recordDesiredVelocity(ChassisSpeeds robotRelativeVelocity)
+  {
+    desiredVxMetersPerSecond = robotRelativeVelocity.vxMetersPerSecond;
+    desiredVyMetersPerSecond = robotRelativeVelocity.vyMetersPerSecond;
+    desiredOmegaRadiansPerSecond = robotRelativeVelocity.omegaRadiansPerSecond;
+  }
+
+  /**
+   * Start a high rate control loop. While it keeps up with its period,
+   * {@link SwerveDrive#drive(ChassisSpeeds, boolean, Translation2d)} posts the velocity to the loop instead of
+   * commanding the modules directly. Use {@link SwerveDrive#setChassisDiscretization(boolean, double)} to match the
+   * discretization period to the loop period.
+   *
+   * @param periodSeconds Loop period in seconds, e.g. 0.005 for 200Hz.
+   */
+  public void startControlLoop(double periodSeconds)
+  {
+    if (controlLoop == null)
+    {
+      controlLoop = new SwerveControlLoop(this);
+    }
+    controlLoop.start(periodSeconds);
+  }
+
+  /**
+   * Stop the high rate control loop, modules are commanded from the calling thread afterwards.
+   */
+  public void stopControlLoop()
+  {
+    if (controlLoop != null)
+    {
+      // Wait out a cycle in flight, so the modules are not commanded by the loop after this returns.
+      commandLock.lock();
+      try
+      {
+        controlLoop.stop();
+      } finally
+      {
+        commandLock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Get the high rate control loop.
+   *
+   * @return {@link Optional} {@link SwerveControlLoop}, empty if it was never started.
+   */
+  public Optional<SwerveControlLoop> getControlLoop()
+  {
+    return Optional.ofNullable(controlLoop);
+  }
+
+  /**
+   * Get the lock serializing module commands, held by each {@link SwerveControlLoop} cycle.
+   *
+   * @return Command lock.
+   */
+  Lock getCommandLock()
+  {
+    return commandLock;
+  }
+
+  /**
+   * Drop any target posted to the control loop so it does not override modules commanded from elsewhere. Must be called
+   * with the {@link SwerveDrive#commandLock} held, so a cycle already in flight finishes before the caller commands the
+   * modules and the next cycle sees no target.
+   */
+  private void clearControlLoop()
+  {
+    if (controlLoop != null)
+    {
+      controlLoop.clear();
+    }
+  }
+
   /**
    * Stop the odometry thread in favor of manually updating odometry.
    */
@@ -411,6 +714,159 @@ public class SwerveDrive implements AutoCloseable
     SimulatedArena.overrideSimulationTimings(Seconds.of(TimedRobot.kDefaultPeriod), 5);
   }
 
+  /**
+   * Enable or disable sampling and commanding the modules on each CAN bus from a dedicated thread. When enabled the
+   * odometry update waits for all buses to be sampled before updating the pose estimator, so a slow bus no longer
+   * delays reads on the others. Enabled by default when the modules are on more than one CAN bus.
+   *
+   * @param enabled Parallel CAN bus access state.
+   */
+  public void setParallelBusAccess(boolean enabled)
+  {
+    parallelBusAccess = enabled;
+  }
+
+  /**
+   * Set the tipping limiter used by {@link SwerveDrive#drive(ChassisSpeeds, boolean, Translation2d)} to limit the change
+   * in commanded velocity each loop to the acceleration the robot can take without tipping at the current mechanism
+   * positions.
+   *
+   * @param limiter {@link DynamicTippingLimiter} to use, null to disable.
+   */
+  public void setTippingLimiter(DynamicTippingLimiter limiter)
+  {
+    commandLock.lock();
+    try
+    {
+      tippingLimiter = limiter;
+    } finally
+    {
+      commandLock.unlock();
+    }
+  }
+
+  /**
+   * Limit the commanded velocity with the {@link SwerveDrive#tippingLimiter} against the last commanded velocity. When
+   * the robot has not been commanded recently the measured velocity is used instead.
+   *
+   * @param robotRelativeVelocity Robot relative commanded velocity, modified in place.
+   */
+  private void applyTippingLimit(ChassisSpeeds robotRelativeVelocity)
+  {
+    double now = Timer.getFPGATimestamp();
+    if (now - lastCommandedTimestamp > discretizationdtSeconds * 5)
+    {
+      ChassisSpeeds measured = getRobotVelocity();
+      lastCommandedVxMetersPerSecond = measured.vxMetersPerSecond;
+      lastCommandedVyMetersPerSecond = measured.vyMetersPerSecond;
+    }
+    if (tippingLimiter.limit(robotRelativeVelocity.vxMetersPerSecond, robotRelativeVelocity.vyMetersPerSecond,
+                             lastCommandedVxMetersPerSecond, lastCommandedVyMetersPerSecond,
+                             discretizationdtSeconds, tippingLimitedVelocity))
+    {
+      robotRelativeVelocity.vxMetersPerSecond = tippingLimitedVelocity[0];
+      robotRelativeVelocity.vyMetersPerSecond = tippingLimitedVelocity[1];
+    }
+    lastCommandedVxMetersPerSecond = robotRelativeVelocity.vxMetersPerSecond;
+    lastCommandedVyMetersPerSecond = robotRelativeVelocity.vyMetersPerSecond;
+    lastCommandedTimestamp = now;
+  }
+
+  /**
+   * Enable or disable latency compensation of the drive encoders, absolute encoders and IMU yaw. Devices which report
+   * timestamps with their readings (Phoenix 6) have them extrapolated by their velocity to the time they are read,
+   * removing up to one CAN frame of lag from the odometry and the cosine compensator. Odometry also extrapolates the
+   * yaw to the time the module positions were sampled using {@link SwerveIMU#extrapolateYaw(double)}.
+   *
+   * @param enabled Latency compensation state.
+   */
+  public void setLatencyCompensation(boolean enabled)
+  {
+    latencyCompensation = enabled;
+    for (SwerveModule module : swerveModules)
+    {
+      module.setLatencyCompensation(enabled);
+    }
+    if (!SwerveDriveTelemetry.isSimulation)
+    {
+      imuReadingCache.updateSupplier(enabled ? this::getLatencyCompensatedRotation3d : imu::getRotation3d);
+      imuReadingCache.update();
+    }
+  }
+
+  /**
+   * Enable or disable drive velocity estimation from timestamped drive position samples on all modules. The estimate
+   * has less lag than the filtered velocity reported by some motor controllers and is used for
+   * {@link SwerveDrive#getRobotVelocity()}, {@link SwerveDrive#getStates()} and the drive feedforward.
+   *
+   * @param enabled                   Velocity estimation state.
+   * @param filterTimeConstantSeconds Time constant of the low-pass filter applied to the estimate in seconds, 0 to
+   *                                  disable filtering.
+   */
+  public void setVelocityEstimation(boolean enabled, double filterTimeConstantSeconds)
+  {
+    for (SwerveModule module : swerveModules)
+    {
+      module.setVelocityEstimation(enabled, filterTimeConstantSeconds);
+    }
+  }
+
+  /**
+   * Check if latency compensation is enabled.
+   *
+   * @return Latency compensation state.
+   */
+  public boolean getLatencyCompensation()
+  {
+    return latencyCompensation;
+  }
+
+  /**
+   * Read the IMU with the yaw replaced by the latency compensated yaw.
+   *
+   * @return {@link Rotation3d} of the IMU.
+   */
+  private Rotation3d getLatencyCompensatedRotation3d()
+  {
+    Rotation3d reading = imu.getRotation3d();
+    return new Rotation3d(reading.getX(), reading.getY(), imu.getLatencyCompensatedYaw());
+  }
+
+  /**
+   * Get the swerve modules grouped by the CAN bus of their drive motor.
+   *
+   * @return {@link List} of {@link SwerveBusGroup}s.
+   */
+  public List<SwerveBusGroup> getBusGroups()
+  {
+    return busGroups;
+  }
+
+  /**
+   * Run an action on every swerve module, in parallel per CAN bus if
+   * {@link SwerveDrive#setParallelBusAccess(boolean)} is enabled.
+   *
+   * @param action Action to run on each {@link SwerveModule}.
+   */
+  private void forEachModule(Consumer<SwerveModule> action)
+  {
+    if (parallelBusAccess)
+    {
+      List<Future<?>> pending = new ArrayList<>(busGroups.size());
+      for (SwerveBusGroup group : busGroups)
+      {
+        pending.add(group.submit(action));
+      }
+      SwerveBusGroup.join(pending);
+    } else
+    {
+      for (SwerveModule module : swerveModules)
+      {
+        action.accept(module);
+      }
+    }
+  }
+
   /**
    * Set the conversion factor for the angle/azimuth motor controller.
    *
@@ -446,7 +902,7 @@ public class SwerveDrive implements AutoCloseable
    */
   public Rotation2d getOdometryHeading()
   {
-    return swerveDrivePoseEstimator.getEstimatedPosition().getRotation();
+    return odometryHeadingCache.getValue(poseEpoch.get());
   }
 
   /**
@@ -592,15 +1048,55 @@ public class SwerveDrive implements AutoCloseable
   /**
    * The primary method for controlling the drivebase. Takes a {@link ChassisSpeeds}, and calculates and commands module
    * states accordingly. Can use either open-loop or closed-loop velocity control for the wheel velocities. Applies
-   * heading correction if enabled and necessary.
+   * heading correction if enabled and necessary. While the {@link SwerveControlLoop} is running the velocity is posted
+   * to it instead.
    *
    * @param robotRelativeVelocity  The chassis speeds to set the robot to achieve.
    * @param isOpenLoop             Whether to use closed-loop velocity control. Set to true to disable closed-loop.
    * @param centerOfRotationMeters The center of rotation in meters, 0 is the center of the robot.
    */
   public void drive(ChassisSpeeds robotRelativeVelocity, boolean isOpenLoop, Translation2d centerOfRotationMeters)
+  {
+    if (controlLoop != null)
+    {
+      if (controlLoop.isHealthy())
+      {
+        controlLoop.post(robotRelativeVelocity, isOpenLoop, centerOfRotationMeters);
+        return;
+      }
+    }
+    commandLock.lock();
+    try
+    {
+      // Fall back to commanding from this thread.
+      clearControlLoop();
+      driveFromControlLoop(robotRelativeVelocity, isOpenLoop, centerOfRotationMeters);
+    } finally
+    {
+      commandLock.unlock();
+    }
+  }
+
+  /**
+   * Command the modules for {@link SwerveDrive#drive(ChassisSpeeds, boolean, Translation2d)} from the calling thread,
+   * used by the {@link SwerveControlLoop} and when it is disabled or unhealthy. Must be called with the
+   * {@link SwerveDrive#commandLock} held.
+   *
+   * @param robotRelativeVelocity  The chassis speeds to set the robot to achieve.
+   * @param isOpenLoop             Whether to use closed-loop velocity control. Set to true to disable closed-loop.
+   * @param centerOfRotationMeters The center of rotation in meters, 0 is the center of the robot.
+   */
+  void driveFromControlLoop(ChassisSpeeds robotRelativeVelocity, boolean isOpenLoop,
+                            Translation2d centerOfRotationMeters)
   {
     SwerveDriveTelemetry.startCtrlCycle();
+    if (tippingLimiter != null)
+    {
+      robotRelativeVelocity = new ChassisSpeeds(robotRelativeVelocity.vxMetersPerSecond,
+                                                robotRelativeVelocity.vyMetersPerSecond,
+                                                robotRelativeVelocity.omegaRadiansPerSecond);
+      applyTippingLimit(robotRelativeVelocity);
+    }
     robotRelativeVelocity = movementOptimizations(robotRelativeVelocity,
                                                   chassisVelocityCorrection,
                                                   angularVelocityCorrection);
@@ -615,7 +1111,7 @@ public class SwerveDrive implements AutoCloseable
               || Math.abs(robotRelativeVelocity.vyMetersPerSecond) > HEADING_CORRECTION_DEADBAND))
       {
         robotRelativeVelocity.omegaRadiansPerSecond =
-            swerveController.headingCalculate(getOdometryHeading().getRadians(), lastHeadingRadians);
+            swerveController.headingCalculate(getPredictedHeadingRadians(), lastHeadingRadians);
       } else
       {
         lastHeadingRadians = getOdometryHeading().getRadians();
@@ -627,12 +1123,96 @@ public class SwerveDrive implements AutoCloseable
     {
       SwerveDriveTelemetry.desiredChassisSpeedsObj = robotRelativeVelocity;
     }
+    recordDesiredVelocity(robotRelativeVelocity);
 
     // Calculate required module states via kinematics
-    SwerveModuleState[] swerveModuleStates = kinematics.toSwerveModuleStates(robotRelativeVelocity,
-                                                                             centerOfRotationMeters);
+    kinematicsEngine.toModuleStates(robotRelativeVelocity.vxMetersPerSecond,
+                                    robotRelativeVelocity.vyMetersPerSecond,
+                                    robotRelativeVelocity.omegaRadiansPerSecond,
+                                    centerOfRotationMeters.getX(),
+                                    centerOfRotationMeters.getY(),
+                                    commandedSpeeds,
+                                    commandedAngles);
 
-    setRawModuleStates(swerveModuleStates, robotRelativeVelocity, isOpenLoop);
+    setRawModuleStates(robotRelativeVelocity, isOpenLoop);
+  }
+
+  /**
+   * Get the {@link SwerveSetpointGenerator} used by {@link SwerveDrive#driveWithSetpointGenerator(ChassisSpeeds)},
+   * creating it from the module constraints in the {@link SwerveDriveConfiguration} on first use. The drive
+   * acceleration is limited by the wheel grip coefficient of friction.
+   *
+   * @return {@link SwerveSetpointGenerator} for this drive.
+   */
+  public SwerveSetpointGenerator getSetpointGenerator()
+  {
+    if (setpointGenerator == null)
+    {
+      setpointGenerator = new SwerveSetpointGenerator(swerveDriveConfiguration.moduleLocationsMeters,
+                                                      getMaximumModuleDriveVelocity(),
+                                                      SwerveMath.calculateMaxAcceleration(
+                                                          swerveDriveConfiguration.physicalCharacteristics.wheelGripCoefficientOfFriction),
+                                                      getMaximumModuleAngleVelocity().in(RadiansPerSecond));
+    }
+    return setpointGenerator;
+  }
+
+  /**
+   * Drive the robot through the {@link SwerveSetpointGenerator}, which limits the change in module states each loop to
+   * what the modules can achieve. When the generator has not been used recently it is reset to the measured state.
+   * Uses closed-loop velocity control, with a force feedforward from the setpoint module accelerations and an even
+   * share of the robot mass on each module.
+   *
+   * @param robotRelativeVelocity The robot relative chassis speeds to move towards.
+   */
+  public void driveWithSetpointGenerator(ChassisSpeeds robotRelativeVelocity)
+  {
+    commandLock.lock();
+    try
+    {
+      clearControlLoop();
+      SwerveDriveTelemetry.startCtrlCycle();
+      SwerveSetpointGenerator generator = getSetpointGenerator();
+      double                  now       = Timer.getFPGATimestamp();
+      double                  dt        = now - lastSetpointTimestamp;
+      if (dt > 0.1)
+      {
+        ChassisSpeeds measured = getRobotVelocity();
+        synchronized (measuredChassisSpeeds)
+        {
+          generator.reset(measuredSpeeds, measuredAngles, measured.vxMetersPerSecond, measured.vyMetersPerSecond,
+                          measured.omegaRadiansPerSecond);
+        }
+        dt = discretizationdtSeconds;
+      }
+      lastSetpointTimestamp = now;
+
+      generator.generate(robotRelativeVelocity.vxMetersPerSecond,
+                         robotRelativeVelocity.vyMetersPerSecond,
+                         robotRelativeVelocity.omegaRadiansPerSecond,
+                         dt);
+      if (SwerveDriveTelemetry.verbosity.ordinal() >= TelemetryVerbosity.LOW.ordinal())
+      {
+        double[] setpoint = generator.getChassisSpeeds();
+        SwerveDriveTelemetry.desiredChassisSpeedsObj = new ChassisSpeeds(setpoint[0], setpoint[1], setpoint[2]);
+      }
+      double[] setpointSpeeds = generator.getChassisSpeeds();
+      desiredVxMetersPerSecond = setpointSpeeds[0];
+      desiredVyMetersPerSecond = setpointSpeeds[1];
+      desiredOmegaRadiansPerSecond = setpointSpeeds[2];
+      System.arraycopy(generator.getModuleSpeeds(), 0, commandedSpeeds, 0, commandedSpeeds.length);
+      System.arraycopy(generator.getModuleAngles(), 0, commandedAngles, 0, commandedAngles.length);
+      double   moduleMassKg  = swerveDriveConfiguration.physicalCharacteristics.robotMassKg / commandedForces.length;
+      double[] accelerations = generator.getModuleAccelerations();
+      for (int i = 0; i < commandedForces.length; i++)
+      {
+        commandedForces[i] = accelerations[i] * moduleMassKg;
+      }
+      commandModules(false, commandedForces);
+    } finally
+    {
+      commandLock.unlock();
+    }
   }
 
   /**
@@ -710,34 +1290,73 @@ public class SwerveDrive implements AutoCloseable
   }
 
   /**
-   * Set the module states (azimuth and velocity) directly.
+   * Set the module states (azimuth and velocity) directly from {@link SwerveDrive#commandedSpeeds} and
+   * {@link SwerveDrive#commandedAngles}.
    *
-   * @param desiredStates       A list of SwerveModuleStates to send to the modules.
    * @param desiredChassisSpeed The desired chassis speeds to set the robot to achieve.
    * @param isOpenLoop          Whether to use closed-loop velocity control. Set to true to disable closed-loop.
    */
-  private void setRawModuleStates(SwerveModuleState[] desiredStates, ChassisSpeeds desiredChassisSpeed,
-                                  boolean isOpenLoop)
+  private void setRawModuleStates(ChassisSpeeds desiredChassisSpeed, boolean isOpenLoop)
   {
     // Desaturates wheel speeds
     double maxModuleSpeedMPS = getMaximumModuleDriveVelocity();
     if ((attainableMaxTranslationalSpeedMetersPerSecond != 0 || attainableMaxRotationalVelocityRadiansPerSecond != 0) &&
         attainableMaxTranslationalSpeedMetersPerSecond != maxChassisSpeedMPS)
     {
-      SwerveDriveKinematics.desaturateWheelSpeeds(desiredStates, desiredChassisSpeed,
-                                                  maxModuleSpeedMPS,
-                                                  attainableMaxTranslationalSpeedMetersPerSecond,
-                                                  attainableMaxRotationalVelocityRadiansPerSecond);
+      SwerveMath.desaturateWheelSpeeds(commandedSpeeds,
+                                       desiredChassisSpeed.vxMetersPerSecond,
+                                       desiredChassisSpeed.vyMetersPerSecond,
+                                       desiredChassisSpeed.omegaRadiansPerSecond,
+                                       maxModuleSpeedMPS,
+                                       attainableMaxTranslationalSpeedMetersPerSecond,
+                                       attainableMaxRotationalVelocityRadiansPerSecond);
     } else
     {
-      SwerveDriveKinematics.desaturateWheelSpeeds(desiredStates, maxModuleSpeedMPS);
+      SwerveMath.desaturateWheelSpeeds(commandedSpeeds, maxModuleSpeedMPS);
     }
 
-    // Sets states
-    for (SwerveModule module : swerveModules)
-    {
-      module.setDesiredState(desiredStates[module.moduleNumber], isOpenLoop, false);
-    }
+    commandModules(isOpenLoop);
+  }
+
+  /**
+   * Send {@link SwerveDrive#commandedSpeeds} and {@link SwerveDrive#commandedAngles} to the modules, running the fused
+   * optimization, anti-jitter, cosine compensation and feedforward stage for each module first.
+   *
+   * @param isOpenLoop Whether to use closed-loop velocity control. Set to true to disable closed-loop.
+   */
+  private void commandModules(boolean isOpenLoop)
+  {
+    commandModules(isOpenLoop, null);
+  }
+
+  /**
+   * Send {@link SwerveDrive#commandedSpeeds} and {@link SwerveDrive#commandedAngles} to the modules, running the fused
+   * optimization, anti-jitter, cosine compensation and feedforward stage for each module first.
+   *
+   * @param isOpenLoop    Whether to use closed-loop velocity control. Set to true to disable closed-loop.
+   * @param forcesNewtons Module drive forces in Newtons along the commanded headings to use for
+   *                      {@link SwerveModule#getForceFeedforward(double, double)} instead of the velocity feedforward,
+   *                      or null.
+   */
+  private void commandModules(boolean isOpenLoop, double[] forcesNewtons)
+  {
+    forEachModule(module -> {
+      int    moduleNumber = module.moduleNumber;
+      double angle        = commandedAngles[moduleNumber];
+      module.prepareDesiredState(commandedSpeeds, commandedAngles, commandedFeedforwardVolts, false);
+      if (forcesNewtons != null)
+      {
+        // The force points the other way if the module was flipped by the state optimization.
+        double force = Math.abs(SwerveGeometry.wrapRadians(commandedAngles[moduleNumber] - angle)) > Math.PI / 2
+                       ? -forcesNewtons[moduleNumber]
+                       : forcesNewtons[moduleNumber];
+        commandedFeedforwardVolts[moduleNumber] = module.getForceFeedforward(force, commandedSpeeds[moduleNumber]);
+      }
+      module.setDesiredState(commandedSpeeds[moduleNumber],
+                             commandedAngles[moduleNumber],
+                             isOpenLoop,
+                             commandedFeedforwardVolts[moduleNumber]);
+    });
   }
 
   /**
@@ -751,15 +1370,31 @@ public class SwerveDrive implements AutoCloseable
    */
   public void setModuleStates(SwerveModuleState[] desiredStates, boolean isOpenLoop)
   {
-    SwerveDriveTelemetry.startCtrlCycle();
-    double maxModuleSpeedMPS = getMaximumModuleDriveVelocity();
-    desiredStates = kinematics.toSwerveModuleStates(kinematics.toChassisSpeeds(desiredStates));
-    SwerveDriveKinematics.desaturateWheelSpeeds(desiredStates, maxModuleSpeedMPS);
-
-    // Sets states
-    for (SwerveModule module : swerveModules)
+    commandLock.lock();
+    try
     {
-      module.setDesiredState(desiredStates[module.moduleNumber], isOpenLoop, false);
+      clearControlLoop();
+      SwerveDriveTelemetry.startCtrlCycle();
+      double maxModuleSpeedMPS = getMaximumModuleDriveVelocity();
+      for (int i = 0; i < desiredStates.length; i++)
+      {
+        commandedSpeeds[i] = desiredStates[i].speedMetersPerSecond;
+        commandedAngles[i] = desiredStates[i].angle.getRadians();
+      }
+      kinematicsEngine.toChassisSpeeds(commandedSpeeds, commandedAngles, commandedChassisSpeeds);
+      kinematicsEngine.toModuleStates(commandedChassisSpeeds[0],
+                                      commandedChassisSpeeds[1],
+                                      commandedChassisSpeeds[2],
+                                      0,
+                                      0,
+                                      commandedSpeeds,
+                                      commandedAngles);
+      SwerveMath.desaturateWheelSpeeds(commandedSpeeds, maxModuleSpeedMPS);
+
+      commandModules(isOpenLoop);
+    } finally
+    {
+      commandLock.unlock();
     }
   }
 
@@ -774,38 +1409,33 @@ public class SwerveDrive implements AutoCloseable
    */
   public void drive(ChassisSpeeds robotRelativeVelocity, SwerveModuleState[] states, Force[] feedforwardForces)
   {
-    SwerveDriveTelemetry.startCtrlCycle();
-    if (SwerveDriveTelemetry.verbosity.ordinal() >= TelemetryVerbosity.LOW.ordinal())
+    commandLock.lock();
+    try
     {
-      SwerveDriveTelemetry.desiredChassisSpeedsObj = robotRelativeVelocity;
-    }
-    for (SwerveModule module : swerveModules)
+      clearControlLoop();
+      SwerveDriveTelemetry.startCtrlCycle();
+      if (SwerveDriveTelemetry.verbosity.ordinal() >= TelemetryVerbosity.LOW.ordinal())
+      {
+        SwerveDriveTelemetry.desiredChassisSpeedsObj = robotRelativeVelocity;
+      }
+      recordDesiredVelocity(robotRelativeVelocity);
+      forEachModule(module -> {
+        module.applyStateOptimizations(states[module.moduleNumber]);
+        module.applyAntiJitter(states[module.moduleNumber], false);
+
+        // Warning: Will not work well if motor is not what we are expecting.
+        // Warning: Should set the expected motor type with SwerveModule#setDriveMotorModel first.
+        double feedforwardVoltage = module.getForceFeedforward(feedforwardForces[module.moduleNumber].in(Newtons),
+                                                               states[module.moduleNumber].speedMetersPerSecond);
+        module.setDesiredState(
+            states[module.moduleNumber],
+            false,
+            feedforwardVoltage
+                              );
+      });
+    } finally
     {
-      module.applyStateOptimizations(states[module.moduleNumber]);
-      module.applyAntiJitter(states[module.moduleNumber], false);
-
-      // from the module configuration, obtain necessary information to calculate feed-forward
-      // Warning: Will not work well if motor is not what we are expecting.
-      // Warning: Should replace module.getDriveMotor().simMotor with expected motor type first.
-      DCMotor driveMotorModel   = module.configuration.driveMotor.getSimMotor();
-      double  driveGearRatio    = module.configuration.conversionFactors.drive.gearRatio;
-      double  wheelRadiusMeters = Units.inchesToMeters(module.configuration.conversionFactors.drive.diameter) / 2;
-
-      // calculation:
-      double desiredGroundSpeedMPS = states[module.moduleNumber].speedMetersPerSecond;
-      double feedforwardVoltage = driveMotorModel.getVoltage(
-          // Since: (1) torque = force * momentOfForce; (2) torque (on wheel) = torque (on motor) * gearRatio
-          // torque (on motor) = force * wheelRadius / gearRatio
-          feedforwardForces[module.moduleNumber].in(Newtons) * wheelRadiusMeters / driveGearRatio,
-          // Since: (1) linear velocity = angularVelocity * wheelRadius; (2) wheelVelocity = motorVelocity / gearRatio
-          // motorAngularVelocity = linearVelocity / wheelRadius * gearRatio
-          desiredGroundSpeedMPS / wheelRadiusMeters * driveGearRatio
-                                                            );
-      module.setDesiredState(
-          states[module.moduleNumber],
-          false,
-          feedforwardVoltage
-                            );
+      commandLock.unlock();
     }
   }
 
@@ -816,14 +1446,29 @@ public class SwerveDrive implements AutoCloseable
    */
   public void setChassisSpeeds(ChassisSpeeds robotRelativeSpeeds)
   {
-    SwerveDriveTelemetry.startCtrlCycle();
-    robotRelativeSpeeds = movementOptimizations(robotRelativeSpeeds,
-                                                autonomousChassisVelocityCorrection,
-                                                autonomousAngularVelocityCorrection);
-
-    SwerveDriveTelemetry.desiredChassisSpeedsObj = robotRelativeSpeeds;
-
-    setRawModuleStates(kinematics.toSwerveModuleStates(robotRelativeSpeeds), robotRelativeSpeeds, false);
+    commandLock.lock();
+    try
+    {
+      clearControlLoop();
+      SwerveDriveTelemetry.startCtrlCycle();
+      robotRelativeSpeeds = movementOptimizations(robotRelativeSpeeds,
+                                                  autonomousChassisVelocityCorrection,
+                                                  autonomousAngularVelocityCorrection);
+
+      SwerveDriveTelemetry.desiredChassisSpeedsObj = robotRelativeSpeeds;
+
+      kinematicsEngine.toModuleStates(robotRelativeSpeeds.vxMetersPerSecond,
+                                      robotRelativeSpeeds.vyMetersPerSecond,
+                                      robotRelativeSpeeds.omegaRadiansPerSecond,
+                                      0,
+                                      0,
+                                      commandedSpeeds,
+                                      commandedAngles);
+      setRawModuleStates(robotRelativeSpeeds, false);
+    } finally
+    {
+      commandLock.unlock();
+    }
   }
 
   /**
@@ -840,6 +1485,35 @@ public class SwerveDrive implements AutoCloseable
     return poseEstimation;
   }
 
+  /**
+   * Gets the pose estimate at a past time, interpolated from the odometry history of the
+   * {@link SwerveDrivePoseEstimator}.
+   *
+   * @param timestampSeconds Timestamp in seconds, in the same time base as {@link Timer#getFPGATimestamp()}.
+   * @return The estimated pose at the timestamp, empty if the history is empty.
+   */
+  public Optional<Pose2d> samplePoseAt(double timestampSeconds)
+  {
+    odometryLock.lock();
+    Optional<Pose2d> pose = swerveDrivePoseEstimator.sampleAt(timestampSeconds);
+    odometryLock.unlock();
+    return pose;
+  }
+
+  /**
+   * Gets the sensor readings the last odometry update used, without reading the sensors, so they can be read from
+   * threads other than the one updating odometry.
+   *
+   * @return {@link OdometryInputs} of the last update, empty before the first update.
+   */
+  public Optional<OdometryInputs> getLastOdometryInputs()
+  {
+    odometryLock.lock();
+    OdometryInputs inputs = lastOdometryInputs;
+    odometryLock.unlock();
+    return Optional.ofNullable(inputs);
+  }
+
   /**
    * Gets the maple-sim drivetrain simulation instance This is used to add intake simulation / launch game pieces from
    * the robot
@@ -877,11 +1551,25 @@ public class SwerveDrive implements AutoCloseable
    * @return A ChassisSpeeds object of the current field-relative velocity
    */
   public ChassisSpeeds getFieldVelocity()
+  {
+    // Both epochs only increase, so their sum changes whenever either of them does.
+    ChassisSpeeds fieldVelocity = fieldVelocityCache.getValue(sensorEpoch.get() + poseEpoch.get());
+    return new ChassisSpeeds(fieldVelocity.vxMetersPerSecond,
+                             fieldVelocity.vyMetersPerSecond,
+                             fieldVelocity.omegaRadiansPerSecond);
+  }
+
+  /**
+   * Calculate the field relative velocity for {@link SwerveDrive#fieldVelocityCache}.
+   *
+   * @return A ChassisSpeeds object of the current field-relative velocity
+   */
+  private ChassisSpeeds calculateFieldVelocity()
   {
     // ChassisSpeeds has a method to convert from field-relative to robot-relative speeds,
     // but not the reverse.  However, because this transform is a simple rotation, negating the
     // angle given as the robot angle reverses the direction of rotation, and the conversion is reversed.
-    ChassisSpeeds robotRelativeSpeeds = kinematics.toChassisSpeeds(getStates());
+    ChassisSpeeds robotRelativeSpeeds = getRobotVelocity();
     return ChassisSpeeds.fromRobotRelativeSpeeds(robotRelativeSpeeds, getOdometryHeading());
     // Might need to be this instead
     //return ChassisSpeeds.fromFieldRelativeSpeeds(
@@ -889,13 +1577,35 @@ public class SwerveDrive implements AutoCloseable
   }
 
   /**
-   * Gets the current robot-relative velocity (x, y and omega) of the robot
+   * Gets the current robot-relative velocity (x, y and omega) of the robot. Computed once per odometry update.
    *
    * @return A ChassisSpeeds object of the current robot-relative velocity
    */
   public ChassisSpeeds getRobotVelocity()
   {
-    return kinematics.toChassisSpeeds(getStates());
+    ChassisSpeeds robotVelocity = robotVelocityCache.getValue(sensorEpoch.get());
+    return new ChassisSpeeds(robotVelocity.vxMetersPerSecond,
+                             robotVelocity.vyMetersPerSecond,
+                             robotVelocity.omegaRadiansPerSecond);
+  }
+
+  /**
+   * Calculate the robot relative velocity for {@link SwerveDrive#robotVelocityCache} from the module velocities.
+   *
+   * @return A ChassisSpeeds object of the current robot-relative velocity
+   */
+  private ChassisSpeeds calculateRobotVelocity()
+  {
+    synchronized (measuredChassisSpeeds)
+    {
+      for (SwerveModule module : swerveModules)
+      {
+        measuredSpeeds[module.moduleNumber] = module.getDriveVelocity();
+        measuredAngles[module.moduleNumber] = Math.toRadians(module.getAbsolutePosition());
+      }
+      kinematicsEngine.toChassisSpeeds(measuredSpeeds, measuredAngles, measuredChassisSpeeds);
+      return new ChassisSpeeds(measuredChassisSpeeds[0], measuredChassisSpeeds[1], measuredChassisSpeeds[2]);
+    }
   }
 
   /**
@@ -913,6 +1623,7 @@ public class SwerveDrive implements AutoCloseable
     {
       mapleSimDrive.setSimulationWorldPose(pose);
     }
+    poseEpoch.incrementAndGet();
     odometryLock.unlock();
     ChassisSpeeds robotRelativeSpeeds = ChassisSpeeds.fromRobotRelativeSpeeds(new ChassisSpeeds(0, 0, 0), getYaw());
     kinematics.toSwerveModuleStates(robotRelativeSpeeds);
@@ -989,6 +1700,7 @@ public class SwerveDrive implements AutoCloseable
       setGyroOffset(imu.getRawRotation3d().minus(gyro));
     }
     imuReadingCache.update();
+    sensorEpoch.incrementAndGet();
   }
 
   /**
@@ -1006,8 +1718,16 @@ public class SwerveDrive implements AutoCloseable
       setGyroOffset(imu.getRawRotation3d());
     }
     imuReadingCache.update();
-    swerveController.lastAngleScalar = 0;
-    lastHeadingRadians = 0;
+    sensorEpoch.incrementAndGet();
+    commandLock.lock();
+    try
+    {
+      swerveController.lastAngleScalar = 0;
+      lastHeadingRadians = 0;
+    } finally
+    {
+      commandLock.unlock();
+    }
     resetOdometry(new Pose2d(getPose().getTranslation(), new Rotation2d()));
   }
 
@@ -1019,7 +1739,7 @@ public class SwerveDrive implements AutoCloseable
   public Rotation2d getYaw()
   {
     // Read the imu if the robot is real or the accumulator if the robot is simulated.
-    return Rotation2d.fromRadians(imuReadingCache.getValue().getZ());
+    return yawCache.getValue(sensorEpoch.get());
   }
 
   /**
@@ -1106,21 +1826,29 @@ public class SwerveDrive implements AutoCloseable
    */
   public void lockPose()
   {
-    // Sets states
-    for (SwerveModule swerveModule : swerveModules)
+    commandLock.lock();
+    try
     {
-      SwerveModuleState desiredState =
-          new SwerveModuleState(0, swerveModule.configuration.moduleLocation.getAngle());
-      if (SwerveDriveTelemetry.verbosity.ordinal() >= TelemetryVerbosity.INFO.ordinal())
+      clearControlLoop();
+      // Sets states
+      for (SwerveModule swerveModule : swerveModules)
       {
-        SwerveDriveTelemetry.desiredStatesObj[swerveModule.moduleNumber] = desiredState;
+        SwerveModuleState desiredState =
+            new SwerveModuleState(0, swerveModule.configuration.moduleLocation.getAngle());
+        if (SwerveDriveTelemetry.verbosity.ordinal() >= TelemetryVerbosity.INFO.ordinal())
+        {
+          SwerveDriveTelemetry.desiredStatesObj[swerveModule.moduleNumber] = desiredState;
+        }
+        swerveModule.setDesiredState(desiredState, false, true);
+
       }
-      swerveModule.setDesiredState(desiredState, false, true);
 
+      // Update kinematics because we are not using setModuleStates
+      kinematics.toSwerveModuleStates(new ChassisSpeeds());
+    } finally
+    {
+      commandLock.unlock();
     }
-
-    // Update kinematics because we are not using setModuleStates
-    kinematics.toSwerveModuleStates(new ChassisSpeeds());
   }
 
   /**
@@ -1155,6 +1883,23 @@ public class SwerveDrive implements AutoCloseable
     }
   }
 
+  /**
+   * Set the loop period the drive feedforward of every module is discretized with, keeping the current gains.
+   *
+   * @param dtSeconds Loop period in seconds.
+   */
+  public void setDriveFeedforwardPeriod(double dtSeconds)
+  {
+    for (SwerveModule swerveModule : swerveModules)
+    {
+      SimpleMotorFeedforward feedforward = swerveModule.getFeedforward();
+      swerveModule.setFeedforward(new SimpleMotorFeedforward(feedforward.getKs(),
+                                                             feedforward.getKv(),
+                                                             feedforward.getKa(),
+                                                             dtSeconds));
+    }
+  }
+
   /**
    * Update odometry should be run every loop. Synchronizes module absolute encoders with relative encoders
    * periodically. In simulation mode will also post the pose of each module. Updates SmartDashboard with module encoder
@@ -1167,8 +1912,49 @@ public class SwerveDrive implements AutoCloseable
 //    invalidateCache();
     try
     {
+      if (imu != null)
+      {
+        // Sample the IMU once per update, the yaw getters below read this sample.
+        imu.sampleYaw();
+      }
+      if (parallelBusAccess)
+      {
+        // Sample every CAN bus at the same time and read the IMU while waiting on them.
+        List<Future<?>> pending = new ArrayList<>(busGroups.size());
+        for (SwerveBusGroup group : busGroups)
+        {
+          pending.add(group.sample());
+        }
+        imuReadingCache.update();
+        SwerveBusGroup.join(pending);
+      }
+      sensorEpoch.incrementAndGet();
+
       // Update odometry
-      swerveDrivePoseEstimator.update(getYaw(), getModulePositions());
+      double                 timestamp = Timer.getFPGATimestamp();
+      SwerveModulePosition[] positions = getModulePositions();
+      Rotation2d             heading;
+      if (latencyCompensation && !SwerveDriveTelemetry.isSimulation)
+      {
+        // Line the heading up with the time the module positions were sampled.
+        heading = Rotation2d.fromRadians(imu.extrapolateYaw(timestamp));
+      } else
+      {
+        heading = getYaw();
+      }
+      swerveDrivePoseEstimator.updateWithTime(timestamp, heading, positions);
+      lastOdometryInputs = new OdometryInputs(timestamp, heading, positions);
+      poseEpoch.incrementAndGet();
+
+      ChassisSpeeds measuredVelocity = robotVelocityCache.getValue(sensorEpoch.get());
+      latencyEstimator.addSample(Timer.getFPGATimestamp(),
+                                 desiredVxMetersPerSecond,
+                                 desiredVyMetersPerSecond,
+                                 desiredOmegaRadiansPerSecond,
+                                 measuredVelocity.vxMetersPerSecond,
+                                 measuredVelocity.vyMetersPerSecond,
+                                 measuredVelocity.omegaRadiansPerSecond);
+      actuationLatencySeconds = latencyEstimator.getLatencySeconds();
 
       if (SwerveDriveTelemetry.isSimulation)
       {
@@ -1212,6 +1998,10 @@ public class SwerveDrive implements AutoCloseable
           module.updateTelemetry();
           rawIMUPublisher.set(getYaw().getDegrees());
           adjustedIMUPublisher.set(getOdometryHeading().getDegrees());
+          if (imu instanceof RedundantIMUSwerve)
+          {
+            ((RedundantIMUSwerve) imu).updateTelemetry();
+          }
         }
         if (SwerveDriveTelemetry.verbosity.ordinal() >= TelemetryVerbosity.INFO.ordinal())
         {
@@ -1251,6 +2041,18 @@ public class SwerveDrive implements AutoCloseable
     {
       module.invalidateCache();
     }
+    invalidateDerivedState();
+  }
+
+  /**
+   * Recompute the robot velocity, field velocity, odometry heading and yaw on their next request instead of serving
+   * them from this odometry update. Called whenever the pose or gyro is reset, call it after changing the sensors or
+   * odometry in any other way.
+   */
+  public void invalidateDerivedState()
+  {
+    sensorEpoch.incrementAndGet();
+    poseEpoch.incrementAndGet();
   }
 
   /**
@@ -1280,6 +2082,7 @@ public class SwerveDrive implements AutoCloseable
       imu.setOffset(offset);
     }
     imuReadingCache.update();
+    sensorEpoch.incrementAndGet();
   }
 
   /**
@@ -1301,6 +2104,7 @@ public class SwerveDrive implements AutoCloseable
   {
     odometryLock.lock();
     swerveDrivePoseEstimator.addVisionMeasurement(robotPose, timestamp, visionMeasurementStdDevs);
+    poseEpoch.incrementAndGet();
     odometryLock.unlock();
   }
 
@@ -1331,6 +2135,7 @@ public class SwerveDrive implements AutoCloseable
   {
     odometryLock.lock();
     swerveDrivePoseEstimator.addVisionMeasurement(robotPose, timestamp);
+    poseEpoch.incrementAndGet();
 //    Pose2d newOdometry = new Pose2d(swerveDrivePoseEstimator.getEstimatedPosition().getTranslation(),
 //                                    robotPose.getRotation());
     odometryLock.unlock();
@@ -1381,13 +2186,20 @@ public class SwerveDrive implements AutoCloseable
 
   /**
    * Reset the drive encoders on the robot, useful when manually resetting the robot without a reboot, like in
-   * autonomous.
+   * autonomous. The drive velocity estimators are reset with them.
    */
   public void resetDriveEncoders()
   {
-    for (SwerveModule module : swerveModules)
+    odometryLock.lock();
+    try
+    {
+      for (SwerveModule module : swerveModules)
+      {
+        module.resetDrivePosition();
+      }
+    } finally
     {
-      module.getDriveMotor().setPosition(0);
+      odometryLock.unlock();
     }
   }
 
@@ -1579,6 +2391,18 @@ public class SwerveDrive implements AutoCloseable
       robotRelativeVelocity = angularVelocitySkewCorrection(robotRelativeVelocity);
     }
 
+    if (actuationLatencyCompensation)
+    {
+      // Rotate the translation into the heading the robot will have by the time the command is actuated.
+      double rotation = -robotVelocityCache.getValue(sensorEpoch.get()).omegaRadiansPerSecond * actuationLatencySeconds;
+      double cos      = Math.cos(rotation);
+      double sin      = Math.sin(rotation);
+      robotRelativeVelocity = new ChassisSpeeds(
+          robotRelativeVelocity.vxMetersPerSecond * cos - robotRelativeVelocity.vyMetersPerSecond * sin,
+          robotRelativeVelocity.vxMetersPerSecond * sin + robotRelativeVelocity.vyMetersPerSecond * cos,
+          robotRelativeVelocity.omegaRadiansPerSecond);
+    }
+
     // Thank you to Jared Russell FRC254 for Open Loop Compensation Code
     // https://www.chiefdelphi.com/t/whitepaper-swerve-drive-skew-and-second-order-kinematics/416964/5
     if (uesChassisDiscretize)
@@ -18,7 +18,7 @@ import java.util.Optional;
 import java.util.function.BooleanSupplier;
 import java.util.function.DoubleSupplier;
 import java.util.function.Supplier;
-import swervelib.math.SwerveMath;
+import swervelib.math.SwerveGeometry;
 
 /**
  * Helper class to easily transform Controller inputs into workable Chassis speeds. Intended to easily create an
@@ -151,6 +151,10 @@ public class SwerveInputStream implements Supplier<ChassisSpeeds>
    * Current {@link SwerveInputMode} to use.
    */
   private SwerveInputMode                 currentMode                         = SwerveInputMode.ANGULAR_VELOCITY;
+  /**
+   * Controller translation [x, y] being shaped, reused every call to {@link SwerveInputStream#get()}.
+   */
+  private final double[]                  translation                         = new double[2];
 
 
   /**
@@ -738,32 +742,31 @@ public class SwerveInputStream implements Supplier<ChassisSpeeds>
    *
    * @param xAxis X axis to scale.
    * @param yAxis Y axis to scale.
-   * @return Scaled {@link Translation2d}
+   * @param out   Output scaled [x, y].
    */
-  private Translation2d applyTranslationScalar(double xAxis, double yAxis)
+  private void applyTranslationScalar(double xAxis, double yAxis, double[] out)
   {
     if (translationAxisScale.isPresent())
-
     {
-      return SwerveMath.scaleTranslation(new Translation2d(xAxis, yAxis),
-                                         translationAxisScale.get());
+      SwerveGeometry.scale(xAxis, yAxis, translationAxisScale.get(), out);
+      return;
     }
-    return new Translation2d(xAxis, yAxis);
+    out[0] = xAxis;
+    out[1] = yAxis;
   }
 
   /**
-   * Apply the cube transformation on the given {@link Translation2d}
+   * Apply the cube transformation on the given translation if the {@link SwerveInputStream#translationCube} is
+   * present.
    *
-   * @param translation {@link Translation2d} representing controller input
-   * @return Cubed {@link Translation2d} if the {@link SwerveInputStream#translationCube} is present.
+   * @param translation Controller input [x, y], cubed in place.
    */
-  private Translation2d applyTranslationCube(Translation2d translation)
+  private void applyTranslationCube(double[] translation)
   {
     if (translationCube.isPresent() && translationCube.get().getAsBoolean())
     {
-      return SwerveMath.cubeTranslation(translation);
+      SwerveGeometry.cube(translation[0], translation[1], translation);
     }
-    return translation;
   }
 
   /**
@@ -797,12 +800,11 @@ public class SwerveInputStream implements Supplier<ChassisSpeeds>
   }
 
   /**
-   * Apply alliance aware translation which flips the {@link Translation2d} if the robot is on the Blue alliance.
+   * Apply alliance aware translation which flips the translation if the robot is on the Blue alliance.
    *
-   * @param fieldRelativeTranslation Field-relative {@link Translation2d} to flip.
-   * @return Alliance-oriented {@link Translation2d}
+   * @param fieldRelativeTranslation Field-relative [x, y] to flip in place.
    */
-  private Translation2d applyAllianceAwareTranslation(Translation2d fieldRelativeTranslation)
+  private void applyAllianceAwareTranslation(double[] fieldRelativeTranslation)
   {
     if (allianceRelative.isPresent() && allianceRelative.get().getAsBoolean())
     {
@@ -810,25 +812,25 @@ public class SwerveInputStream implements Supplier<ChassisSpeeds>
       {
         if (driveToPoseEnabled.isPresent() && driveToPoseEnabled.get().getAsBoolean())
         {
-          return fieldRelativeTranslation;
+          return;
         }
         throw new RuntimeException("Cannot use robot oriented control with Alliance aware movement!");
       }
       if (DriverStation.getAlliance().isPresent() && DriverStation.getAlliance().get() == Alliance.Red)
       {
-        return fieldRelativeTranslation.rotateBy(Rotation2d.k180deg);
+        fieldRelativeTranslation[0] = -fieldRelativeTranslation[0];
+        fieldRelativeTranslation[1] = -fieldRelativeTranslation[1];
       }
     }
-    return fieldRelativeTranslation;
   }
 
   /**
-   * Apply alliance aware translation which flips the {@link Rotation2d} if the robot is on the Blue alliance.
+   * Apply alliance aware translation which flips the rotation if the robot is on the Blue alliance.
    *
-   * @param fieldRelativeRotation Field-relative {@link Rotation2d} to flip.
-   * @return Alliance-oriented {@link Rotation2d}
+   * @param fieldRelativeRotation Field-relative rotation in radians to flip.
+   * @return Alliance-oriented rotation in radians.
    */
-  private Rotation2d applyAllianceAwareRotation(Rotation2d fieldRelativeRotation)
+  private double applyAllianceAwareRotation(double fieldRelativeRotation)
   {
     if (allianceRelative.isPresent() && allianceRelative.get().getAsBoolean())
     {
@@ -838,10 +840,10 @@ public class SwerveInputStream implements Supplier<ChassisSpeeds>
       }
       if (DriverStation.getAlliance().isPresent() && DriverStation.getAlliance().get() == Alliance.Red)
       {
-        return fieldRelativeRotation.rotateBy(Rotation2d.k180deg);
+        return SwerveGeometry.wrapRadians(fieldRelativeRotation + Math.PI);
       }
     }
-    return fieldRelativeRotation;
+    return SwerveGeometry.wrapRadians(fieldRelativeRotation);
   }
 
   /**
@@ -856,9 +858,10 @@ public class SwerveInputStream implements Supplier<ChassisSpeeds>
     {
       if (translationHeadingOffset.isPresent())
       {
-        Translation2d speedsTranslation = new Translation2d(speeds.vxMetersPerSecond,
-                                                            speeds.vyMetersPerSecond).rotateBy(translationHeadingOffset.get());
-        return new ChassisSpeeds(speedsTranslation.getX(), speedsTranslation.getY(), speeds.omegaRadiansPerSecond);
+        Rotation2d offset = translationHeadingOffset.get();
+        SwerveGeometry.rotate(speeds.vxMetersPerSecond, speeds.vyMetersPerSecond, offset.getCos(), offset.getSin(),
+                              translation);
+        return new ChassisSpeeds(translation[0], translation[1], speeds.omegaRadiansPerSecond);
       }
     }
     return speeds;
@@ -899,13 +902,14 @@ public class SwerveInputStream implements Supplier<ChassisSpeeds>
   public ChassisSpeeds get()
   {
     double maximumChassisVelocity = swerveDrive.getMaximumChassisVelocity();
-    Translation2d scaledTranslation = applyTranslationScalar(applyDeadband(controllerTranslationX.getAsDouble()),
-                                                             applyDeadband(controllerTranslationY.getAsDouble()));
-    scaledTranslation = applyTranslationCube(scaledTranslation);
-    scaledTranslation = applyAllianceAwareTranslation(scaledTranslation);
+    applyTranslationScalar(applyDeadband(controllerTranslationX.getAsDouble()),
+                           applyDeadband(controllerTranslationY.getAsDouble()),
+                           translation);
+    applyTranslationCube(translation);
+    applyAllianceAwareTranslation(translation);
 
-    double        vxMetersPerSecond     = scaledTranslation.getX() * maximumChassisVelocity;
-    double        vyMetersPerSecond     = scaledTranslation.getY() * maximumChassisVelocity;
+    double        vxMetersPerSecond     = translation[0] * maximumChassisVelocity;
+    double        vyMetersPerSecond     = translation[1] * maximumChassisVelocity;
     double        omegaRadiansPerSecond = 0;
     ChassisSpeeds speeds                = new ChassisSpeeds();
 
@@ -940,12 +944,11 @@ public class SwerveInputStream implements Supplier<ChassisSpeeds>
       {
         omegaRadiansPerSecond = swerveController.headingCalculate(swerveDrive.getOdometryHeading().getRadians(),
                                                                   applyAllianceAwareRotation(
-                                                                      Rotation2d.fromRadians(
-                                                                          swerveController.getJoystickAngle(
-                                                                              controllerHeadingX.get()
-                                                                                                .getAsDouble(),
-                                                                              controllerHeadingY.get()
-                                                                                                .getAsDouble()))).getRadians());
+                                                                      swerveController.getJoystickAngle(
+                                                                          controllerHeadingX.get()
+                                                                                            .getAsDouble(),
+                                                                          controllerHeadingY.get()
+                                                                                            .getAsDouble())));
 
         // Prevent rotation if controller heading inputs are not past axisDeadband
         if (Math.abs(controllerHeadingX.get().getAsDouble()) + Math.abs(controllerHeadingY.get().getAsDouble()) <
@@ -958,10 +961,11 @@ public class SwerveInputStream implements Supplier<ChassisSpeeds>
       }
       case AIM ->
       {
-        Rotation2d    currentHeading = swerveDrive.getOdometryHeading();
+        double        currentHeading = swerveDrive.getOdometryHeading().getRadians();
         Translation2d relativeTrl    = aimTarget.get().relativeTo(swerveDrive.getPose()).getTranslation();
-        Rotation2d    target         = new Rotation2d(relativeTrl.getX(), relativeTrl.getY()).plus(currentHeading);
-        omegaRadiansPerSecond = swerveController.headingCalculate(currentHeading.getRadians(), target.getRadians());
+        double        target         = SwerveGeometry.wrapRadians(Math.atan2(relativeTrl.getY(), relativeTrl.getX())
+                                                                  + currentHeading);
+        omegaRadiansPerSecond = swerveController.headingCalculate(currentHeading, target);
         speeds = new ChassisSpeeds(vxMetersPerSecond, vyMetersPerSecond, omegaRadiansPerSecond);
         break;
       }
@@ -9,6 +9,8 @@ import edu.wpi.first.math.controller.SimpleMotorFeedforward;
 import edu.wpi.first.math.geometry.Rotation2d;
 import edu.wpi.first.math.kinematics.SwerveModulePosition;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
+import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.math.util.Units;
 import edu.wpi.first.networktables.BooleanPublisher;
 import edu.wpi.first.networktables.DoublePublisher;
 import edu.wpi.first.networktables.NetworkTableInstance;
@@ -19,7 +21,11 @@ import edu.wpi.first.wpilibj.Alert.AlertType;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import swervelib.encoders.SparkMaxEncoderSwerve;
 import swervelib.encoders.SwerveAbsoluteEncoder;
+import swervelib.math.DiscreteFeedforward;
+import swervelib.math.SensorSample;
+import swervelib.math.SwerveGeometry;
 import swervelib.math.SwerveMath;
+import swervelib.math.VelocityEstimator;
 import swervelib.motors.SparkMaxBrushedMotorSwerve;
 import swervelib.motors.SparkMaxSwerve;
 import swervelib.motors.SwerveMotor;
@@ -128,6 +134,10 @@ public class SwerveModule implements AutoCloseable
    * Angle setpoint publisher for the module motor-controller PID.
    */
   private final DoublePublisher  angleSetpointPublisher;
+  /**
+   * Velocity estimate error publisher, compared against the motor controller reported velocity.
+   */
+  private final DoublePublisher  velocityEstimateErrorPublisher;
   /**
    * Maximum {@link LinearVelocity} for the drive motor of the swerve module.
    */
@@ -144,6 +154,19 @@ public class SwerveModule implements AutoCloseable
    * Feedforward for the drive motor during closed loop control.
    */
   private       SimpleMotorFeedforward driveMotorFeedforward;
+  /**
+   * Precomputed {@link SwerveModule#driveMotorFeedforward} used every loop.
+   */
+  private       DiscreteFeedforward    discreteFeedforward;
+  /**
+   * Drive motor volts per newton of wheel force, from the drive motor model, gear ratio and wheel radius.
+   */
+  private       double                 forceFeedforwardVoltsPerNewton;
+  /**
+   * Drive motor back-EMF volts per meter per second of wheel speed, from the drive motor model, gear ratio and wheel
+   * radius.
+   */
+  private       double                 speedFeedforwardVoltsPerMPS;
   /**
    * Anti-Jitter AKA auto-centering disabled.
    */
@@ -176,6 +199,14 @@ public class SwerveModule implements AutoCloseable
    * Encoder synchronization deadband in degrees.
    */
   private       double           synchronizeEncoderDeadband   = 3;
+  /**
+   * Use latency compensated drive position and absolute encoder readings.
+   */
+  private       boolean          latencyCompensation          = false;
+  /**
+   * Drive velocity estimator from timestamped drive position samples, null when disabled.
+   */
+  private       VelocityEstimator velocityEstimator           = null;
 
 
   /**
@@ -201,7 +232,8 @@ public class SwerveModule implements AutoCloseable
     driveMotor.factoryDefaults();
 
     // Initialize Feedforwards.
-    driveMotorFeedforward = getDefaultFeedforward();
+    setFeedforward(getDefaultFeedforward());
+    setDriveMotorModel(driveMotor.getSimMotor());
 
     // Configure voltage comp, current limit, and ramp rate.
     angleMotor.setVoltageCompensation(configuration.physicalCharacteristics.optimalVoltage);
@@ -252,8 +284,8 @@ public class SwerveModule implements AutoCloseable
     driveMotor.burnFlash();
     angleMotor.burnFlash();
 
-    drivePositionCache = new Cache<>(driveMotor::getPosition, 20);
-    driveVelocityCache = new Cache<>(driveMotor::getVelocity, 20);
+    drivePositionCache = new Cache<>(this::readDrivePosition, 20);
+    driveVelocityCache = new Cache<>(this::readDriveVelocity, 20);
 
     // Force a cache update on init.
     driveVelocityCache.update();
@@ -288,6 +320,8 @@ public class SwerveModule implements AutoCloseable
         "swerve/modules/" + configuration.name + "/Speed Setpoint").publish();
     angleSetpointPublisher = NetworkTableInstance.getDefault().getTable("SmartDashboard").getDoubleTopic(
         "swerve/modules/" + configuration.name + "/Angle Setpoint").publish();
+    velocityEstimateErrorPublisher = NetworkTableInstance.getDefault().getTable("SmartDashboard").getDoubleTopic(
+        "swerve/modules/" + configuration.name + "/Velocity Estimate Error").publish();
   }
 
   @Override
@@ -393,6 +427,110 @@ public class SwerveModule implements AutoCloseable
     synchronizeEncoderEnabled = enabled;
   }
 
+  /**
+   * Enable latency compensation of the drive position and absolute encoder readings. Devices which report timestamps
+   * (Phoenix 6) have their readings extrapolated to the current time using their velocity, which is used by odometry
+   * and the cosine compensator.
+   *
+   * @param enabled Latency compensation enabled.
+   */
+  public void setLatencyCompensation(boolean enabled)
+  {
+    latencyCompensation = enabled;
+    drivePositionCache.update();
+    absolutePositionCache.update();
+  }
+
+  /**
+   * Check if latency compensation is enabled.
+   *
+   * @return Latency compensation enabled.
+   */
+  public boolean getLatencyCompensation()
+  {
+    return latencyCompensation;
+  }
+
+  /**
+   * Read the drive motor position, latency compensated if enabled.
+   *
+   * @return Drive position in meters.
+   */
+  private double readDrivePosition()
+  {
+    SensorSample sample = driveMotor.getPositionSample();
+    if (velocityEstimator != null)
+    {
+      velocityEstimator.addSample(sample.value, sample.timestampSeconds);
+    }
+    return latencyCompensation ? driveMotor.getLatencyCompensatedPosition() : sample.value;
+  }
+
+  /**
+   * Reset the drive motor position to 0, along with the velocity estimator so the position step is not read as motion.
+   */
+  public void resetDrivePosition()
+  {
+    driveMotor.setPosition(0);
+    if (velocityEstimator != null)
+    {
+      velocityEstimator.forgetPosition();
+    }
+    drivePositionCache.update();
+  }
+
+  /**
+   * Read the drive motor velocity, from the velocity estimator if enabled.
+   *
+   * @return Drive velocity in meters per second.
+   */
+  private double readDriveVelocity()
+  {
+    double reportedVelocity = driveMotor.getVelocity();
+    if (velocityEstimator == null)
+    {
+      return reportedVelocity;
+    }
+    velocityEstimator.compare(reportedVelocity);
+    return velocityEstimator.getVelocity();
+  }
+
+  /**
+   * Enable or disable estimating the drive velocity by differentiating the timestamped drive position samples instead
+   * of using the velocity reported by the motor controller, which may be heavily filtered (REV controllers lag by up to
+   * 100ms). The estimate is used by {@link SwerveModule#getState()} and the drive feedforward. Position samples are
+   * taken every time {@link SwerveModule#drivePositionCache} is refreshed, so the estimator benefits from a fast
+   * odometry period.
+   *
+   * @param enabled                   Velocity estimation enabled.
+   * @param filterTimeConstantSeconds Time constant of the low-pass filter applied to the estimate in seconds, 0 to
+   *                                  disable filtering.
+   */
+  public void setVelocityEstimation(boolean enabled, double filterTimeConstantSeconds)
+  {
+    if (!enabled)
+    {
+      velocityEstimator = null;
+    } else if (velocityEstimator == null)
+    {
+      velocityEstimator = new VelocityEstimator(filterTimeConstantSeconds);
+    } else
+    {
+      velocityEstimator.setTimeConstant(filterTimeConstantSeconds);
+    }
+    driveVelocityCache.update();
+  }
+
+  /**
+   * Get the drive velocity estimator.
+   *
+   * @return {@link VelocityEstimator} if velocity estimation is enabled, otherwise null.
+   */
+  public VelocityEstimator getVelocityEstimator()
+  {
+    return velocityEstimator;
+  }
+
   /**
    * Set the antiJitter functionality, if true the modules will NOT auto center. Pushes the offsets to the angle motor
    * controllers as well.
@@ -419,6 +557,49 @@ public class SwerveModule implements AutoCloseable
   public void setFeedforward(SimpleMotorFeedforward drive)
   {
     this.driveMotorFeedforward = drive;
+    this.discreteFeedforward = new DiscreteFeedforward(drive);
+  }
+
+  /**
+   * Set the drive motor model used by {@link SwerveModule#getForceFeedforward(double, double)}, replacing
+   * {@link SwerveMotor#simMotor} of the drive motor. Assigning {@link SwerveMotor#simMotor} directly after the module is
+   * created does not update the force feedforward.
+   *
+   * @param driveMotorModel {@link DCMotor} model of the drive motor, including the number of motors.
+   */
+  public void setDriveMotorModel(DCMotor driveMotorModel)
+  {
+    driveMotor.simMotor = driveMotorModel;
+    double driveGearRatio    = configuration.conversionFactors.drive.gearRatio;
+    double wheelRadiusMeters = Units.inchesToMeters(configuration.conversionFactors.drive.diameter) / 2;
+    // torque (on motor) = force * wheelRadius / gearRatio
+    // motorAngularVelocity = linearVelocity / wheelRadius * gearRatio
+    forceFeedforwardVoltsPerNewton = wheelRadiusMeters / driveGearRatio * driveMotorModel.rOhms /
+                                     driveMotorModel.KtNMPerAmp;
+    speedFeedforwardVoltsPerMPS = driveGearRatio / wheelRadiusMeters / driveMotorModel.KvRadPerSecPerVolt;
+  }
+
+  /**
+   * Get the drive motor feedforward.
+   *
+   * @return {@link SimpleMotorFeedforward} for the drive motor.
+   */
+  public SimpleMotorFeedforward getFeedforward()
+  {
+    return driveMotorFeedforward;
+  }
+
+  /**
+   * Get the drive motor voltage needed to apply a force at the wheel while moving at a speed, equivalent to
+   * {@link DCMotor#getVoltage(double, double)} of the drive motor model with the gear ratio and wheel radius applied.
+   *
+   * @param forceNewtons         Force at the wheel in newtons.
+   * @param speedMetersPerSecond Wheel ground speed in meters per second.
+   * @return Feedforward voltage.
+   */
+  public double getForceFeedforward(double forceNewtons, double speedMetersPerSecond)
+  {
+    return forceNewtons * forceFeedforwardVoltsPerNewton + speedMetersPerSecond * speedFeedforwardVoltsPerMPS;
   }
 
   /**
@@ -481,13 +662,14 @@ public class SwerveModule implements AutoCloseable
     double nextVelocityMetersPerSecond = configuration.useCosineCompensator
                                          ? getCosineCompensatedVelocity(desiredState)
                                          : desiredState.speedMetersPerSecond;
-    double curVelocityMetersPerSecond = lastState.speedMetersPerSecond;
+    double curVelocityMetersPerSecond = velocityEstimator != null && !SwerveDriveTelemetry.isSimulation
+                                        ? driveVelocityCache.getValue()
+                                        : lastState.speedMetersPerSecond;
     desiredState.speedMetersPerSecond = nextVelocityMetersPerSecond;
 
     setDesiredState(desiredState,
                     isOpenLoop,
-                    driveMotorFeedforward.calculateWithVelocities(curVelocityMetersPerSecond,
-                                                                  nextVelocityMetersPerSecond));
+                    discreteFeedforward.calculate(curVelocityMetersPerSecond, nextVelocityMetersPerSecond));
   }
 
   /**
@@ -551,6 +733,65 @@ public class SwerveModule implements AutoCloseable
     }
   }
 
+  /**
+   * Set the desired state of the swerve module from primitives, usually prepared by
+   * {@link SwerveModule#prepareDesiredState(double[], double[], double[], boolean)}.
+   *
+   * @param speedMetersPerSecond    Drive velocity in meters per second.
+   * @param angleRadians            Module heading in radians.
+   * @param isOpenLoop              Whether to use open loop (direct percent) or direct velocity control.
+   * @param driveFeedforwardVoltage Drive motor controller feedforward as a voltage.
+   */
+  public void setDesiredState(double speedMetersPerSecond, double angleRadians, boolean isOpenLoop,
+                              double driveFeedforwardVoltage)
+  {
+    setDesiredState(new SwerveModuleState(speedMetersPerSecond, new Rotation2d(angleRadians)),
+                    isOpenLoop,
+                    driveFeedforwardVoltage);
+  }
+
+  /**
+   * Fused version of the work done by {@link SwerveModule#setDesiredState(SwerveModuleState, boolean, boolean)} before
+   * commanding the motors, on primitives. Applies state optimization, anti-jitter, cosine compensation and calculates
+   * the drive feedforward, reading the absolute encoder once. Only the entries at {@link SwerveModule#moduleNumber}
+   * are read and written so all modules can share the arrays.
+   *
+   * @param speedsMetersPerSecond Desired module speeds in meters per second, replaced with the final speed.
+   * @param anglesRadians         Desired module headings in radians, replaced with the final heading.
+   * @param feedforwardVolts      Output drive feedforward in volts.
+   * @param force                 Disables anti-jitter.
+   */
+  public void prepareDesiredState(double[] speedsMetersPerSecond, double[] anglesRadians, double[] feedforwardVolts,
+                                  boolean force)
+  {
+    double encoderRadians = Math.toRadians(getAbsolutePosition());
+    double speed          = speedsMetersPerSecond[moduleNumber];
+    double angle          = anglesRadians[moduleNumber];
+
+    if (optimizeSwerveModuleState && Math.abs(SwerveGeometry.wrapRadians(angle - encoderRadians)) > Math.PI / 2)
+    {
+      speed = -speed;
+      angle = SwerveGeometry.wrapRadians(angle + Math.PI);
+    }
+    // Prevents module rotation if speed is less than 1%
+    if (!force && antiJitterEnabled && Math.abs(speed) <= Math.min(maxDriveVelocityMetersPerSecond, 4) * 0.01)
+    {
+      angle = lastState.angle.getRadians();
+    }
+    if (configuration.useCosineCompensator)
+    {
+      double cosineScalar = Math.cos(angle - encoderRadians);
+      speed *= cosineScalar < 0.0 ? 1 : cosineScalar;
+    }
+
+    double curVelocityMetersPerSecond = velocityEstimator != null && !SwerveDriveTelemetry.isSimulation
+                                        ? driveVelocityCache.getValue()
+                                        : lastState.speedMetersPerSecond;
+    speedsMetersPerSecond[moduleNumber] = speed;
+    anglesRadians[moduleNumber] = angle;
+    feedforwardVolts[moduleNumber] = discreteFeedforward.calculate(curVelocityMetersPerSecond, speed);
+  }
+
   /**
    * Get the cosine compensated velocity to set the swerve module to.
    *
@@ -641,6 +882,20 @@ public class SwerveModule implements AutoCloseable
     return new SwerveModuleState(velocity, azimuth);
   }
 
+  /**
+   * Get the drive velocity of the swerve module without creating a {@link SwerveModuleState}.
+   *
+   * @return Drive velocity in meters per second.
+   */
+  public double getDriveVelocity()
+  {
+    if (SwerveDriveTelemetry.isSimulation)
+    {
+      return simModule.getState().speedMetersPerSecond;
+    }
+    return driveVelocityCache.getValue();
+  }
+
   /**
    * Get the position of the swerve module.
    *
@@ -688,7 +943,8 @@ public class SwerveModule implements AutoCloseable
     double angle;
     if (absoluteEncoder != null)
     {
-      angle = absoluteEncoder.getAbsolutePosition() - angleOffset;
+      angle = (latencyCompensation ? absoluteEncoder.getLatencyCompensatedAbsolutePosition()
+                                   : absoluteEncoder.getAbsolutePosition()) - angleOffset;
       if (absoluteEncoder.readingError)
       {
         angle = getRelativePosition();
@@ -975,6 +1231,10 @@ public class SwerveModule implements AutoCloseable
       rawDriveVelocityPublisher.set(driveVelocityCache.getValue());
     }
     adjAbsoluteAnglePublisher.set(getAbsolutePosition());
+    if (velocityEstimator != null)
+    {
+      velocityEstimateErrorPublisher.set(velocityEstimator.getErrorRMS());
+    }
     absoluteEncoderIssuePublisher.set(getAbsoluteEncoderReadIssue());
 
   }
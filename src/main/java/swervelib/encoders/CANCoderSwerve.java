@@ -5,6 +5,7 @@ import static edu.wpi.first.units.Units.Milliseconds;
 import static edu.wpi.first.units.Units.Rotations;
 import static edu.wpi.first.units.Units.Seconds;
 
+import com.ctre.phoenix6.BaseStatusSignal;
 import com.ctre.phoenix6.StatusCode;
 import com.ctre.phoenix6.StatusSignal;
 import com.ctre.phoenix6.configs.CANcoderConfiguration;
@@ -16,6 +17,8 @@ import edu.wpi.first.units.measure.Angle;
 import edu.wpi.first.units.measure.AngularVelocity;
 import edu.wpi.first.wpilibj.Alert;
 import edu.wpi.first.wpilibj.Alert.AlertType;
+import edu.wpi.first.wpilibj.Timer;
+import swervelib.math.SensorSample;
 
 /**
  * Swerve Absolute Encoder for CTRE CANCoders.
@@ -197,6 +200,37 @@ public class CANCoderSwerve extends SwerveAbsoluteEncoder
     return angle.getValueAsDouble() * 360;
   }
 
+  /**
+   * Get the absolute position of the encoder with the timestamp reported by the {@link CANcoder}.
+   *
+   * @return {@link SensorSample} of the absolute position in degrees from [0, 360).
+   */
+  @Override
+  public SensorSample getAbsolutePositionSample()
+  {
+    double position = getAbsolutePosition();
+    double latency  = angle.getTimestamp().getLatency();
+    return absolutePositionSample.update(position, Timer.getFPGATimestamp() - latency, latency);
+  }
+
+  /**
+   * Get the absolute position extrapolated by the {@link CANcoder} velocity signal over the latency of the reading.
+   *
+   * @return Latency compensated absolute position in degrees, may be slightly outside of [0, 360).
+   */
+  @Override
+  public double getLatencyCompensatedAbsolutePosition()
+  {
+    double position = getAbsolutePosition();
+    if (readingError)
+    {
+      return position;
+    }
+    velocity.refresh();
+    // Convert from Rotations to Degrees.
+    return BaseStatusSignal.getLatencyCompensatedValueAsDouble(angle, velocity) * 360;
+  }
+
   /**
    * Get the instantiated absolute encoder Object.
    *
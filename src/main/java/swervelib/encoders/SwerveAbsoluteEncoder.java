@@ -1,5 +1,8 @@
 package swervelib.encoders;
 
+import edu.wpi.first.wpilibj.Timer;
+import swervelib.math.SensorSample;
+
 /**
  * Swerve abstraction class to define a standard interface with absolute encoders for swerve modules..
  */
@@ -20,6 +23,10 @@ public abstract class SwerveAbsoluteEncoder implements AutoCloseable
    * Last angle reading was faulty.
    */
   public       boolean readingError   = false;
+  /**
+   * Last absolute position sample, reused between reads.
+   */
+  protected final SensorSample absolutePositionSample = new SensorSample();
 
   /**
    * Reset the encoder to factory defaults.
@@ -45,6 +52,32 @@ public abstract class SwerveAbsoluteEncoder implements AutoCloseable
    */
   public abstract double getAbsolutePosition();
 
+  /**
+   * Get the absolute position of the encoder with the time it was measured at. Encoders which do not report timestamps
+   * are treated as having no latency.
+   *
+   * @return {@link SensorSample} of the absolute position in degrees from [0, 360).
+   */
+  public SensorSample getAbsolutePositionSample()
+  {
+    return absolutePositionSample.update(getAbsolutePosition(), Timer.getFPGATimestamp(), 0);
+  }
+
+  /**
+   * Get the absolute position of the encoder extrapolated by the velocity over the latency of the reading.
+   *
+   * @return Latency compensated absolute position in degrees, may be slightly outside of [0, 360).
+   */
+  public double getLatencyCompensatedAbsolutePosition()
+  {
+    SensorSample sample = getAbsolutePositionSample();
+    if (sample.latencySeconds == 0 || readingError)
+    {
+      return sample.value;
+    }
+    return sample.value + getVelocity() * sample.latencySeconds;
+  }
+
   /**
    * Get the instantiated absolute encoder Object.
    *
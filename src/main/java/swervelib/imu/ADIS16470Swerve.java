@@ -7,8 +7,10 @@ import edu.wpi.first.math.geometry.Translation3d;
 import edu.wpi.first.units.measure.MutAngularVelocity;
 import edu.wpi.first.wpilibj.ADIS16470_IMU;
 import edu.wpi.first.wpilibj.ADIS16470_IMU.IMUAxis;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import java.util.Optional;
+import swervelib.math.SensorSample;
 
 /**
  * IMU Swerve class for the {@link ADIS16470_IMU} device.
@@ -16,6 +18,11 @@ import java.util.Optional;
 public class ADIS16470Swerve extends SwerveIMU
 {
 
+  /**
+   * Internal sample rate of the {@link ADIS16470_IMU} in hertz, change this if the decimation rate is changed.
+   */
+  public static double             SAMPLE_RATE_HZ = 2000;
+
   /**
    * {@link ADIS16470_IMU} device to read the current headings from.
    */
@@ -129,6 +136,31 @@ public class ADIS16470Swerve extends SwerveIMU
     return yawVel.mut_setMagnitude(imu.getRate());
   }
 
+  /**
+   * Get the yaw with the time it was measured at. The {@link ADIS16470_IMU} accumulates samples at its internal sample rate so
+   * the reading is on average half a sample period old.
+   *
+   * @return {@link SensorSample} of the yaw in radians, offset and inversion applied.
+   */
+  @Override
+  public SensorSample getYawSample()
+  {
+    double latency = 0.5 / SAMPLE_RATE_HZ;
+    return yawSample.update(getRotation3d().getZ(), Timer.getFPGATimestamp() - latency, latency);
+  }
+
+  /**
+   * Get the yaw rate measured with the last yaw sample, counter-clockwise positive to match the yaw.
+   *
+   * @return {@link SensorSample} of the yaw rate in radians per second.
+   */
+  @Override
+  public SensorSample getYawRateSample()
+  {
+    double rate = Math.toRadians(-imu.getRate());
+    return yawRateSample.update(invertedIMU ? -rate : rate, yawSample.timestampSeconds, yawSample.latencySeconds);
+  }
+
   /**
    * Get the instantiated IMU object.
    *
@@ -6,8 +6,10 @@ import edu.wpi.first.math.geometry.Rotation3d;
 import edu.wpi.first.math.geometry.Translation3d;
 import edu.wpi.first.units.measure.MutAngularVelocity;
 import edu.wpi.first.wpilibj.ADXRS450_Gyro;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import java.util.Optional;
+import swervelib.math.SensorSample;
 
 /**
  * IMU Swerve class for the {@link ADXRS450_Gyro} device.
@@ -126,6 +128,18 @@ public class ADXRS450Swerve extends SwerveIMU
     return yawVel.mut_setMagnitude(imu.getRate());
   }
 
+  /**
+   * Get the yaw rate, counter-clockwise positive to match the yaw.
+   *
+   * @return {@link SensorSample} of the yaw rate in radians per second.
+   */
+  @Override
+  public SensorSample getYawRateSample()
+  {
+    double rate = Math.toRadians(-imu.getRate());
+    return yawRateSample.update(invertedIMU ? -rate : rate, Timer.getFPGATimestamp(), 0);
+  }
+
   /**
    * Get the instantiated IMU object.
    *
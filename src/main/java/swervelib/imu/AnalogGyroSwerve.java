@@ -6,8 +6,10 @@ import edu.wpi.first.math.geometry.Rotation3d;
 import edu.wpi.first.math.geometry.Translation3d;
 import edu.wpi.first.units.measure.MutAngularVelocity;
 import edu.wpi.first.wpilibj.AnalogGyro;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import java.util.Optional;
+import swervelib.math.SensorSample;
 
 /**
  * Creates a IMU for {@link edu.wpi.first.wpilibj.AnalogGyro} devices, only uses yaw.
@@ -133,6 +135,18 @@ public class AnalogGyroSwerve extends SwerveIMU
     return yawVel.mut_setMagnitude(imu.getRate());
   }
 
+  /**
+   * Get the yaw rate, counter-clockwise positive to match the yaw.
+   *
+   * @return {@link SensorSample} of the yaw rate in radians per second.
+   */
+  @Override
+  public SensorSample getYawRateSample()
+  {
+    double rate = Math.toRadians(-imu.getRate());
+    return yawRateSample.update(invertedIMU ? -rate : rate, Timer.getFPGATimestamp(), 0);
+  }
+
   /**
    * Get the instantiated IMU object.
    *
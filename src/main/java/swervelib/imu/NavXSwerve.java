@@ -9,7 +9,9 @@ import edu.wpi.first.math.geometry.Translation3d;
 import edu.wpi.first.units.measure.MutAngularVelocity;
 import edu.wpi.first.wpilibj.Alert;
 import edu.wpi.first.wpilibj.Alert.AlertType;
+import edu.wpi.first.wpilibj.Timer;
 import java.util.Optional;
+import swervelib.math.SensorSample;
 
 /**
  * Communicates with the NavX({@link AHRS}) as the IMU.
@@ -37,6 +39,14 @@ public class NavXSwerve extends SwerveIMU
    * An {@link Alert} for if there is an error instantiating the NavX.
    */
   private       Alert              navXError;
+  /**
+   * Sensor timestamp of the last sample received from the NavX in milliseconds.
+   */
+  private       long               lastSensorTimestamp = -1;
+  /**
+   * FPGA timestamp of the last sample received from the NavX in seconds.
+   */
+  private       double             lastSampleTimestamp = 0;
 
   /**
    * Constructor for the NavX({@link AHRS}) swerve.
@@ -127,6 +137,38 @@ public class NavXSwerve extends SwerveIMU
     return getRawRotation3d().minus(offset);
   }
 
+  /**
+   * Get the yaw with the time the NavX measured it at. The NavX pushes samples at its update rate, a new sample is
+   * detected by its sensor timestamp changing and is assumed to have been measured half an update period earlier.
+   *
+   * @return {@link SensorSample} of the yaw in radians, offset and inversion applied.
+   */
+  @Override
+  public SensorSample getYawSample()
+  {
+    double now             = Timer.getFPGATimestamp();
+    long   sensorTimestamp = imu.getLastSensorTimestamp();
+    if (sensorTimestamp != lastSensorTimestamp)
+    {
+      lastSensorTimestamp = sensorTimestamp;
+      lastSampleTimestamp = now - (0.5 / Math.max(imu.getActualUpdateRate(), 1));
+    }
+    return yawSample.update(getRotation3d().getZ(), lastSampleTimestamp, now - lastSampleTimestamp);
+  }
+
+  /**
+   * Get the yaw rate measured with the last yaw sample, counter-clockwise positive.
+   *
+   * @return {@link SensorSample} of the yaw rate in radians per second.
+   */
+  @Override
+  public SensorSample getYawRateSample()
+  {
+    // NavX rate is clockwise positive.
+    double rate = Math.toRadians(-imu.getRate());
+    return yawRateSample.update(invertedIMU ? -rate : rate, yawSample.timestampSeconds, yawSample.latencySeconds);
+  }
+
   /**
    * Fetch the acceleration [x, y, z] from the IMU in meters per second squared. If acceleration isn't supported returns
    * empty.
@@ -2,17 +2,22 @@ package swervelib.imu;
 
 import static edu.wpi.first.units.Units.DegreesPerSecond;
 
+import com.ctre.phoenix6.BaseStatusSignal;
 import com.ctre.phoenix6.StatusSignal;
 import com.ctre.phoenix6.configs.Pigeon2Configuration;
 import com.ctre.phoenix6.configs.Pigeon2Configurator;
 import com.ctre.phoenix6.hardware.Pigeon2;
 import edu.wpi.first.math.geometry.Rotation3d;
 import edu.wpi.first.math.geometry.Translation3d;
+import edu.wpi.first.units.measure.Angle;
+import edu.wpi.first.units.measure.AngularVelocity;
 import edu.wpi.first.units.measure.LinearAcceleration;
 import edu.wpi.first.units.measure.MutAngularVelocity;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import java.util.Optional;
 import java.util.function.Supplier;
+import swervelib.math.SensorSample;
 
 /**
  * SwerveIMU interface for the {@link Pigeon2}
@@ -46,6 +51,14 @@ public class Pigeon2Swerve extends SwerveIMU
    * Z Acceleration supplier.
    */
   private final Supplier<StatusSignal<LinearAcceleration>> zAcc;
+  /**
+   * Yaw status signal.
+   */
+  private final StatusSignal<Angle>                        yaw;
+  /**
+   * Yaw rate status signal.
+   */
+  private final StatusSignal<AngularVelocity>              yawRate;
   /**
    * Offset for the {@link Pigeon2}.
    */
@@ -72,6 +85,8 @@ public class Pigeon2Swerve extends SwerveIMU
     xAcc = imu::getAccelerationX;
     yAcc = imu::getAccelerationY;
     zAcc = imu::getAccelerationZ;
+    yaw = imu.getYaw();
+    yawRate = imu.getAngularVelocityZWorld();
     SmartDashboard.putData(imu);
   }
 
@@ -176,6 +191,83 @@ public class Pigeon2Swerve extends SwerveIMU
     return yawVel.mut_replace(imu.getAngularVelocityZWorld().refresh().getValue());
   }
 
+  /**
+   * Get the yaw with the timestamp reported by the {@link Pigeon2}.
+   *
+   * @return {@link SensorSample} of the yaw in radians, offset and inversion applied.
+   */
+  @Override
+  public SensorSample getYawSample()
+  {
+    yaw.refresh();
+    double latency = yaw.getTimestamp().getLatency();
+    return yawSample.update(toAdjustedYaw(yaw.getValueAsDouble()), Timer.getFPGATimestamp() - latency, latency);
+  }
+
+  /**
+   * Get the yaw extrapolated by the yaw rate signal over the latency of the reading.
+   *
+   * @return Latency compensated yaw in radians, offset and inversion applied.
+   */
+  @Override
+  public double getLatencyCompensatedYaw()
+  {
+    BaseStatusSignal.refreshAll(yaw, yawRate);
+    return toAdjustedYaw(BaseStatusSignal.getLatencyCompensatedValueAsDouble(yaw, yawRate));
+  }
+
+  /**
+   * Get the yaw rate with the timestamp reported by the {@link Pigeon2}.
+   *
+   * @return {@link SensorSample} of the yaw rate in radians per second.
+   */
+  @Override
+  public SensorSample getYawRateSample()
+  {
+    yawRate.refresh();
+    double latency = yawRate.getTimestamp().getLatency();
+    return yawRateSample.update(toAdjustedYawRate(yawRate.getValueAsDouble()),
+                                Timer.getFPGATimestamp() - latency,
+                                latency);
+  }
+
+  /**
+   * Sample the yaw and yaw rate together in a single CAN refresh.
+   */
+  @Override
+  public void sampleYaw()
+  {
+    BaseStatusSignal.refreshAll(yaw, yawRate);
+    double latency   = yaw.getTimestamp().getLatency();
+    double timestamp = Timer.getFPGATimestamp() - latency;
+    yawSample.update(toAdjustedYaw(yaw.getValueAsDouble()), timestamp, latency);
+    yawRateSample.update(toAdjustedYawRate(yawRate.getValueAsDouble()), timestamp, latency);
+  }
+
+  /**
+   * Apply the inversion to a raw yaw rate reading.
+   *
+   * @param degreesPerSecond Raw yaw rate from the {@link Pigeon2} in degrees per second.
+   * @return Yaw rate in radians per second.
+   */
+  private double toAdjustedYawRate(double degreesPerSecond)
+  {
+    double radiansPerSecond = Math.toRadians(degreesPerSecond);
+    return invertedIMU ? -radiansPerSecond : radiansPerSecond;
+  }
+
+  /**
+   * Apply the inversion and offset to a raw yaw reading.
+   *
+   * @param degrees Raw yaw from the {@link Pigeon2} in degrees.
+   * @return Yaw in radians.
+   */
+  private double toAdjustedYaw(double degrees)
+  {
+    double radians = Math.toRadians(degrees);
+    return (invertedIMU ? -radians : radians) - offset.getZ();
+  }
+
   /**
    * Get the instantiated {@link Pigeon2} object.
    *
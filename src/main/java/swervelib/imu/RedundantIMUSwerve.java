@@ -0,0 +1,468 @@
+package swervelib.imu;
+
+import static edu.wpi.first.units.Units.RadiansPerSecond;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Rotation3d;
+import edu.wpi.first.math.geometry.Translation3d;
+import edu.wpi.first.networktables.DoublePublisher;
+import edu.wpi.first.networktables.IntegerPublisher;
+import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.units.measure.MutAngularVelocity;
+import edu.wpi.first.wpilibj.Alert;
+import edu.wpi.first.wpilibj.Alert.AlertType;
+import edu.wpi.first.wpilibj.Timer;
+import java.util.Optional;
+import swervelib.math.SensorSample;
+
+/**
+ * Combines a primary and secondary {@link SwerveIMU} into one. The update latency and jitter of both IMUs are tracked
+ * continuously and the yaw is taken from whichever healthy IMU has the fresher sample. The difference between the two
+ * yaws is tracked while both are healthy so switching between them does not cause a jump in heading. An IMU which
+ * stops updating while the robot is rotating, or whose latency grows too large (e.g. a NavX I2C lockup), is swapped out
+ * until it recovers. Both IMUs must be mounted with the same inversion.
+ */
+public class RedundantIMUSwerve extends SwerveIMU
+{
+
+  /**
+   * Time in seconds without a new reading while rotating before an IMU is considered stale.
+   */
+  public static double STALE_SECONDS              = 0.1;
+  /**
+   * Maximum sample latency in seconds before an IMU is considered lagging.
+   */
+  public static double MAX_LATENCY_SECONDS        = 0.05;
+  /**
+   * Yaw rate in radians per second above which the robot is considered rotating.
+   */
+  public static double ROTATING_RADIANS_PER_SECOND = 0.05;
+  /**
+   * Smoothing factor for the latency, jitter and offset tracking.
+   */
+  private static final double SMOOTHING = 0.05;
+  /**
+   * Primary and secondary IMU.
+   */
+  private final    SwerveIMU[]       imus;
+  /**
+   * IMU names for alerts and telemetry.
+   */
+  private final    String[]          names             = {"primary", "secondary"};
+  /**
+   * Last raw yaw reading of each IMU in radians.
+   */
+  private final    double[]          lastYaw           = new double[2];
+  /**
+   * FPGA timestamp in seconds of the last time the yaw of each IMU changed.
+   */
+  private final    double[]          lastChange        = new double[2];
+  /**
+   * Smoothed time between yaw updates of each IMU in seconds.
+   */
+  private final    double[]          updateInterval    = new double[2];
+  /**
+   * Smoothed jitter of the time between yaw updates of each IMU in seconds.
+   */
+  private final    double[]          jitter            = new double[2];
+  /**
+   * Smoothed sample latency of each IMU in seconds.
+   */
+  private final    double[]          latency           = new double[2];
+  /**
+   * Health of each IMU.
+   */
+  private final    boolean[]         healthy           = {true, true};
+  /**
+   * Alerts for each IMU lagging.
+   */
+  private final    Alert[]           laggingAlerts     = new Alert[2];
+  /**
+   * Latency publishers for each IMU.
+   */
+  private final    DoublePublisher[] latencyPublishers = new DoublePublisher[2];
+  /**
+   * Jitter publishers for each IMU.
+   */
+  private final    DoublePublisher[] jitterPublishers  = new DoublePublisher[2];
+  /**
+   * Selected IMU publisher.
+   */
+  private final    IntegerPublisher  selectedPublisher;
+  /**
+   * Offset applied to the combined reading.
+   */
+  private volatile Rotation3d        offset            = new Rotation3d();
+  /**
+   * Smoothed difference between the secondary and primary raw yaw in radians.
+   */
+  private          double            yawDifference     = 0;
+  /**
+   * Whether the yaw difference has been initialized.
+   */
+  private          boolean           differenceKnown   = false;
+  /**
+   * Index of the selected IMU, 0 for primary, 1 for secondary.
+   */
+  private          int               selected          = 0;
+  /**
+   * Combined reading of the last update, null before the first.
+   */
+  private volatile Reading           reading           = null;
+
+  /**
+   * Combined reading of one update. Published as a whole and never modified afterward, so readers on other threads
+   * always see one consistent update.
+   */
+  private static class Reading
+  {
+
+    /**
+     * Raw rotation of the selected IMU in the frame of the primary IMU.
+     */
+    final Rotation3d   rawRotation;
+    /**
+     * Raw yaw in radians in the frame of the primary IMU, with the time it was measured at.
+     */
+    final SensorSample yaw;
+    /**
+     * Yaw rate in radians per second, with the time it was measured at.
+     */
+    final SensorSample yawRate;
+    /**
+     * Index of the IMU the reading came from.
+     */
+    final int          selected;
+
+    /**
+     * Create the reading.
+     *
+     * @param rawRotation Raw rotation of the selected IMU in the frame of the primary IMU.
+     * @param yaw         Raw yaw sample in the frame of the primary IMU.
+     * @param yawRate     Yaw rate sample.
+     * @param selected    Index of the IMU the reading came from.
+     */
+    Reading(Rotation3d rawRotation, SensorSample yaw, SensorSample yawRate, int selected)
+    {
+      this.rawRotation = rawRotation;
+      this.yaw = yaw;
+      this.yawRate = yawRate;
+      this.selected = selected;
+    }
+  }
+
+  /**
+   * Create the redundant IMU.
+   *
+   * @param primary   Primary {@link SwerveIMU}, used when both are equally fresh.
+   * @param secondary Secondary {@link SwerveIMU}.
+   */
+  public RedundantIMUSwerve(SwerveIMU primary, SwerveIMU secondary)
+  {
+    imus = new SwerveIMU[]{primary, secondary};
+    for (int i = 0; i < imus.length; i++)
+    {
+      laggingAlerts[i] = new Alert("IMU", "The " + names[i] + " IMU is lagging and has been swapped out.",
+                                   AlertType.kWarning);
+      latencyPublishers[i] = NetworkTableInstance.getDefault().getTable("SmartDashboard").getDoubleTopic(
+          "swerve/imu/" + names[i] + "/latencyMS").publish();
+      jitterPublishers[i] = NetworkTableInstance.getDefault().getTable("SmartDashboard").getDoubleTopic(
+          "swerve/imu/" + names[i] + "/jitterMS").publish();
+      lastChange[i] = Timer.getFPGATimestamp();
+    }
+    selectedPublisher = NetworkTableInstance.getDefault().getTable("SmartDashboard").getIntegerTopic(
+        "swerve/imu/selected").publish();
+  }
+
+  @Override
+  public void close()
+  {
+    for (SwerveIMU imu : imus)
+    {
+      imu.close();
+    }
+    for (Alert alert : laggingAlerts)
+    {
+      alert.close();
+    }
+  }
+
+  /**
+   * Reset both IMUs to factory default and clear their offsets, the offset is applied to the combined reading.
+   */
+  @Override
+  public synchronized void factoryDefault()
+  {
+    for (SwerveIMU imu : imus)
+    {
+      imu.factoryDefault();
+      imu.setOffset(new Rotation3d());
+    }
+    differenceKnown = false;
+  }
+
+  /**
+   * Clear sticky faults on both IMUs.
+   */
+  @Override
+  public void clearStickyFaults()
+  {
+    for (SwerveIMU imu : imus)
+    {
+      imu.clearStickyFaults();
+    }
+  }
+
+  /**
+   * Set the gyro offset.
+   *
+   * @param offset gyro offset as a {@link Rotation3d}.
+   */
+  @Override
+  public void setOffset(Rotation3d offset)
+  {
+    this.offset = offset;
+  }
+
+  /**
+   * Set both gyros to invert their default direction.
+   *
+   * @param invertIMU gyro direction
+   */
+  @Override
+  public synchronized void setInverted(boolean invertIMU)
+  {
+    for (SwerveIMU imu : imus)
+    {
+      imu.setInverted(invertIMU);
+      imu.setOffset(new Rotation3d());
+    }
+    differenceKnown = false;
+    reading = null;
+  }
+
+  /**
+   * Sample both IMUs, update their latency, jitter and health, track the difference between them and select the IMU
+   * to read from.
+   */
+  private void update()
+  {
+    double now = Timer.getFPGATimestamp();
+    for (int i = 0; i < imus.length; i++)
+    {
+      imus[i].sampleYaw();
+      SensorSample yaw = imus[i].yawSample;
+      latency[i] += SMOOTHING * (yaw.latencySeconds - latency[i]);
+      if (yaw.value != lastYaw[i])
+      {
+        double interval = now - lastChange[i];
+        updateInterval[i] += SMOOTHING * (interval - updateInterval[i]);
+        jitter[i] += SMOOTHING * (Math.abs(interval - updateInterval[i]) - jitter[i]);
+        lastYaw[i] = yaw.value;
+        lastChange[i] = now;
+      }
+    }
+
+    for (int i = 0; i < imus.length; i++)
+    {
+      int     other    = 1 - i;
+      boolean rotating = Math.abs(imus[other].yawRateSample.value) > ROTATING_RADIANS_PER_SECOND;
+      boolean stale    = rotating && healthy[other] && (now - lastChange[i]) > STALE_SECONDS;
+      healthy[i] = !stale && imus[i].yawSample.latencySeconds < MAX_LATENCY_SECONDS;
+      laggingAlerts[i].set(!healthy[i]);
+    }
+
+    if (healthy[0] && healthy[1])
+    {
+      double difference = MathUtil.angleModulus(lastYaw[1] - lastYaw[0]);
+      if (!differenceKnown)
+      {
+        yawDifference = difference;
+        differenceKnown = true;
+      } else
+      {
+        yawDifference += SMOOTHING * MathUtil.angleModulus(difference - yawDifference);
+      }
+      selected = imus[1].yawSample.timestampSeconds > imus[0].yawSample.timestampSeconds ? 1 : 0;
+    } else if (healthy[0] || healthy[1])
+    {
+      selected = healthy[0] ? 0 : 1;
+    }
+    // If both are unhealthy keep using the last selected IMU.
+  }
+
+  /**
+   * Get the combined reading of the last update, sampling the IMUs if there has been none yet.
+   *
+   * @return Last {@link Reading}.
+   */
+  private Reading getReading()
+  {
+    Reading last = reading;
+    if (last == null)
+    {
+      sampleYaw();
+      last = reading;
+    }
+    return last;
+  }
+
+  /**
+   * Fetch the {@link Rotation3d} from the selected IMU without any zeroing, in the frame of the primary IMU, as of the
+   * last {@link RedundantIMUSwerve#sampleYaw()}.
+   *
+   * @return {@link Rotation3d} from the IMU.
+   */
+  @Override
+  public Rotation3d getRawRotation3d()
+  {
+    return getReading().rawRotation;
+  }
+
+  /**
+   * Fetch the {@link Rotation3d} from the selected IMU. Robot relative.
+   *
+   * @return {@link Rotation3d} from the IMU.
+   */
+  @Override
+  public Rotation3d getRotation3d()
+  {
+    return getRawRotation3d().minus(offset);
+  }
+
+  /**
+   * Fetch the acceleration [x, y, z] from the selected IMU, falling back to the other IMU if unsupported.
+   *
+   * @return {@link Translation3d} of the acceleration as an {@link Optional}.
+   */
+  @Override
+  public Optional<Translation3d> getAccel()
+  {
+    int                     index = getReading().selected;
+    Optional<Translation3d> accel = imus[index].getAccel();
+    return accel.isPresent() ? accel : imus[1 - index].getAccel();
+  }
+
+  /**
+   * Fetch the rotation rate of the selected IMU as of the last {@link RedundantIMUSwerve#sampleYaw()}.
+   *
+   * @return {@link MutAngularVelocity} of the rotation rate.
+   */
+  @Override
+  public MutAngularVelocity getYawAngularVelocity()
+  {
+    return RadiansPerSecond.mutable(getReading().yawRate.value);
+  }
+
+  /**
+   * Get the yaw from the selected IMU with the time it was measured at, as of the last
+   * {@link RedundantIMUSwerve#sampleYaw()}. A new {@link SensorSample} is returned since any thread may call this.
+   *
+   * @return {@link SensorSample} of the yaw in radians, offset and inversion applied.
+   */
+  @Override
+  public SensorSample getYawSample()
+  {
+    SensorSample yaw = getReading().yaw;
+    return new SensorSample().update(yaw.value - offset.getZ(), yaw.timestampSeconds, yaw.latencySeconds);
+  }
+
+  /**
+   * Get the yaw rate from the selected IMU with the time it was measured at, as of the last
+   * {@link RedundantIMUSwerve#sampleYaw()}.
+   *
+   * @return {@link SensorSample} of the yaw rate in radians per second.
+   */
+  @Override
+  public SensorSample getYawRateSample()
+  {
+    return getReading().yawRate;
+  }
+
+  /**
+   * Sample both IMUs once, update the health tracking and selection and publish the combined reading. Called once per
+   * odometry update by {@link swervelib.SwerveDrive#updateOdometry()}, every other getter reads the published
+   * reading.
+   */
+  @Override
+  public synchronized void sampleYaw()
+  {
+    update();
+    SensorSample yaw      = imus[selected].yawSample;
+    SensorSample rate     = imus[selected].yawRateSample;
+    double       rawYaw   = selected == 0 ? yaw.value : yaw.value - yawDifference;
+    Rotation3d   rotation = imus[selected].getRawRotation3d();
+    reading = new Reading(new Rotation3d(rotation.getX(), rotation.getY(), rawYaw),
+                          new SensorSample().update(rawYaw, yaw.timestampSeconds, yaw.latencySeconds),
+                          new SensorSample().update(rate.value, rate.timestampSeconds, rate.latencySeconds),
+                          selected);
+  }
+
+  /**
+   * Extrapolate the combined yaw of the last {@link RedundantIMUSwerve#sampleYaw()} to the given time using the yaw
+   * rate.
+   *
+   * @param timestampSeconds FPGA timestamp in seconds to get the yaw at.
+   * @return Yaw in radians, offset and inversion applied.
+   */
+  @Override
+  public double extrapolateYaw(double timestampSeconds)
+  {
+    Reading last = getReading();
+    return last.yaw.extrapolate(last.yawRate.value, timestampSeconds) - offset.getZ();
+  }
+
+  /**
+   * Publish the latency and jitter of both IMUs and the selected IMU.
+   */
+  public synchronized void updateTelemetry()
+  {
+    for (int i = 0; i < imus.length; i++)
+    {
+      latencyPublishers[i].set(latency[i] * 1000);
+      jitterPublishers[i].set(jitter[i] * 1000);
+    }
+    selectedPublisher.set(selected);
+  }
+
+  /**
+   * Get the primary IMU.
+   *
+   * @return Primary {@link SwerveIMU}.
+   */
+  public SwerveIMU getPrimary()
+  {
+    return imus[0];
+  }
+
+  /**
+   * Get the secondary IMU.
+   *
+   * @return Secondary {@link SwerveIMU}.
+   */
+  public SwerveIMU getSecondary()
+  {
+    return imus[1];
+  }
+
+  /**
+   * Get the currently selected IMU.
+   *
+   * @return Selected {@link SwerveIMU}.
+   */
+  public SwerveIMU getSelected()
+  {
+    return imus[getReading().selected];
+  }
+
+  /**
+   * Get the instantiated IMU object of the selected IMU.
+   *
+   * @return IMU object.
+   */
+  @Override
+  public Object getIMU()
+  {
+    return imus[getReading().selected].getIMU();
+  }
+}
@@ -1,9 +1,13 @@
 package swervelib.imu;
 
+import static edu.wpi.first.units.Units.RadiansPerSecond;
+
 import edu.wpi.first.math.geometry.Rotation3d;
 import edu.wpi.first.math.geometry.Translation3d;
 import edu.wpi.first.units.measure.MutAngularVelocity;
+import edu.wpi.first.wpilibj.Timer;
 import java.util.Optional;
+import swervelib.math.SensorSample;
 
 /**
  * Swerve IMU abstraction to define a standard interface with a swerve drive.
@@ -11,6 +15,15 @@ import java.util.Optional;
 public abstract class SwerveIMU implements AutoCloseable
 {
 
+  /**
+   * Last yaw sample, reused between reads.
+   */
+  protected final SensorSample yawSample     = new SensorSample();
+  /**
+   * Last yaw rate sample, reused between reads.
+   */
+  protected final SensorSample yawRateSample = new SensorSample();
+
   @Override
   public abstract void close();
 
@@ -67,6 +80,77 @@ public abstract class SwerveIMU implements AutoCloseable
    */
   public abstract MutAngularVelocity getYawAngularVelocity();
 
+  /**
+   * Get the yaw from the IMU with the time it was measured at. IMUs which do not report timestamps are treated as having
+   * no latency.
+   *
+   * @return {@link SensorSample} of the yaw in radians, offset and inversion applied.
+   */
+  public SensorSample getYawSample()
+  {
+    return yawSample.update(getRotation3d().getZ(), Timer.getFPGATimestamp(), 0);
+  }
+
+  /**
+   * Get the yaw rate from the IMU with the time it was measured at, counter-clockwise positive to match
+   * {@link SwerveIMU#getYawSample()}.
+   *
+   * @return {@link SensorSample} of the yaw rate in radians per second.
+   */
+  public SensorSample getYawRateSample()
+  {
+    return yawRateSample.update(getYawAngularVelocity().in(RadiansPerSecond), Timer.getFPGATimestamp(), 0);
+  }
+
+  /**
+   * Sample the yaw and yaw rate together, updating {@link SwerveIMU#yawSample} and {@link SwerveIMU#yawRateSample}.
+   */
+  public void sampleYaw()
+  {
+    getYawSample();
+    getYawRateSample();
+  }
+
+  /**
+   * Sample the IMU and extrapolate the yaw to the given time using the yaw rate. Used by odometry to line the heading up
+   * with the time the module positions were sampled.
+   *
+   * @param timestampSeconds FPGA timestamp in seconds to get the yaw at.
+   * @return Yaw in radians, offset and inversion applied.
+   */
+  public double getYawAt(double timestampSeconds)
+  {
+    sampleYaw();
+    return extrapolateYaw(timestampSeconds);
+  }
+
+  /**
+   * Extrapolate the yaw of the last {@link SwerveIMU#sampleYaw()} to the given time using the yaw rate, without
+   * sampling the IMU again.
+   *
+   * @param timestampSeconds FPGA timestamp in seconds to get the yaw at.
+   * @return Yaw in radians, offset and inversion applied.
+   */
+  public double extrapolateYaw(double timestampSeconds)
+  {
+    return yawSample.extrapolate(yawRateSample.value, timestampSeconds);
+  }
+
+  /**
+   * Get the yaw from the IMU extrapolated by the yaw rate over the latency of the reading.
+   *
+   * @return Latency compensated yaw in radians, offset and inversion applied.
+   */
+  public double getLatencyCompensatedYaw()
+  {
+    SensorSample sample = getYawSample();
+    if (sample.latencySeconds == 0)
+    {
+      return sample.value;
+    }
+    return sample.value + getYawAngularVelocity().in(RadiansPerSecond) * sample.latencySeconds;
+  }
+
   /**
    * Get the instantiated IMU object.
    *
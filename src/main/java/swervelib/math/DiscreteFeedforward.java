@@ -0,0 +1,85 @@
+package swervelib.math;
+
+import edu.wpi.first.math.controller.SimpleMotorFeedforward;
+
+/**
+ * Precomputed form of {@link SimpleMotorFeedforward#calculateWithVelocities(double, double)}. The discretized plant
+ * only depends on the gains and the loop period, so the exponential is evaluated once on construction and each
+ * calculation is a few multiply-adds.
+ */
+public class DiscreteFeedforward
+{
+
+  /**
+   * Static gain in volts.
+   */
+  private final double  ks;
+  /**
+   * Velocity gain in volts per unit per second, used when there is no acceleration gain.
+   */
+  private final double  kv;
+  /**
+   * Discretized plant state gain, exp(-kv / ka * dt).
+   */
+  private final double  stateGain;
+  /**
+   * Inverse of the discretized plant input gain.
+   */
+  private final double  inverseInputGain;
+  /**
+   * Whether the acceleration gain is zero and the feedforward is purely ks and kv.
+   */
+  private final boolean velocityOnly;
+
+  /**
+   * Precompute the feedforward.
+   *
+   * @param feedforward {@link SimpleMotorFeedforward} with the gains and loop period to use.
+   */
+  public DiscreteFeedforward(SimpleMotorFeedforward feedforward)
+  {
+    this(feedforward.getKs(), feedforward.getKv(), feedforward.getKa(), feedforward.getDt());
+  }
+
+  /**
+   * Precompute the feedforward.
+   *
+   * @param ks        Static gain in volts.
+   * @param kv        Velocity gain in volts per unit per second.
+   * @param ka        Acceleration gain in volts per unit per second squared.
+   * @param dtSeconds Loop period in seconds.
+   */
+  public DiscreteFeedforward(double ks, double kv, double ka, double dtSeconds)
+  {
+    this.ks = ks;
+    this.kv = kv;
+    velocityOnly = ka < 1e-9;
+    if (velocityOnly)
+    {
+      stateGain = 0;
+      inverseInputGain = 0;
+    } else
+    {
+      double a = -kv / ka;
+      double b = 1.0 / ka;
+      stateGain = Math.exp(a * dtSeconds);
+      inverseInputGain = 1.0 / (1.0 / a * (stateGain - 1.0) * b);
+    }
+  }
+
+  /**
+   * Calculate the feedforward voltage to go from the current velocity to the next velocity in one loop period.
+   *
+   * @param currentVelocity Current velocity.
+   * @param nextVelocity    Velocity at the end of the loop period.
+   * @return Feedforward voltage.
+   */
+  public double calculate(double currentVelocity, double nextVelocity)
+  {
+    if (velocityOnly)
+    {
+      return ks * Math.signum(nextVelocity) + kv * nextVelocity;
+    }
+    return ks * Math.signum(currentVelocity) + inverseInputGain * (nextVelocity - stateGain * currentVelocity);
+  }
+}
@@ -0,0 +1,210 @@
+package swervelib.math;
+
+import java.util.ArrayList;
+import java.util.List;
+import swervelib.parser.SwerveDriveConfiguration;
+
+/**
+ * Limits acceleration to prevent tipping while mechanisms move mass around the robot. Each {@link MassProvider}'s range
+ * is split into buckets, and a {@link TippingLimitTable} over direction is kept for every combination of bucket edges.
+ * Tables are built the first time the mechanisms reach them, so the limits are refreshed incrementally as the
+ * mechanisms move, and every lookup after that is a few table reads. The limit used is the lowest of the bucket edges
+ * around the current mechanism positions so it is never less conservative than the true limit at the bucket edges.
+ */
+public class DynamicTippingLimiter
+{
+
+  /**
+   * Matter which does not move, including the chassis.
+   */
+  private final List<Matter>             staticMatter;
+  /**
+   * Mechanisms which move mass.
+   */
+  private final MassProvider[]           providers;
+  /**
+   * Swerve drive configuration.
+   */
+  private final SwerveDriveConfiguration config;
+  /**
+   * Number of buckets each mechanism range is split into.
+   */
+  private final int                      buckets;
+  /**
+   * Number of directions sampled in each table.
+   */
+  private final int                      directionResolution;
+  /**
+   * Tables for each combination of bucket edges, indexed with mixed radix (buckets + 1) per mechanism.
+   */
+  private final TippingLimitTable[]      tables;
+  /**
+   * Lower bucket edge of each mechanism for the current lookup.
+   */
+  private final int[]                    lowerEdges;
+
+  /**
+   * Create the limiter.
+   *
+   * @param staticMatter        Matter which does not move, including the chassis.
+   * @param providers           Mechanisms which move mass.
+   * @param config              The swerve drive configuration.
+   * @param buckets             Number of buckets each mechanism range is split into.
+   * @param directionResolution Number of directions sampled in each table.
+   */
+  public DynamicTippingLimiter(List<Matter> staticMatter, List<MassProvider> providers,
+                               SwerveDriveConfiguration config, int buckets, int directionResolution)
+  {
+    if (buckets < 1)
+    {
+      throw new IllegalArgumentException("Tipping limiter needs at least one bucket per mechanism");
+    }
+    this.staticMatter = List.copyOf(staticMatter);
+    this.providers = providers.toArray(new MassProvider[0]);
+    this.config = config;
+    this.buckets = buckets;
+    this.directionResolution = directionResolution;
+    this.lowerEdges = new int[this.providers.length];
+    this.tables = new TippingLimitTable[(int) Math.pow(buckets + 1, this.providers.length)];
+  }
+
+  /**
+   * Create the limiter with 10 buckets per mechanism and the {@link TippingLimitTable#DEFAULT_RESOLUTION}.
+   *
+   * @param staticMatter Matter which does not move, including the chassis.
+   * @param providers    Mechanisms which move mass.
+   * @param config       The swerve drive configuration.
+   */
+  public DynamicTippingLimiter(List<Matter> staticMatter, List<MassProvider> providers,
+                               SwerveDriveConfiguration config)
+  {
+    this(staticMatter, providers, config, 10, TippingLimitTable.DEFAULT_RESOLUTION);
+  }
+
+  /**
+   * Get the position of a bucket edge of a mechanism.
+   *
+   * @param provider Mechanism.
+   * @param edge     Bucket edge from 0 to buckets.
+   * @return Mechanism position at the edge.
+   */
+  private double edgePosition(MassProvider provider, int edge)
+  {
+    double min = provider.getMinPosition();
+    return min + (provider.getMaxPosition() - min) * edge / buckets;
+  }
+
+  /**
+   * Get or build the table for a combination of bucket edges.
+   *
+   * @param index Mixed radix index of the bucket edges.
+   * @return {@link TippingLimitTable} for the bucket edges.
+   */
+  private TippingLimitTable getTable(int index)
+  {
+    TippingLimitTable table = tables[index];
+    if (table == null)
+    {
+      List<Matter> matter    = new ArrayList<>(staticMatter);
+      double       robotMass = 0;
+      int          remaining = index;
+      for (MassProvider provider : providers)
+      {
+        matter.add(provider.getMatter(edgePosition(provider, remaining % (buckets + 1))));
+        remaining /= buckets + 1;
+      }
+      for (Matter object : matter)
+      {
+        robotMass += object.mass;
+      }
+      table = new TippingLimitTable(matter, robotMass, config, directionResolution);
+      tables[index] = table;
+    }
+    return table;
+  }
+
+  /**
+   * Build every table ahead of time instead of when the mechanisms first reach them.
+   */
+  public void precompute()
+  {
+    for (int i = 0; i < tables.length; i++)
+    {
+      getTable(i);
+    }
+  }
+
+  /**
+   * Drop every table so they are rebuilt, use when the mass of a mechanism changes (e.g. picking up a game piece).
+   */
+  public void invalidate()
+  {
+    for (int i = 0; i < tables.length; i++)
+    {
+      tables[i] = null;
+    }
+  }
+
+  /**
+   * Get the maximum acceleration in a direction without tipping at the current mechanism positions.
+   *
+   * @param angleRadians Robot relative direction in radians.
+   * @return Maximum acceleration in meters per second squared.
+   */
+  public double getMaxAcceleration(double angleRadians)
+  {
+    for (int i = 0; i < providers.length; i++)
+    {
+      MassProvider provider = providers[i];
+      double       min      = provider.getMinPosition();
+      double       range    = provider.getMaxPosition() - min;
+      double       bucket   = range == 0 ? 0 : (provider.getPosition() - min) / range * buckets;
+      lowerEdges[i] = (int) Math.max(0, Math.min(buckets - 1, Math.floor(bucket)));
+    }
+
+    double limit = Double.POSITIVE_INFINITY;
+    // Check every corner of the bucket the mechanisms are in.
+    for (int corner = 0; corner < (1 << providers.length); corner++)
+    {
+      int index = 0, radix = 1;
+      for (int i = 0; i < providers.length; i++)
+      {
+        index += (lowerEdges[i] + ((corner >> i) & 1)) * radix;
+        radix *= buckets + 1;
+      }
+      limit = Math.min(limit, Math.abs(getTable(index).getMaxAcceleration(angleRadians)));
+    }
+    return limit;
+  }
+
+  /**
+   * Limit a commanded robot relative velocity so the change from the last commanded velocity stays under the maximum
+   * acceleration in its direction.
+   *
+   * @param vxMetersPerSecond     Commanded robot relative x velocity in meters per second.
+   * @param vyMetersPerSecond     Commanded robot relative y velocity in meters per second.
+   * @param lastVxMetersPerSecond Last commanded robot relative x velocity in meters per second.
+   * @param lastVyMetersPerSecond Last commanded robot relative y velocity in meters per second.
+   * @param dtSeconds             Time between commands in seconds.
+   * @param limited               Output [vx, vy] in meters per second, at least 2 long.
+   * @return True if the velocity was limited.
+   */
+  public boolean limit(double vxMetersPerSecond, double vyMetersPerSecond, double lastVxMetersPerSecond,
+                       double lastVyMetersPerSecond, double dtSeconds, double[] limited)
+  {
+    double deltaX    = vxMetersPerSecond - lastVxMetersPerSecond;
+    double deltaY    = vyMetersPerSecond - lastVyMetersPerSecond;
+    double deltaNorm = Math.hypot(deltaX, deltaY);
+    double maxDelta  = getMaxAcceleration(Math.atan2(deltaY, deltaX)) * dtSeconds;
+    if (deltaNorm <= maxDelta)
+    {
+      limited[0] = vxMetersPerSecond;
+      limited[1] = vyMetersPerSecond;
+      return false;
+    }
+    double scale = maxDelta / deltaNorm;
+    limited[0] = lastVxMetersPerSecond + deltaX * scale;
+    limited[1] = lastVyMetersPerSecond + deltaY * scale;
+    return true;
+  }
+}
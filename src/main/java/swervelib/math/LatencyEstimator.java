@@ -0,0 +1,262 @@
+package swervelib.math;
+
+/**
+ * Online estimate of the delay between commanding chassis speeds and the robot reaching them. Commanded and measured
+ * chassis speeds are sampled each odometry update into ring buffers, and the delay is the lag which maximizes the
+ * normalized cross-correlation of the two, summed over vx, vy and omega and refined to a fraction of a sample with a
+ * parabolic fit around the peak. Windows where the commands barely change carry no timing information and are
+ * skipped, keeping the previous estimate.
+ * <p>
+ * Not thread safe, sample and estimate from one thread.
+ */
+public class LatencyEstimator
+{
+
+  /**
+   * Commanded [vx, vy, omega] samples, interleaved.
+   */
+  private final double[] commanded;
+  /**
+   * Measured [vx, vy, omega] samples, interleaved.
+   */
+  private final double[] measured;
+  /**
+   * Sample timestamps in seconds.
+   */
+  private final double[] timestamps;
+  /**
+   * Commanded and measured means of each axis for the last estimate, [commanded vx, vy, omega, measured vx, vy, omega].
+   */
+  private final double[] means                = new double[6];
+  /**
+   * Correlation at each lag of the last estimate.
+   */
+  private final double[] correlation;
+  /**
+   * Number of samples each buffer holds.
+   */
+  private final int      capacity;
+  /**
+   * Largest lag in samples considered.
+   */
+  private final int      maxLag;
+  /**
+   * Index the next sample is written to.
+   */
+  private       int      head                 = 0;
+  /**
+   * Number of samples held.
+   */
+  private       int      size                 = 0;
+  /**
+   * Samples added since the last estimate.
+   */
+  private       int      samplesSinceEstimate = 0;
+  /**
+   * Minimum variance of the commanded speeds for a window to be used.
+   */
+  private       double   minimumVariance      = 0.01;
+  /**
+   * Weight of each new estimate in the smoothed latency.
+   */
+  private       double   smoothing            = 0.2;
+  /**
+   * Smoothed latency estimate in seconds.
+   */
+  private       double   latencySeconds;
+  /**
+   * Whether at least one window has been used.
+   */
+  private       boolean  converged            = false;
+
+  /**
+   * Create the estimator.
+   *
+   * @param capacity              Number of samples in the correlation window.
+   * @param maxLag                Largest lag in samples considered, less than the capacity.
+   * @param initialLatencySeconds Latency reported until the first estimate.
+   */
+  public LatencyEstimator(int capacity, int maxLag, double initialLatencySeconds)
+  {
+    if (maxLag < 1 || maxLag >= capacity)
+    {
+      throw new IllegalArgumentException("Latency estimator lag must be between 1 and the capacity");
+    }
+    this.capacity = capacity;
+    this.maxLag = maxLag;
+    commanded = new double[capacity * 3];
+    measured = new double[capacity * 3];
+    timestamps = new double[capacity];
+    correlation = new double[maxLag + 1];
+    latencySeconds = initialLatencySeconds;
+  }
+
+  /**
+   * Set the minimum variance of the commanded speeds for a window to be used.
+   *
+   * @param minimumVariance Variance summed over vx, vy and omega, 0.01 by default.
+   */
+  public void setMinimumVariance(double minimumVariance)
+  {
+    this.minimumVariance = minimumVariance;
+  }
+
+  /**
+   * Set the weight of each new estimate in the smoothed latency.
+   *
+   * @param smoothing Weight between 0 and 1, 0.2 by default.
+   */
+  public void setSmoothing(double smoothing)
+  {
+    this.smoothing = smoothing;
+  }
+
+  /**
+   * Add a sample, estimating the latency again every quarter window.
+   *
+   * @param timestampSeconds Timestamp of the sample in seconds.
+   * @param commandedVx      Commanded robot relative x velocity in meters per second.
+   * @param commandedVy      Commanded robot relative y velocity in meters per second.
+   * @param commandedOmega   Commanded angular velocity in radians per second.
+   * @param measuredVx       Measured robot relative x velocity in meters per second.
+   * @param measuredVy       Measured robot relative y velocity in meters per second.
+   * @param measuredOmega    Measured angular velocity in radians per second.
+   */
+  public void addSample(double timestampSeconds, double commandedVx, double commandedVy, double commandedOmega,
+                        double measuredVx, double measuredVy, double measuredOmega)
+  {
+    timestamps[head] = timestampSeconds;
+    commanded[head * 3] = commandedVx;
+    commanded[head * 3 + 1] = commandedVy;
+    commanded[head * 3 + 2] = commandedOmega;
+    measured[head * 3] = measuredVx;
+    measured[head * 3 + 1] = measuredVy;
+    measured[head * 3 + 2] = measuredOmega;
+    head = (head + 1) % capacity;
+    size = Math.min(size + 1, capacity);
+    if (size == capacity && ++samplesSinceEstimate >= capacity / 4)
+    {
+      samplesSinceEstimate = 0;
+      estimate();
+    }
+  }
+
+  /**
+   * Get the ring buffer index of the sample a number of samples after the oldest one.
+   *
+   * @param offset Samples after the oldest sample.
+   * @return Ring buffer index.
+   */
+  private int index(int offset)
+  {
+    return (head + offset) % capacity;
+  }
+
+  /**
+   * Estimate the latency from the full window and fold it into the smoothed estimate.
+   */
+  private void estimate()
+  {
+    double samplePeriod = (timestamps[index(capacity - 1)] - timestamps[index(0)]) / (capacity - 1);
+    if (samplePeriod <= 0)
+    {
+      return;
+    }
+
+    double commandedVariance = 0;
+    double measuredVariance  = 0;
+    for (int axis = 0; axis < 3; axis++)
+    {
+      double commandedMean = 0, measuredMean = 0;
+      for (int i = 0; i < capacity; i++)
+      {
+        commandedMean += commanded[index(i) * 3 + axis];
+        measuredMean += measured[index(i) * 3 + axis];
+      }
+      commandedMean /= capacity;
+      measuredMean /= capacity;
+      means[axis] = commandedMean;
+      means[axis + 3] = measuredMean;
+      for (int i = 0; i < capacity; i++)
+      {
+        double c = commanded[index(i) * 3 + axis] - commandedMean;
+        double m = measured[index(i) * 3 + axis] - measuredMean;
+        commandedVariance += c * c;
+        measuredVariance += m * m;
+      }
+    }
+    commandedVariance /= capacity;
+    measuredVariance /= capacity;
+    if (commandedVariance < minimumVariance || measuredVariance <= 0)
+    {
+      return;
+    }
+
+    // Correlate the commands with the measurements that many samples later.
+    int bestLag = 0;
+    for (int lag = 0; lag <= maxLag; lag++)
+    {
+      double sum = 0;
+      for (int axis = 0; axis < 3; axis++)
+      {
+        for (int i = 0; i + lag < capacity; i++)
+        {
+          sum += (commanded[index(i) * 3 + axis] - means[axis]) *
+                 (measured[index(i + lag) * 3 + axis] - means[axis + 3]);
+        }
+      }
+      correlation[lag] = sum / ((capacity - lag) * Math.sqrt(commandedVariance * measuredVariance));
+      if (correlation[lag] > correlation[bestLag])
+      {
+        bestLag = lag;
+      }
+    }
+
+    double lag = bestLag;
+    if (bestLag > 0 && bestLag < maxLag)
+    {
+      double before = correlation[bestLag - 1];
+      double peak   = correlation[bestLag];
+      double after  = correlation[bestLag + 1];
+      double denom  = before - 2 * peak + after;
+      if (denom < 0)
+      {
+        lag += 0.5 * (before - after) / denom;
+      }
+    }
+
+    double estimate = lag * samplePeriod;
+    latencySeconds = converged ? latencySeconds + smoothing * (estimate - latencySeconds) : estimate;
+    converged = true;
+  }
+
+  /**
+   * Get the estimated latency.
+   *
+   * @return Latency in seconds, the initial latency until the first estimate.
+   */
+  public double getLatencySeconds()
+  {
+    return latencySeconds;
+  }
+
+  /**
+   * Whether the latency has been estimated from at least one window.
+   *
+   * @return True once an estimate has been made.
+   */
+  public boolean hasEstimate()
+  {
+    return converged;
+  }
+
+  /**
+   * Drop all samples, keeping the current estimate.
+   */
+  public void reset()
+  {
+    head = 0;
+    size = 0;
+    samplesSinceEstimate = 0;
+  }
+}
@@ -0,0 +1,39 @@
+package swervelib.math;
+
+/**
+ * A mechanism which moves significant mass around the robot, e.g. an elevator or an arm. Used by
+ * {@link DynamicTippingLimiter} to keep the tipping limits up to date as the mechanism moves.
+ */
+public interface MassProvider
+{
+
+  /**
+   * Get the current position of the mechanism, e.g. elevator height in meters or arm angle in radians.
+   *
+   * @return Mechanism position.
+   */
+  double getPosition();
+
+  /**
+   * Get the lowest position of the mechanism.
+   *
+   * @return Minimum mechanism position.
+   */
+  double getMinPosition();
+
+  /**
+   * Get the highest position of the mechanism.
+   *
+   * @return Maximum mechanism position.
+   */
+  double getMaxPosition();
+
+  /**
+   * Get the moving mass of the mechanism when it is at the given position.
+   *
+   * @param position Mechanism position between {@link MassProvider#getMinPosition()} and
+   *                 {@link MassProvider#getMaxPosition()}.
+   * @return {@link Matter} with the position of the moving mass in meters from the robot center and its mass in kg.
+   */
+  Matter getMatter(double position);
+}
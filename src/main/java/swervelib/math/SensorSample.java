@@ -0,0 +1,50 @@
+package swervelib.math;
+
+/**
+ * A sensor reading with the time it was measured at and how old it was when it was read. Instances are reused by the
+ * devices which produce them to avoid allocating every loop, copy the fields if they need to be kept.
+ */
+public class SensorSample
+{
+
+  /**
+   * Value of the reading in the units of the device getter it came from.
+   */
+  public double value            = 0;
+  /**
+   * FPGA timestamp in seconds of when the reading was measured by the device.
+   */
+  public double timestampSeconds = 0;
+  /**
+   * Latency in seconds between the device measuring the reading and it being read.
+   */
+  public double latencySeconds   = 0;
+
+  /**
+   * Update the sample.
+   *
+   * @param value            Value of the reading.
+   * @param timestampSeconds FPGA timestamp in seconds the reading was measured.
+   * @param latencySeconds   Latency of the reading in seconds.
+   * @return This {@link SensorSample} for chaining.
+   */
+  public SensorSample update(double value, double timestampSeconds, double latencySeconds)
+  {
+    this.value = value;
+    this.timestampSeconds = timestampSeconds;
+    this.latencySeconds = latencySeconds;
+    return this;
+  }
+
+  /**
+   * Extrapolate the reading to a given time using a rate of change.
+   *
+   * @param rate             Rate of change of the value in units per second.
+   * @param timestampSeconds FPGA timestamp in seconds to extrapolate to.
+   * @return Extrapolated value.
+   */
+  public double extrapolate(double rate, double timestampSeconds)
+  {
+    return value + rate * (timestampSeconds - this.timestampSeconds);
+  }
+}
@@ -0,0 +1,195 @@
+package swervelib.math;
+
+import edu.wpi.first.math.MathUtil;
+
+/**
+ * Planar geometry on primitive doubles, matching the results of the WPILib {@link edu.wpi.first.math.geometry}
+ * classes without creating objects. Functions returning more than one value write them into a caller owned output
+ * array.
+ */
+public final class SwerveGeometry
+{
+
+  /**
+   * Magnitude below which a vector is treated as zero, matching {@link SwerveMath#cubeTranslation}.
+   */
+  public static final double EPSILON = 1.0E-6;
+
+  /**
+   * Static utility class.
+   */
+  private SwerveGeometry()
+  {
+  }
+
+  /**
+   * Get the magnitude of a vector.
+   *
+   * @param x X component.
+   * @param y Y component.
+   * @return Magnitude of the vector.
+   */
+  public static double norm(double x, double y)
+  {
+    return Math.hypot(x, y);
+  }
+
+  /**
+   * Wrap an angle the same way {@link edu.wpi.first.math.geometry.Rotation2d#getRadians()} does.
+   *
+   * @param radians Angle in radians.
+   * @return Angle in radians in the range [-PI, PI].
+   */
+  public static double wrapRadians(double radians)
+  {
+    return Math.atan2(Math.sin(radians), Math.cos(radians));
+  }
+
+  /**
+   * Wrap an angle the same way {@link edu.wpi.first.math.geometry.Rotation2d#getDegrees()} does.
+   *
+   * @param degrees Angle in degrees.
+   * @return Angle in degrees in the range [-180, 180].
+   */
+  public static double wrapDegrees(double degrees)
+  {
+    return Math.toDegrees(wrapRadians(Math.toRadians(degrees)));
+  }
+
+  /**
+   * Rotate a vector by an angle given as its cosine and sine.
+   *
+   * @param x   X component.
+   * @param y   Y component.
+   * @param cos Cosine of the angle.
+   * @param sin Sine of the angle.
+   * @param out Output [x, y], may be the same array the inputs were read from.
+   */
+  public static void rotate(double x, double y, double cos, double sin, double[] out)
+  {
+    out[0] = x * cos - y * sin;
+    out[1] = x * sin + y * cos;
+  }
+
+  /**
+   * Rotate a vector by an angle.
+   *
+   * @param x       X component.
+   * @param y       Y component.
+   * @param radians Angle in radians.
+   * @param out     Output [x, y], may be the same array the inputs were read from.
+   */
+  public static void rotate(double x, double y, double radians, double[] out)
+  {
+    rotate(x, y, Math.cos(radians), Math.sin(radians), out);
+  }
+
+  /**
+   * Get the factor to multiply both components of a vector by to cube its magnitude, keeping its direction.
+   *
+   * @param x X component.
+   * @param y Y component.
+   * @return Factor to multiply x and y by, 1 if the vector is zero.
+   */
+  public static double cubeFactor(double x, double y)
+  {
+    double norm = norm(x, y);
+    return norm <= EPSILON ? 1 : norm * norm;
+  }
+
+  /**
+   * Cube the magnitude of a vector, keeping its direction.
+   *
+   * @param x   X component.
+   * @param y   Y component.
+   * @param out Output [x, y], may be the same array the inputs were read from.
+   */
+  public static void cube(double x, double y, double[] out)
+  {
+    double factor = cubeFactor(x, y);
+    out[0] = x * factor;
+    out[1] = y * factor;
+  }
+
+  /**
+   * Scale the magnitude of a vector, keeping its direction. Vectors shorter than {@link SwerveGeometry#EPSILON} are
+   * left as is.
+   *
+   * @param x      X component.
+   * @param y      Y component.
+   * @param scalar Magnitude multiplier.
+   * @param out    Output [x, y], may be the same array the inputs were read from.
+   */
+  public static void scale(double x, double y, double scalar, double[] out)
+  {
+    double factor = norm(x, y) <= EPSILON ? 1 : scalar;
+    out[0] = x * factor;
+    out[1] = y * factor;
+  }
+
+  /**
+   * Apply {@link MathUtil#applyDeadband(double, double)} to each component of a vector.
+   *
+   * @param x        X component.
+   * @param y        Y component.
+   * @param deadband Deadband.
+   * @param out      Output [x, y], may be the same array the inputs were read from.
+   */
+  public static void deadband(double x, double y, double deadband, double[] out)
+  {
+    out[0] = MathUtil.applyDeadband(x, deadband);
+    out[1] = MathUtil.applyDeadband(y, deadband);
+  }
+
+  /**
+   * Logical inverse of the pose exponential, see {@link SwerveMath#PoseLog}.
+   *
+   * @param x     Transform x in meters.
+   * @param y     Transform y in meters.
+   * @param theta Transform rotation in radians, in the range [-PI, PI].
+   * @param out   Output twist [dx, dy, dtheta].
+   */
+  public static void log(double x, double y, double theta, double[] out)
+  {
+    double halfTheta   = 0.5 * theta;
+    double cosMinusOne = Math.cos(theta) - 1.0;
+    double halfThetaByTanOfHalfTheta;
+    if (Math.abs(cosMinusOne) < 1E-9)
+    {
+      halfThetaByTanOfHalfTheta = 1.0 - 1.0 / 12.0 * theta * theta;
+    } else
+    {
+      halfThetaByTanOfHalfTheta = -(halfTheta * Math.sin(theta)) / cosMinusOne;
+    }
+    double magnitude = norm(halfThetaByTanOfHalfTheta, halfTheta);
+    rotate(x, y, halfThetaByTanOfHalfTheta / magnitude, -halfTheta / magnitude, out);
+    out[2] = theta;
+  }
+
+  /**
+   * Pose exponential, see {@link edu.wpi.first.math.geometry.Pose2d#exp}.
+   *
+   * @param dx     Twist dx in meters.
+   * @param dy     Twist dy in meters.
+   * @param dtheta Twist dtheta in radians.
+   * @param out    Output transform [x, y, theta].
+   */
+  public static void exp(double dx, double dy, double dtheta, double[] out)
+  {
+    double sinTheta = Math.sin(dtheta);
+    double cosTheta = Math.cos(dtheta);
+    double s, c;
+    if (Math.abs(dtheta) < 1E-9)
+    {
+      s = 1.0 - 1.0 / 6.0 * dtheta * dtheta;
+      c = 0.5 * dtheta;
+    } else
+    {
+      s = sinTheta / dtheta;
+      c = (1 - cosTheta) / dtheta;
+    }
+    out[0] = dx * s - dy * c;
+    out[1] = dx * c + dy * s;
+    out[2] = Math.atan2(sinTheta, cosTheta);
+  }
+}
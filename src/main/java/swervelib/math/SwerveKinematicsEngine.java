@@ -0,0 +1,219 @@
+package swervelib.math;
+
+import edu.wpi.first.math.geometry.Translation2d;
+
+/**
+ * Allocation free swerve drive kinematics for a fixed module layout. Works the same as
+ * {@link edu.wpi.first.math.kinematics.SwerveDriveKinematics} but reads and writes caller owned primitive arrays instead
+ * of creating {@link edu.wpi.first.math.kinematics.SwerveModuleState}s and matrices every call. The module positions
+ * relative to the center of rotation are cached until the center of rotation changes, and the forward kinematics
+ * pseudo-inverse is computed once on construction.
+ * <p>
+ * Inverse kinematics mutate the cached center of rotation and last module headings, so they should only be called from
+ * one thread at a time. Forward kinematics are stateless.
+ */
+public class SwerveKinematicsEngine
+{
+
+  /**
+   * Number of swerve modules.
+   */
+  public final  int      moduleCount;
+  /**
+   * Module x positions relative to the robot center in meters.
+   */
+  private final double[] moduleX;
+  /**
+   * Module y positions relative to the robot center in meters.
+   */
+  private final double[] moduleY;
+  /**
+   * Module x positions relative to the cached center of rotation in meters.
+   */
+  private final double[] relativeX;
+  /**
+   * Module y positions relative to the cached center of rotation in meters.
+   */
+  private final double[] relativeY;
+  /**
+   * Last module headings in radians, kept when the chassis is commanded to stop.
+   */
+  private final double[] lastAnglesRadians;
+  /**
+   * Row of the forward kinematics pseudo-inverse for vx, interleaved [x0, y0, x1, y1, ...].
+   */
+  private final double[] forwardVx;
+  /**
+   * Row of the forward kinematics pseudo-inverse for vy, interleaved [x0, y0, x1, y1, ...].
+   */
+  private final double[] forwardVy;
+  /**
+   * Row of the forward kinematics pseudo-inverse for omega, interleaved [x0, y0, x1, y1, ...].
+   */
+  private final double[] forwardOmega;
+  /**
+   * Cached center of rotation x in meters.
+   */
+  private       double   centerOfRotationX = 0;
+  /**
+   * Cached center of rotation y in meters.
+   */
+  private       double   centerOfRotationY = 0;
+
+  /**
+   * Create the kinematics engine.
+   *
+   * @param moduleLocations Module locations relative to the robot center, in module number order.
+   */
+  public SwerveKinematicsEngine(Translation2d... moduleLocations)
+  {
+    if (moduleLocations.length < 2)
+    {
+      throw new IllegalArgumentException("A swerve drive requires at least two modules");
+    }
+    moduleCount = moduleLocations.length;
+    moduleX = new double[moduleCount];
+    moduleY = new double[moduleCount];
+    relativeX = new double[moduleCount];
+    relativeY = new double[moduleCount];
+    lastAnglesRadians = new double[moduleCount];
+    forwardVx = new double[moduleCount * 2];
+    forwardVy = new double[moduleCount * 2];
+    forwardOmega = new double[moduleCount * 2];
+
+    double sumX = 0, sumY = 0, sumSquares = 0;
+    for (int i = 0; i < moduleCount; i++)
+    {
+      moduleX[i] = relativeX[i] = moduleLocations[i].getX();
+      moduleY[i] = relativeY[i] = moduleLocations[i].getY();
+      sumX += moduleX[i];
+      sumY += moduleY[i];
+      sumSquares += moduleX[i] * moduleX[i] + moduleY[i] * moduleY[i];
+    }
+
+    // Each module gives two rows of the inverse kinematics matrix A: [1, 0, -y] and [0, 1, x].
+    // The forward kinematics are the least squares solution (A^T A)^-1 A^T, A^T A is symmetric:
+    // | n     0    -sumY      |
+    // | 0     n     sumX      |
+    // | -sumY sumX  sumSquares|
+    double n   = moduleCount;
+    double c00 = n * sumSquares - sumX * sumX;
+    double c01 = -sumX * sumY;
+    double c02 = n * sumY;
+    double c11 = n * sumSquares - sumY * sumY;
+    double c12 = -n * sumX;
+    double c22 = n * n;
+    double det = n * c00 - sumY * c02;
+    double[][] inverse = {
+        {c00 / det, c01 / det, c02 / det},
+        {c01 / det, c11 / det, c12 / det},
+        {c02 / det, c12 / det, c22 / det}
+    };
+
+    for (int i = 0; i < moduleCount; i++)
+    {
+      // Column for the module x row [1, 0, -y] and module y row [0, 1, x].
+      for (int row = 0; row < 3; row++)
+      {
+        double xColumn = inverse[row][0] - inverse[row][2] * moduleY[i];
+        double yColumn = inverse[row][1] + inverse[row][2] * moduleX[i];
+        double[] target = row == 0 ? forwardVx : row == 1 ? forwardVy : forwardOmega;
+        target[i * 2] = xColumn;
+        target[i * 2 + 1] = yColumn;
+      }
+    }
+  }
+
+  /**
+   * Update the cached module positions relative to the center of rotation if it changed.
+   *
+   * @param x Center of rotation x in meters.
+   * @param y Center of rotation y in meters.
+   */
+  private void setCenterOfRotation(double x, double y)
+  {
+    if (x == centerOfRotationX && y == centerOfRotationY)
+    {
+      return;
+    }
+    centerOfRotationX = x;
+    centerOfRotationY = y;
+    for (int i = 0; i < moduleCount; i++)
+    {
+      relativeX[i] = moduleX[i] - x;
+      relativeY[i] = moduleY[i] - y;
+    }
+  }
+
+  /**
+   * Inverse kinematics, convert robot relative chassis speeds into module speeds and headings. When the chassis speeds
+   * are all zero the modules keep their last heading.
+   *
+   * @param vxMetersPerSecond     Robot relative x velocity in meters per second.
+   * @param vyMetersPerSecond     Robot relative y velocity in meters per second.
+   * @param omegaRadiansPerSecond Angular velocity in radians per second.
+   * @param centerOfRotationX     Center of rotation x relative to the robot center in meters.
+   * @param centerOfRotationY     Center of rotation y relative to the robot center in meters.
+   * @param speedsMetersPerSecond Output module speeds in meters per second, must be {@link #moduleCount} long.
+   * @param anglesRadians         Output module headings in radians, must be {@link #moduleCount} long.
+   */
+  public void toModuleStates(double vxMetersPerSecond, double vyMetersPerSecond, double omegaRadiansPerSecond,
+                             double centerOfRotationX, double centerOfRotationY,
+                             double[] speedsMetersPerSecond, double[] anglesRadians)
+  {
+    if (vxMetersPerSecond == 0 && vyMetersPerSecond == 0 && omegaRadiansPerSecond == 0)
+    {
+      for (int i = 0; i < moduleCount; i++)
+      {
+        speedsMetersPerSecond[i] = 0;
+        anglesRadians[i] = lastAnglesRadians[i];
+      }
+      return;
+    }
+
+    setCenterOfRotation(centerOfRotationX, centerOfRotationY);
+    for (int i = 0; i < moduleCount; i++)
+    {
+      double x = vxMetersPerSecond - omegaRadiansPerSecond * relativeY[i];
+      double y = vyMetersPerSecond + omegaRadiansPerSecond * relativeX[i];
+      speedsMetersPerSecond[i] = Math.hypot(x, y);
+      anglesRadians[i] = speedsMetersPerSecond[i] > 1e-6 ? Math.atan2(y, x) : lastAnglesRadians[i];
+      lastAnglesRadians[i] = anglesRadians[i];
+    }
+  }
+
+  /**
+   * Forward kinematics, convert module speeds and headings into robot relative chassis speeds using a least squares
+   * fit.
+   *
+   * @param speedsMetersPerSecond Module speeds in meters per second.
+   * @param anglesRadians         Module headings in radians.
+   * @param chassisSpeeds         Output [vx, vy, omega] in meters per second and radians per second, must be at least 3
+   *                              long.
+   */
+  public void toChassisSpeeds(double[] speedsMetersPerSecond, double[] anglesRadians, double[] chassisSpeeds)
+  {
+    double vx = 0, vy = 0, omega = 0;
+    for (int i = 0; i < moduleCount; i++)
+    {
+      double x = speedsMetersPerSecond[i] * Math.cos(anglesRadians[i]);
+      double y = speedsMetersPerSecond[i] * Math.sin(anglesRadians[i]);
+      vx += forwardVx[i * 2] * x + forwardVx[i * 2 + 1] * y;
+      vy += forwardVy[i * 2] * x + forwardVy[i * 2 + 1] * y;
+      omega += forwardOmega[i * 2] * x + forwardOmega[i * 2 + 1] * y;
+    }
+    chassisSpeeds[0] = vx;
+    chassisSpeeds[1] = vy;
+    chassisSpeeds[2] = omega;
+  }
+
+  /**
+   * Set the last module headings, used when the chassis is commanded to stop.
+   *
+   * @param anglesRadians Module headings in radians.
+   */
+  public void resetHeadings(double[] anglesRadians)
+  {
+    System.arraycopy(anglesRadians, 0, lastAnglesRadians, 0, moduleCount);
+  }
+}
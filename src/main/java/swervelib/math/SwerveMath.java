@@ -9,7 +9,6 @@ import edu.wpi.first.math.geometry.Twist2d;
 import edu.wpi.first.math.kinematics.ChassisSpeeds;
 import edu.wpi.first.math.kinematics.SwerveModuleState;
 import java.util.List;
-import swervelib.SwerveController;
 import swervelib.SwerveModule;
 import swervelib.parser.SwerveDriveConfiguration;
 import swervelib.parser.SwerveModuleConfiguration;
@@ -20,6 +19,11 @@ import swervelib.parser.SwerveModuleConfiguration;
 public class SwerveMath
 {
 
+  /**
+   * Tipping limit table used by {@link SwerveMath#limitVelocity}, rebuilt when its inputs change.
+   */
+  private static volatile TippingLimitTable tippingLimitTable;
+
   /**
    * Calculate the meters per rotation for the integrated encoder. Calculation: (PI * WHEEL DIAMETER IN METERS) / (GEAR
    * RATIO * ENCODER RESOLUTION)
@@ -57,8 +61,7 @@ public class SwerveMath
    */
   public static double normalizeAngle(double angle)
   {
-    Rotation2d angleRotation = Rotation2d.fromDegrees(angle);
-    return new Rotation2d(angleRotation.getCos(), angleRotation.getSin()).getDegrees();
+    return SwerveGeometry.wrapDegrees(angle);
   }
 
   /**
@@ -181,7 +184,7 @@ public class SwerveMath
    * @param config    The swerve drive configuration.
    * @return Maximum acceleration allowed in the robot direction.
    */
-  private static double calcMaxAccel(
+  static double calcMaxAccel(
       Rotation2d angle,
       List<Matter> matter,
       double robotMass,
@@ -249,23 +252,29 @@ public class SwerveMath
    */
   public static Twist2d PoseLog(final Pose2d transform)
   {
+    double[] twist = new double[3];
+    SwerveGeometry.log(transform.getX(), transform.getY(), transform.getRotation().getRadians(), twist);
+    return new Twist2d(twist[0], twist[1], twist[2]);
+  }
 
-    final double kEps          = 1E-9;
-    final double dtheta        = transform.getRotation().getRadians();
-    final double half_dtheta   = 0.5 * dtheta;
-    final double cos_minus_one = transform.getRotation().getCos() - 1.0;
-    double       halftheta_by_tan_of_halfdtheta;
-    if (Math.abs(cos_minus_one) < kEps)
-    {
-      halftheta_by_tan_of_halfdtheta = 1.0 - 1.0 / 12.0 * dtheta * dtheta;
-    } else
+  /**
+   * Get the tipping limit table for the given inputs, reusing the cached table when the inputs have not changed.
+   *
+   * @param matter    Matter that the robot is composed of in kg. (Includes chassis)
+   * @param robotMass The weight of the robot in kg. (Including manipulators, etc).
+   * @param config    The swerve drive configuration.
+   * @return {@link TippingLimitTable} for the inputs.
+   */
+  public static TippingLimitTable getTippingLimitTable(List<Matter> matter, double robotMass,
+                                                       SwerveDriveConfiguration config)
+  {
+    TippingLimitTable table = tippingLimitTable;
+    if (table == null || !table.matches(matter, robotMass, config))
     {
-      halftheta_by_tan_of_halfdtheta = -(half_dtheta * transform.getRotation().getSin()) / cos_minus_one;
+      table = new TippingLimitTable(matter, robotMass, config);
+      tippingLimitTable = table;
     }
-    final Translation2d translation_part = transform.getTranslation()
-                                                    .rotateBy(new Rotation2d(halftheta_by_tan_of_halfdtheta,
-                                                                             -half_dtheta));
-    return new Twist2d(translation_part.getX(), translation_part.getY(), dtheta);
+    return table;
   }
 
   /**
@@ -292,34 +301,25 @@ public class SwerveMath
       List<Matter> matter,
       SwerveDriveConfiguration config)
   {
-    // Get the robot's current field-relative velocity
-    Translation2d currentVelocity = SwerveController.getTranslation2d(fieldVelocity);
-
-    // Calculate the commanded change in velocity by subtracting current velocity
+    // Calculate the commanded change in velocity by subtracting the robot's current field-relative velocity
     // from commanded velocity
-    Translation2d deltaV = commandedVelocity.minus(currentVelocity);
+    double deltaX    = commandedVelocity.getX() - fieldVelocity.vxMetersPerSecond;
+    double deltaY    = commandedVelocity.getY() - fieldVelocity.vyMetersPerSecond;
+    double deltaNorm = Math.hypot(deltaX, deltaY);
 
-    // Creates an acceleration vector with the direction of delta V and a magnitude
-    // of the maximum allowed acceleration in that direction
-    Translation2d maxAccel =
-        new Translation2d(
-            calcMaxAccel(
-                deltaV
-                    // Rotates the velocity vector to convert from field-relative to robot-relative
-                    .rotateBy(robotPose.getRotation().unaryMinus())
-                    .getAngle(),
-                matter,
-                robotMass,
-                config),
-            deltaV.getAngle());
+    // Maximum allowed acceleration in the direction of delta V, rotated from field-relative to robot-relative
+    double maxAccel = getTippingLimitTable(matter, robotMass, config)
+        .getMaxAcceleration(Math.atan2(deltaY, deltaX) - robotPose.getRotation().getRadians());
 
     // Calculate the maximum achievable velocity by the next loop cycle.
     // delta V = Vf - Vi = at
-    Translation2d maxAchievableDeltaVelocity = maxAccel.times(loopTime);
+    double maxAchievableDeltaVelocity = Math.abs(maxAccel * loopTime);
 
-    if (deltaV.getNorm() > maxAchievableDeltaVelocity.getNorm())
+    if (deltaNorm > maxAchievableDeltaVelocity)
     {
-      return maxAchievableDeltaVelocity.plus(currentVelocity);
+      double scale = maxAchievableDeltaVelocity / deltaNorm;
+      return new Translation2d(fieldVelocity.vxMetersPerSecond + deltaX * scale,
+                               fieldVelocity.vyMetersPerSecond + deltaY * scale);
     } else
     {
       // If the commanded velocity is attainable, use that.
@@ -376,6 +376,66 @@ public class SwerveMath
     return diffRevs + newAngle;
   }
 
+  /**
+   * Scale the module speeds down so none exceed the maximum speed, same as
+   * {@link edu.wpi.first.math.kinematics.SwerveDriveKinematics#desaturateWheelSpeeds(SwerveModuleState[], double)}.
+   *
+   * @param speeds   Module speeds in meters per second, modified in place.
+   * @param maxSpeed Maximum module speed in meters per second.
+   */
+  public static void desaturateWheelSpeeds(double[] speeds, double maxSpeed)
+  {
+    double realMaxSpeed = 0;
+    for (double speed : speeds)
+    {
+      realMaxSpeed = Math.max(realMaxSpeed, Math.abs(speed));
+    }
+    if (realMaxSpeed > maxSpeed)
+    {
+      for (int i = 0; i < speeds.length; i++)
+      {
+        speeds[i] = speeds[i] / realMaxSpeed * maxSpeed;
+      }
+    }
+  }
+
+  /**
+   * Scale the module speeds down using the attainable chassis speeds, same as
+   * {@link edu.wpi.first.math.kinematics.SwerveDriveKinematics#desaturateWheelSpeeds(SwerveModuleState[],
+   * ChassisSpeeds, double, double, double)}.
+   *
+   * @param speeds                          Module speeds in meters per second, modified in place.
+   * @param vxMetersPerSecond               Desired robot relative x velocity in meters per second.
+   * @param vyMetersPerSecond               Desired robot relative y velocity in meters per second.
+   * @param omegaRadiansPerSecond           Desired angular velocity in radians per second.
+   * @param attainableMaxModuleSpeed        Maximum module speed in meters per second.
+   * @param attainableMaxTranslationalSpeed Maximum translational speed in meters per second.
+   * @param attainableMaxRotationalVelocity Maximum angular velocity in radians per second.
+   */
+  public static void desaturateWheelSpeeds(double[] speeds, double vxMetersPerSecond, double vyMetersPerSecond,
+                                           double omegaRadiansPerSecond, double attainableMaxModuleSpeed,
+                                           double attainableMaxTranslationalSpeed,
+                                           double attainableMaxRotationalVelocity)
+  {
+    double realMaxSpeed = 0;
+    for (double speed : speeds)
+    {
+      realMaxSpeed = Math.max(realMaxSpeed, Math.abs(speed));
+    }
+    if (attainableMaxTranslationalSpeed == 0 || attainableMaxRotationalVelocity == 0 || realMaxSpeed == 0)
+    {
+      return;
+    }
+    double translationalK = Math.hypot(vxMetersPerSecond, vyMetersPerSecond) / attainableMaxTranslationalSpeed;
+    double rotationalK    = Math.abs(omegaRadiansPerSecond) / attainableMaxRotationalVelocity;
+    double scale          = Math.min(Math.max(translationalK, rotationalK) * attainableMaxModuleSpeed / realMaxSpeed,
+                                     1);
+    for (int i = 0; i < speeds.length; i++)
+    {
+      speeds[i] *= scale;
+    }
+  }
+
   /**
    * Perform anti-jitter within modules if the speed requested is too low.
    *
@@ -399,11 +459,8 @@ public class SwerveMath
    */
   public static Translation2d cubeTranslation(Translation2d translation)
   {
-    if (Math.hypot(translation.getX(), translation.getY()) <= 1.0E-6)
-    {
-      return translation;
-    }
-    return new Translation2d(Math.pow(translation.getNorm(), 3), translation.getAngle());
+    double factor = SwerveGeometry.cubeFactor(translation.getX(), translation.getY());
+    return factor == 1 ? translation : translation.times(factor);
   }
 
   /**
@@ -415,10 +472,10 @@ public class SwerveMath
    */
   public static Translation2d scaleTranslation(Translation2d translation, double scalar)
   {
-    if (Math.hypot(translation.getX(), translation.getY()) <= 1.0E-6)
+    if (SwerveGeometry.norm(translation.getX(), translation.getY()) <= SwerveGeometry.EPSILON)
     {
       return translation;
     }
-    return new Translation2d(translation.getNorm() * scalar, translation.getAngle());
+    return translation.times(scalar);
   }
 }
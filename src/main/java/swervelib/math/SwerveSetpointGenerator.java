@@ -0,0 +1,481 @@
+package swervelib.math;
+
+import edu.wpi.first.math.geometry.Translation2d;
+import java.util.Arrays;
+
+/**
+ * Allocation free swerve setpoint generator, based on the approach from Team 254 also used by PathPlanner. Each call
+ * moves the previous setpoint towards the desired chassis speeds as far as the module steering velocity and drive
+ * acceleration limits allow in one loop, so the commanded module states are always reachable. All state is kept in
+ * buffers allocated on construction.
+ * <p>
+ * Not thread safe, use from one control loop.
+ */
+public class SwerveSetpointGenerator
+{
+
+  /**
+   * Tolerance used when comparing speeds to zero.
+   */
+  private static final double                 EPSILON = 1e-9;
+  /**
+   * Kinematics used to convert chassis speeds into module states.
+   */
+  private final        SwerveKinematicsEngine kinematics;
+  /**
+   * Number of modules.
+   */
+  private final        int                    moduleCount;
+  /**
+   * Previous setpoint module speeds in meters per second.
+   */
+  private final        double[]               moduleSpeeds;
+  /**
+   * Previous setpoint module headings in radians.
+   */
+  private final        double[]               moduleAngles;
+  /**
+   * Setpoint module drive accelerations in meters per second squared, along each module heading.
+   */
+  private final        double[]               moduleAccelerations;
+  /**
+   * Previous setpoint robot relative chassis speeds [vx, vy, omega].
+   */
+  private final        double[]               chassisSpeeds = new double[3];
+  /**
+   * Desired module speeds in meters per second.
+   */
+  private final        double[]               desiredSpeeds;
+  /**
+   * Desired module headings in radians.
+   */
+  private final        double[]               desiredAngles;
+  /**
+   * Desired chassis speeds after desaturation [vx, vy, omega].
+   */
+  private final        double[]               desiredChassisSpeeds = new double[3];
+  /**
+   * Heading in radians each stopped module steers to in place, NaN if the module is moving.
+   */
+  private final        double[]               overrideAngles;
+  /**
+   * Maximum module speed in meters per second.
+   */
+  private              double                 maxModuleSpeed;
+  /**
+   * Maximum module drive acceleration in meters per second squared.
+   */
+  private              double                 maxDriveAcceleration;
+  /**
+   * Maximum module steering velocity in radians per second.
+   */
+  private              double                 maxSteerVelocity;
+  /**
+   * Root finding iterations for the steering limit.
+   */
+  private              int                    steerIterations = 8;
+  /**
+   * Root finding iterations for the drive acceleration limit.
+   */
+  private              int                    driveIterations = 10;
+
+  /**
+   * Create the setpoint generator.
+   *
+   * @param moduleLocations      Module locations relative to the robot center, in module number order.
+   * @param maxModuleSpeed       Maximum module speed in meters per second.
+   * @param maxDriveAcceleration Maximum module drive acceleration in meters per second squared.
+   * @param maxSteerVelocity     Maximum module steering velocity in radians per second.
+   */
+  public SwerveSetpointGenerator(Translation2d[] moduleLocations, double maxModuleSpeed, double maxDriveAcceleration,
+                                 double maxSteerVelocity)
+  {
+    kinematics = new SwerveKinematicsEngine(moduleLocations);
+    moduleCount = moduleLocations.length;
+    moduleSpeeds = new double[moduleCount];
+    moduleAngles = new double[moduleCount];
+    moduleAccelerations = new double[moduleCount];
+    desiredSpeeds = new double[moduleCount];
+    desiredAngles = new double[moduleCount];
+    overrideAngles = new double[moduleCount];
+    setConstraints(maxModuleSpeed, maxDriveAcceleration, maxSteerVelocity);
+  }
+
+  /**
+   * Set the module constraints.
+   *
+   * @param maxModuleSpeed       Maximum module speed in meters per second.
+   * @param maxDriveAcceleration Maximum module drive acceleration in meters per second squared.
+   * @param maxSteerVelocity     Maximum module steering velocity in radians per second.
+   */
+  public void setConstraints(double maxModuleSpeed, double maxDriveAcceleration, double maxSteerVelocity)
+  {
+    this.maxModuleSpeed = maxModuleSpeed;
+    this.maxDriveAcceleration = maxDriveAcceleration;
+    this.maxSteerVelocity = maxSteerVelocity;
+  }
+
+  /**
+   * Set the number of root finding iterations used for each limit. Fewer iterations are faster but less accurate, the
+   * setpoint can land slightly to either side of the exact steering velocity and drive acceleration limits.
+   *
+   * @param steerIterations Iterations for the steering velocity limit, 8 by default.
+   * @param driveIterations Iterations for the drive acceleration limit, 10 by default.
+   */
+  public void setIterationBudget(int steerIterations, int driveIterations)
+  {
+    this.steerIterations = steerIterations;
+    this.driveIterations = driveIterations;
+  }
+
+  /**
+   * Reset the previous setpoint, usually to the measured state of the robot.
+   *
+   * @param speedsMetersPerSecond Module speeds in meters per second.
+   * @param anglesRadians         Module headings in radians.
+   * @param vxMetersPerSecond     Robot relative x velocity in meters per second.
+   * @param vyMetersPerSecond     Robot relative y velocity in meters per second.
+   * @param omegaRadiansPerSecond Angular velocity in radians per second.
+   */
+  public void reset(double[] speedsMetersPerSecond, double[] anglesRadians, double vxMetersPerSecond,
+                    double vyMetersPerSecond, double omegaRadiansPerSecond)
+  {
+    System.arraycopy(speedsMetersPerSecond, 0, moduleSpeeds, 0, moduleCount);
+    System.arraycopy(anglesRadians, 0, moduleAngles, 0, moduleCount);
+    Arrays.fill(moduleAccelerations, 0);
+    kinematics.resetHeadings(anglesRadians);
+    chassisSpeeds[0] = vxMetersPerSecond;
+    chassisSpeeds[1] = vyMetersPerSecond;
+    chassisSpeeds[2] = omegaRadiansPerSecond;
+  }
+
+  /**
+   * Move the setpoint towards the desired chassis speeds by one loop.
+   *
+   * @param vxMetersPerSecond     Desired robot relative x velocity in meters per second.
+   * @param vyMetersPerSecond     Desired robot relative y velocity in meters per second.
+   * @param omegaRadiansPerSecond Desired angular velocity in radians per second.
+   * @param dtSeconds             Loop period in seconds.
+   */
+  public void generate(double vxMetersPerSecond, double vyMetersPerSecond, double omegaRadiansPerSecond,
+                       double dtSeconds)
+  {
+    kinematics.toModuleStates(vxMetersPerSecond, vyMetersPerSecond, omegaRadiansPerSecond, 0, 0,
+                              desiredSpeeds, desiredAngles);
+    // Desaturate the desired module speeds and scale the chassis speeds to match.
+    double realMaxSpeed = 0;
+    for (int i = 0; i < moduleCount; i++)
+    {
+      realMaxSpeed = Math.max(realMaxSpeed, Math.abs(desiredSpeeds[i]));
+    }
+    double desaturation = realMaxSpeed > maxModuleSpeed ? maxModuleSpeed / realMaxSpeed : 1;
+    for (int i = 0; i < moduleCount; i++)
+    {
+      desiredSpeeds[i] *= desaturation;
+    }
+    desiredChassisSpeeds[0] = vxMetersPerSecond * desaturation;
+    desiredChassisSpeeds[1] = vyMetersPerSecond * desaturation;
+    desiredChassisSpeeds[2] = omegaRadiansPerSecond * desaturation;
+
+    boolean desiredIsStopped = isZero(desiredChassisSpeeds);
+    boolean previousIsStopped = isZero(chassisSpeeds);
+    // When stopping, hold the previous headings instead of steering.
+    if (desiredIsStopped)
+    {
+      for (int i = 0; i < moduleCount; i++)
+      {
+        desiredAngles[i] = moduleAngles[i];
+        desiredSpeeds[i] = 0;
+      }
+    }
+
+    // If every module needs to reverse its direction of travel it is faster to stop first, then steer to the
+    // complement. Modules driving backwards already travel opposite to their heading.
+    boolean allModulesShouldFlip = true;
+    for (int i = 0; i < moduleCount; i++)
+    {
+      if (Math.abs(SwerveGeometry.wrapRadians(desiredAngles[i] - travelHeading(i))) < Math.PI / 2)
+      {
+        allModulesShouldFlip = false;
+        break;
+      }
+    }
+    if (allModulesShouldFlip && !previousIsStopped && !desiredIsStopped)
+    {
+      generate(0, 0, 0, dtSeconds);
+      return;
+    }
+
+    double dx     = desiredChassisSpeeds[0] - chassisSpeeds[0];
+    double dy     = desiredChassisSpeeds[1] - chassisSpeeds[1];
+    double dtheta = desiredChassisSpeeds[2] - chassisSpeeds[2];
+    double minS   = 1.0;
+
+    // Limit how far the modules steer in one loop.
+    double maxThetaStep = dtSeconds * maxSteerVelocity;
+    for (int i = 0; i < moduleCount; i++)
+    {
+      overrideAngles[i] = Double.NaN;
+      double previousVx = Math.cos(moduleAngles[i]) * moduleSpeeds[i];
+      double previousVy = Math.sin(moduleAngles[i]) * moduleSpeeds[i];
+      double desiredVx  = Math.cos(desiredAngles[i]) * desiredSpeeds[i];
+      double desiredVy  = Math.sin(desiredAngles[i]) * desiredSpeeds[i];
+      if (Math.abs(moduleSpeeds[i]) < EPSILON)
+      {
+        // A stopped module steers in place, the rest of the robot waits for it if it can not get there this loop.
+        if (Math.abs(desiredSpeeds[i]) < EPSILON)
+        {
+          overrideAngles[i] = moduleAngles[i];
+          continue;
+        }
+        double necessaryRotation = SwerveGeometry.wrapRadians(desiredAngles[i] - moduleAngles[i]);
+        if (Math.abs(necessaryRotation) > Math.PI / 2)
+        {
+          necessaryRotation = SwerveGeometry.wrapRadians(necessaryRotation + Math.PI);
+        }
+        if (Math.abs(necessaryRotation) <= maxThetaStep)
+        {
+          overrideAngles[i] = desiredAngles[i];
+        } else
+        {
+          overrideAngles[i] = SwerveGeometry.wrapRadians(
+              moduleAngles[i] + Math.signum(necessaryRotation) * maxThetaStep);
+          minS = 0;
+        }
+        continue;
+      }
+      if (minS == 0)
+      {
+        continue;
+      }
+      double s = findSteeringMaxS(previousVx, previousVy, travelHeading(i), desiredVx, desiredVy,
+                                  Math.atan2(desiredVy, desiredVx), maxThetaStep);
+      minS = Math.min(minS, s);
+    }
+
+    // Limit the drive acceleration of each module.
+    double maxVelocityStep = dtSeconds * maxDriveAcceleration;
+    for (int i = 0; i < moduleCount; i++)
+    {
+      if (minS == 0)
+      {
+        break;
+      }
+      double previousVx = Math.cos(moduleAngles[i]) * moduleSpeeds[i];
+      double previousVy = Math.sin(moduleAngles[i]) * moduleSpeeds[i];
+      double desiredVx  = Math.cos(desiredAngles[i]) * desiredSpeeds[i];
+      double desiredVy  = Math.sin(desiredAngles[i]) * desiredSpeeds[i];
+      double targetVx   = minS == 1.0 ? desiredVx : (desiredVx - previousVx) * minS + previousVx;
+      double targetVy   = minS == 1.0 ? desiredVy : (desiredVy - previousVy) * minS + previousVy;
+      double s = minS * findDriveMaxS(previousVx, previousVy, Math.hypot(previousVx, previousVy),
+                                      targetVx, targetVy, Math.hypot(targetVx, targetVy), maxVelocityStep);
+      minS = Math.min(minS, s);
+    }
+
+    chassisSpeeds[0] += minS * dx;
+    chassisSpeeds[1] += minS * dy;
+    chassisSpeeds[2] += minS * dtheta;
+    kinematics.resetHeadings(moduleAngles);
+    kinematics.toModuleStates(chassisSpeeds[0], chassisSpeeds[1], chassisSpeeds[2], 0, 0,
+                              desiredSpeeds, desiredAngles);
+    for (int i = 0; i < moduleCount; i++)
+    {
+      if (!Double.isNaN(overrideAngles[i]))
+      {
+        if (Math.abs(SwerveGeometry.wrapRadians(overrideAngles[i] - desiredAngles[i])) > Math.PI / 2)
+        {
+          desiredSpeeds[i] = -desiredSpeeds[i];
+        }
+        desiredAngles[i] = overrideAngles[i];
+      }
+      // Steer to whichever of the heading or its complement is closer to the previous heading.
+      if (Math.abs(SwerveGeometry.wrapRadians(desiredAngles[i] - moduleAngles[i])) > Math.PI / 2)
+      {
+        desiredAngles[i] = SwerveGeometry.wrapRadians(desiredAngles[i] + Math.PI);
+        desiredSpeeds[i] = -desiredSpeeds[i];
+      }
+      // Only the change in velocity along the new heading is driven by the wheel, the rest is done by steering.
+      moduleAccelerations[i] = dtSeconds > 0
+                               ? (desiredSpeeds[i] - moduleSpeeds[i] * Math.cos(desiredAngles[i] - moduleAngles[i]))
+                                 / dtSeconds
+                               : 0;
+      moduleSpeeds[i] = desiredSpeeds[i];
+      moduleAngles[i] = desiredAngles[i];
+    }
+  }
+
+  /**
+   * Check whether chassis speeds are all zero.
+   *
+   * @param speeds Chassis speeds [vx, vy, omega].
+   * @return True if every component is within {@link SwerveSetpointGenerator#EPSILON} of zero.
+   */
+  private static boolean isZero(double[] speeds)
+  {
+    return Math.abs(speeds[0]) < EPSILON && Math.abs(speeds[1]) < EPSILON && Math.abs(speeds[2]) < EPSILON;
+  }
+
+  /**
+   * Get the direction a module of the previous setpoint travels in, its heading flipped if it drives backwards.
+   *
+   * @param module Module index.
+   * @return Direction of travel in radians.
+   */
+  private double travelHeading(int module)
+  {
+    return moduleSpeeds[module] < 0 ? SwerveGeometry.wrapRadians(moduleAngles[module] + Math.PI) : moduleAngles[module];
+  }
+
+  /**
+   * Unwrap an angle so it is within PI of a reference angle.
+   *
+   * @param reference Reference angle in radians.
+   * @param angle     Angle in radians.
+   * @return Equivalent angle within PI of the reference.
+   */
+  private static double unwrapAngle(double reference, double angle)
+  {
+    return reference + SwerveGeometry.wrapRadians(angle - reference);
+  }
+
+  /**
+   * Find the fraction of the way from the previous to the desired module velocity that keeps the heading change under
+   * the maximum steering step.
+   *
+   * @param x0           Previous module x velocity.
+   * @param y0           Previous module y velocity.
+   * @param f0           Previous module heading in radians.
+   * @param x1           Desired module x velocity.
+   * @param y1           Desired module y velocity.
+   * @param f1           Desired module heading in radians.
+   * @param maxDeviation Maximum heading change in radians.
+   * @return Fraction between 0 and 1.
+   */
+  private double findSteeringMaxS(double x0, double y0, double f0, double x1, double y1, double f1,
+                                  double maxDeviation)
+  {
+    f1 = unwrapAngle(f0, f1);
+    double diff = f1 - f0;
+    if (Math.abs(diff) <= maxDeviation)
+    {
+      return 1.0;
+    }
+    double offset = f0 + Math.signum(diff) * maxDeviation;
+    return findRoot(true, f0, offset, x0, y0, f0 - offset, x1, y1, f1 - offset, steerIterations);
+  }
+
+  /**
+   * Find the fraction of the way from the previous to the desired module velocity that keeps the speed change under
+   * the maximum velocity step.
+   *
+   * @param x0              Previous module x velocity.
+   * @param y0              Previous module y velocity.
+   * @param f0              Previous module speed.
+   * @param x1              Target module x velocity.
+   * @param y1              Target module y velocity.
+   * @param f1              Target module speed.
+   * @param maxVelocityStep Maximum speed change.
+   * @return Fraction between 0 and 1.
+   */
+  private double findDriveMaxS(double x0, double y0, double f0, double x1, double y1, double f1,
+                               double maxVelocityStep)
+  {
+    double diff = f1 - f0;
+    if (Math.abs(diff) <= maxVelocityStep)
+    {
+      return 1.0;
+    }
+    double offset = f0 + Math.signum(diff) * maxVelocityStep;
+    return findRoot(false, 0, offset, x0, y0, f0 - offset, x1, y1, f1 - offset, driveIterations);
+  }
+
+  /**
+   * Find where the steering or drive limit function crosses zero along the line between two module velocities using
+   * regula falsi. Iterative form of the recursive search used by Team 254.
+   *
+   * @param steering   True for the steering function, false for the drive function.
+   * @param reference  Previous heading in radians used to unwrap the steering function.
+   * @param offset     Value subtracted from the function.
+   * @param x0         Start x velocity.
+   * @param y0         Start y velocity.
+   * @param f0         Function value at the start.
+   * @param x1         End x velocity.
+   * @param y1         End y velocity.
+   * @param f1         Function value at the end.
+   * @param iterations Iteration budget.
+   * @return Fraction between 0 and 1 of the way from the start to the end where the function crosses zero, the
+   * interpolated guess within the last bracket when the budget runs out.
+   */
+  private static double findRoot(boolean steering, double reference, double offset, double x0, double y0, double f0,
+                                 double x1, double y1, double f1, int iterations)
+  {
+    double base  = 0;
+    double scale = 1;
+    while (iterations-- >= 0 && Math.abs(f0 - f1) > EPSILON)
+    {
+      double sGuess = Math.max(0.0, Math.min(1.0, -f0 / (f1 - f0)));
+      double xGuess = (x1 - x0) * sGuess + x0;
+      double yGuess = (y1 - y0) * sGuess + y0;
+      double fGuess = steering
+                      ? unwrapAngle(reference, Math.atan2(yGuess, xGuess)) - offset
+                      : Math.hypot(xGuess, yGuess) - offset;
+      if (Math.signum(f0) == Math.signum(fGuess))
+      {
+        base += scale * sGuess;
+        scale *= 1.0 - sGuess;
+        x0 = xGuess;
+        y0 = yGuess;
+        f0 = fGuess;
+      } else
+      {
+        scale *= sGuess;
+        x1 = xGuess;
+        y1 = yGuess;
+        f1 = fGuess;
+      }
+    }
+    // Interpolate within the last bracket, or stay at its start which is known to be within the limit.
+    double sGuess = Math.abs(f0 - f1) > EPSILON ? Math.max(0.0, Math.min(1.0, -f0 / (f1 - f0))) : 0.0;
+    return base + scale * sGuess;
+  }
+
+  /**
+   * Get the setpoint module speeds.
+   *
+   * @return Module speeds in meters per second, owned by the generator.
+   */
+  public double[] getModuleSpeeds()
+  {
+    return moduleSpeeds;
+  }
+
+  /**
+   * Get the setpoint module headings.
+   *
+   * @return Module headings in radians, owned by the generator.
+   */
+  public double[] getModuleAngles()
+  {
+    return moduleAngles;
+  }
+
+  /**
+   * Get the module drive accelerations needed to reach the setpoint from the previous one, for force feedforward.
+   *
+   * @return Module accelerations in meters per second squared along each module heading, owned by the generator.
+   */
+  public double[] getModuleAccelerations()
+  {
+    return moduleAccelerations;
+  }
+
+  /**
+   * Get the setpoint chassis speeds.
+   *
+   * @return Robot relative [vx, vy, omega], owned by the generator.
+   */
+  public double[] getChassisSpeeds()
+  {
+    return chassisSpeeds;
+  }
+}
@@ -0,0 +1,141 @@
+package swervelib.math;
+
+import edu.wpi.first.math.geometry.Rotation2d;
+import java.util.List;
+import swervelib.parser.SwerveDriveConfiguration;
+
+/**
+ * Lookup table of the maximum acceleration in each robot relative direction before the robot tips, as given by
+ * {@link SwerveMath#calcMaxAccel(Rotation2d, List, double, SwerveDriveConfiguration)}. The geometry is sampled once on
+ * construction and linearly interpolated between samples afterwards.
+ */
+public class TippingLimitTable
+{
+
+  /**
+   * Default number of directions sampled over a full rotation.
+   */
+  public static int DEFAULT_RESOLUTION = 180;
+  /**
+   * Maximum acceleration in meters per second squared for each sampled direction, starting at -PI. The last entry
+   * repeats the first to wrap around.
+   */
+  private final double[]                 limits;
+  /**
+   * Angle in radians between samples.
+   */
+  private final double                   step;
+  /**
+   * Snapshot of the matter the table was built from, [x, y, z, mass] per object.
+   */
+  private final double[]                 matterSnapshot;
+  /**
+   * Robot mass the table was built from in kg.
+   */
+  private final double                   robotMass;
+  /**
+   * Swerve drive configuration the table was built from.
+   */
+  private final SwerveDriveConfiguration config;
+
+  /**
+   * Build the table.
+   *
+   * @param matter     Matter that the robot is composed of in kg. (Includes chassis)
+   * @param robotMass  The weight of the robot in kg. (Including manipulators, etc).
+   * @param config     The swerve drive configuration.
+   * @param resolution Number of directions to sample over a full rotation.
+   */
+  public TippingLimitTable(List<Matter> matter, double robotMass, SwerveDriveConfiguration config, int resolution)
+  {
+    if (resolution < 4)
+    {
+      throw new IllegalArgumentException("Tipping limit table resolution must be at least 4");
+    }
+    this.robotMass = robotMass;
+    this.config = config;
+    matterSnapshot = snapshot(matter);
+    step = 2 * Math.PI / resolution;
+    limits = new double[resolution + 1];
+    for (int i = 0; i < resolution; i++)
+    {
+      limits[i] = SwerveMath.calcMaxAccel(new Rotation2d(-Math.PI + i * step), matter, robotMass, config);
+    }
+    limits[resolution] = limits[0];
+  }
+
+  /**
+   * Build the table with the {@link TippingLimitTable#DEFAULT_RESOLUTION}.
+   *
+   * @param matter    Matter that the robot is composed of in kg. (Includes chassis)
+   * @param robotMass The weight of the robot in kg. (Including manipulators, etc).
+   * @param config    The swerve drive configuration.
+   */
+  public TippingLimitTable(List<Matter> matter, double robotMass, SwerveDriveConfiguration config)
+  {
+    this(matter, robotMass, config, DEFAULT_RESOLUTION);
+  }
+
+  /**
+   * Copy the position and mass of each object so changes to the {@link Matter} can be detected.
+   *
+   * @param matter Matter to copy.
+   * @return [x, y, z, mass] per object.
+   */
+  private static double[] snapshot(List<Matter> matter)
+  {
+    double[] values = new double[matter.size() * 4];
+    for (int i = 0; i < matter.size(); i++)
+    {
+      Matter object = matter.get(i);
+      values[i * 4] = object.position.getX();
+      values[i * 4 + 1] = object.position.getY();
+      values[i * 4 + 2] = object.position.getZ();
+      values[i * 4 + 3] = object.mass;
+    }
+    return values;
+  }
+
+  /**
+   * Check whether the table was built from the given inputs, without allocating.
+   *
+   * @param matter    Matter that the robot is composed of in kg. (Includes chassis)
+   * @param robotMass The weight of the robot in kg. (Including manipulators, etc).
+   * @param config    The swerve drive configuration.
+   * @return True if the table can be reused for the inputs.
+   */
+  public boolean matches(List<Matter> matter, double robotMass, SwerveDriveConfiguration config)
+  {
+    if (this.config != config || this.robotMass != robotMass || matterSnapshot.length != matter.size() * 4)
+    {
+      return false;
+    }
+    for (int i = 0; i < matter.size(); i++)
+    {
+      Matter object = matter.get(i);
+      if (matterSnapshot[i * 4] != object.position.getX() ||
+          matterSnapshot[i * 4 + 1] != object.position.getY() ||
+          matterSnapshot[i * 4 + 2] != object.position.getZ() ||
+          matterSnapshot[i * 4 + 3] != object.mass)
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Get the maximum acceleration allowed in a direction without tipping the robot.
+   *
+   * @param angleRadians Robot relative direction in radians.
+   * @return Maximum acceleration in meters per second squared.
+   */
+  public double getMaxAcceleration(double angleRadians)
+  {
+    double position = (angleRadians + Math.PI) / step;
+    position -= Math.floor(position / (limits.length - 1)) * (limits.length - 1);
+    int index = Math.min((int) position, limits.length - 2);
+    double fraction = position - index;
+    return limits[index] + (limits[index + 1] - limits[index]) * fraction;
+  }
+}
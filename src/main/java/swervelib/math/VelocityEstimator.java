@@ -0,0 +1,144 @@
+package swervelib.math;
+
+/**
+ * Estimates velocity by differentiating timestamped position samples and smoothing the result with a single pole
+ * low-pass filter which accounts for the time between samples. Used to get wheel velocities with less lag than the
+ * filtered velocity reported by some motor controllers.
+ */
+public class VelocityEstimator
+{
+
+  /**
+   * Longest time in seconds a repeated position is treated as "no new frame" instead of "not moving".
+   */
+  private static final double  MAX_HOLD_SECONDS             = 0.05;
+  /**
+   * Time constant of the low-pass filter in seconds, 0 disables filtering.
+   */
+  private       double  timeConstantSeconds;
+  /**
+   * Last position sample.
+   */
+  private       double  lastPosition          = 0;
+  /**
+   * Timestamp of the last position sample in seconds.
+   */
+  private       double  lastTimestampSeconds  = 0;
+  /**
+   * Whether a position sample has been received.
+   */
+  private       boolean initialized           = false;
+  /**
+   * Estimated velocity in position units per second.
+   */
+  private       double  velocity              = 0;
+  /**
+   * Smoothed squared error between the estimate and the reported velocity.
+   */
+  private       double  meanSquaredError      = 0;
+  /**
+   * Smoothing factor for the comparison error.
+   */
+  private final double  errorSmoothing        = 0.02;
+
+  /**
+   * Create the velocity estimator.
+   *
+   * @param timeConstantSeconds Time constant of the low-pass filter in seconds, 0 disables filtering.
+   */
+  public VelocityEstimator(double timeConstantSeconds)
+  {
+    this.timeConstantSeconds = Math.max(timeConstantSeconds, 0);
+  }
+
+  /**
+   * Set the time constant of the low-pass filter.
+   *
+   * @param timeConstantSeconds Time constant of the low-pass filter in seconds, 0 disables filtering.
+   */
+  public void setTimeConstant(double timeConstantSeconds)
+  {
+    this.timeConstantSeconds = Math.max(timeConstantSeconds, 0);
+  }
+
+  /**
+   * Add a position sample to the estimator. Samples with a timestamp that is not newer than the last sample are ignored,
+   * as are repeated positions shortly after the last sample since they are likely to be the same CAN frame.
+   *
+   * @param position         Position in any unit.
+   * @param timestampSeconds Timestamp the position was measured at in seconds.
+   */
+  public void addSample(double position, double timestampSeconds)
+  {
+    if (!initialized)
+    {
+      lastPosition = position;
+      lastTimestampSeconds = timestampSeconds;
+      initialized = true;
+      return;
+    }
+
+    double dt = timestampSeconds - lastTimestampSeconds;
+    if (dt <= 0 || (position == lastPosition && dt < MAX_HOLD_SECONDS))
+    {
+      return;
+    }
+
+    double rawVelocity = (position - lastPosition) / dt;
+    double alpha       = timeConstantSeconds == 0 ? 1 : dt / (timeConstantSeconds + dt);
+    velocity += alpha * (rawVelocity - velocity);
+
+    lastPosition = position;
+    lastTimestampSeconds = timestampSeconds;
+  }
+
+  /**
+   * Forget the last position sample, so a reset of the position is not differentiated into a velocity spike. The next
+   * sample starts the estimator again, the velocity estimate is kept until then.
+   */
+  public void forgetPosition()
+  {
+    initialized = false;
+  }
+
+  /**
+   * Compare the estimate against the velocity reported by the device and update the error metric.
+   *
+   * @param reportedVelocity Velocity reported by the device in position units per second.
+   */
+  public void compare(double reportedVelocity)
+  {
+    double error = velocity - reportedVelocity;
+    meanSquaredError += errorSmoothing * (error * error - meanSquaredError);
+  }
+
+  /**
+   * Get the estimated velocity.
+   *
+   * @return Velocity in position units per second.
+   */
+  public double getVelocity()
+  {
+    return velocity;
+  }
+
+  /**
+   * Get the smoothed root mean squared error between the estimate and the reported velocity.
+   *
+   * @return RMS error in position units per second.
+   */
+  public double getErrorRMS()
+  {
+    return Math.sqrt(meanSquaredError);
+  }
+
+  /**
+   * Reset the estimator, the next sample will be used as the starting position.
+   */
+  public void reset()
+  {
+    initialized = false;
+    velocity = 0;
+    meanSquaredError = 0;
+  }
+}
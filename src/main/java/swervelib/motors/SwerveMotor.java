@@ -1,7 +1,9 @@
 package swervelib.motors;
 
 import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.wpilibj.Timer;
 import swervelib.encoders.SwerveAbsoluteEncoder;
+import swervelib.math.SensorSample;
 import swervelib.parser.PIDFConfig;
 
 /**
@@ -20,13 +22,18 @@ public abstract class SwerveMotor implements AutoCloseable
   /**
    * Sim motor to use, defaulted in {@link SwerveMotor#getSimMotor()}, but can be overridden here. <br/> NOTE: This will
    * not change the simulation motor type! It is intended for use only if you are utilizing Feedforwards from
-   * PathPlanner.
+   * PathPlanner. For drive motors use {@link swervelib.SwerveModule#setDriveMotorModel(DCMotor)} instead, which also
+   * updates the force feedforward captured when the module is created.
    */
   public       DCMotor simMotor;
   /**
    * Whether the swerve motor is a drive motor.
    */
   protected    boolean isDriveMotor;
+  /**
+   * Last position sample of the integrated encoder, reused between reads.
+   */
+  protected final SensorSample positionSample = new SensorSample();
 
   /**
    * Configure the factory defaults.
@@ -151,6 +158,32 @@ public abstract class SwerveMotor implements AutoCloseable
    */
   public abstract double getPosition();
 
+  /**
+   * Get the position of the integrated encoder with the time it was measured at. Motor controllers which do not report
+   * timestamps are treated as having no latency.
+   *
+   * @return {@link SensorSample} of the position in meters or degrees.
+   */
+  public SensorSample getPositionSample()
+  {
+    return positionSample.update(getPosition(), Timer.getFPGATimestamp(), 0);
+  }
+
+  /**
+   * Get the position of the integrated encoder extrapolated by the velocity over the latency of the reading.
+   *
+   * @return Latency compensated position in meters or degrees.
+   */
+  public double getLatencyCompensatedPosition()
+  {
+    SensorSample sample = getPositionSample();
+    if (sample.latencySeconds == 0)
+    {
+      return sample.value;
+    }
+    return sample.value + getVelocity() * sample.latencySeconds;
+  }
+
   /**
    * Set the integrated encoder position.
    *
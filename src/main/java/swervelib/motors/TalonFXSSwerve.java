@@ -4,6 +4,8 @@ import static edu.wpi.first.units.Units.Degrees;
 import static edu.wpi.first.units.Units.Rotations;
 import static edu.wpi.first.units.Units.Volts;
 
+import com.ctre.phoenix6.BaseStatusSignal;
+import com.ctre.phoenix6.StatusSignal;
 import com.ctre.phoenix6.configs.TalonFXSConfiguration;
 import com.ctre.phoenix6.configs.TalonFXSConfigurator;
 import com.ctre.phoenix6.controls.MotionMagicVoltage;
@@ -13,7 +15,11 @@ import com.ctre.phoenix6.signals.FeedbackSensorSourceValue;
 import com.ctre.phoenix6.signals.InvertedValue;
 import com.ctre.phoenix6.signals.NeutralModeValue;
 import edu.wpi.first.math.system.plant.DCMotor;
+import edu.wpi.first.units.measure.Angle;
+import edu.wpi.first.units.measure.AngularVelocity;
+import edu.wpi.first.wpilibj.Timer;
 import swervelib.encoders.SwerveAbsoluteEncoder;
+import swervelib.math.SensorSample;
 import swervelib.parser.PIDFConfig;
 import swervelib.telemetry.SwerveDriveTelemetry;
 
@@ -367,6 +373,32 @@ public class TalonFXSSwerve extends SwerveMotor
     return motor.getPosition().getValue().magnitude();
   }
 
+  /**
+   * Get the position of the integrated encoder with the timestamp reported by the {@link TalonFXS}.
+   *
+   * @return {@link SensorSample} of the position in Meters or Degrees.
+   */
+  @Override
+  public SensorSample getPositionSample()
+  {
+    StatusSignal<Angle> position = motor.getPosition();
+    double              latency  = position.getTimestamp().getLatency();
+    return positionSample.update(position.getValueAsDouble(), Timer.getFPGATimestamp() - latency, latency);
+  }
+
+  /**
+   * Get the position of the integrated encoder extrapolated by the velocity signal over the latency of the reading.
+   *
+   * @return Latency compensated position in Meters or Degrees.
+   */
+  @Override
+  public double getLatencyCompensatedPosition()
+  {
+    StatusSignal<Angle>           position = motor.getPosition();
+    StatusSignal<AngularVelocity> velocity = motor.getVelocity();
+    return BaseStatusSignal.getLatencyCompensatedValueAsDouble(position, velocity);
+  }
+
   /**
    * Set the integrated encoder position.
    *
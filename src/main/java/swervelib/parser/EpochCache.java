@@ -0,0 +1,58 @@
+package swervelib.parser;
+
+import java.util.function.Supplier;
+
+/**
+ * Cache for values derived from sensor readings which only change when the readings do. The value is recomputed the
+ * first time it is requested in a new epoch, and served from the cache for the rest of that epoch.
+ */
+public class EpochCache<T>
+{
+
+  /**
+   * Supplier for cached value.
+   */
+  private final Supplier<T> supplier;
+  /**
+   * Cached value.
+   */
+  private       T           value;
+  /**
+   * Epoch the cached value was computed in, -1 if it has not been computed.
+   */
+  private       long        epoch = -1;
+
+  /**
+   * Cache for values derived from sensor readings.
+   *
+   * @param supplier Supplier for the value.
+   */
+  public EpochCache(Supplier<T> supplier)
+  {
+    this.supplier = supplier;
+  }
+
+  /**
+   * Get the value for an epoch, computing it if it was not yet computed in that epoch.
+   *
+   * @param currentEpoch Current epoch.
+   * @return {@link T} computed in the current epoch.
+   */
+  public synchronized T getValue(long currentEpoch)
+  {
+    if (epoch != currentEpoch)
+    {
+      value = supplier.get();
+      epoch = currentEpoch;
+    }
+    return value;
+  }
+
+  /**
+   * Drop the cached value so it is recomputed on the next request.
+   */
+  public synchronized void invalidate()
+  {
+    epoch = -1;
+  }
+}
@@ -8,6 +8,7 @@ import org.ironmaple.simulation.drivesims.GyroSimulation;
 import swervelib.SwerveModule;
 import swervelib.imu.NavXSwerve;
 import swervelib.imu.Pigeon2Swerve;
+import swervelib.imu.RedundantIMUSwerve;
 import swervelib.imu.SwerveIMU;
 import swervelib.math.SwerveMath;
 
@@ -152,6 +153,7 @@ public class SwerveDriveConfiguration
    */
   public Supplier<GyroSimulation> getGyroSim()
   {
+    SwerveIMU imu = this.imu instanceof RedundantIMUSwerve ? ((RedundantIMUSwerve) this.imu).getPrimary() : this.imu;
     if (imu instanceof Pigeon2Swerve)
     {
       return COTS.ofPigeon2();
@@ -66,6 +66,10 @@ public class SwerveModuleConfiguration
    * Should do cosine compensation when not pointing correct direction;.
    */
   public boolean               useCosineCompensator;
+  /**
+   * CAN bus of the drive motor, used to group modules which share a bus. Empty is the rio bus.
+   */
+  public String                canbus = "";
 
   /**
    * Construct a configuration object for swerve modules.
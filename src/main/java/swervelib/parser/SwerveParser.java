@@ -9,6 +9,8 @@ import java.io.IOException;
 import java.util.HashMap;
 import swervelib.SwerveDrive;
 import swervelib.SwerveModule;
+import swervelib.imu.RedundantIMUSwerve;
+import swervelib.imu.SwerveIMU;
 import swervelib.math.SwerveMath;
 import swervelib.parser.json.ControllerPropertiesJson;
 import swervelib.parser.json.ModuleJson;
@@ -188,10 +190,15 @@ public class SwerveParser
               physicalPropertiesJson.createPhysicalProperties(),
               swerveDriveJson.modules[i]);
     }
+    SwerveIMU imu = swerveDriveJson.imu.createIMU();
+    if (swerveDriveJson.secondaryIMU != null)
+    {
+      imu = new RedundantIMUSwerve(imu, swerveDriveJson.secondaryIMU.createIMU());
+    }
     SwerveDriveConfiguration swerveDriveConfiguration =
         new SwerveDriveConfiguration(
             moduleConfigurations,
-            swerveDriveJson.imu.createIMU(),
+            imu,
             swerveDriveJson.invertedIMU,
             physicalPropertiesJson.createPhysicalProperties());
 
@@ -121,7 +121,7 @@ public class ModuleJson
       angleMotor.setAbsoluteEncoder(absEncoder);
     }
 
-    return new SwerveModuleConfiguration(
+    SwerveModuleConfiguration configuration = new SwerveModuleConfiguration(
         drive.createMotor(true),
         angleMotor,
         conversionFactors,
@@ -137,5 +137,7 @@ public class ModuleJson
         inverted.angle,
         name.replaceAll("\\.json", ""),
         useCosineCompensator);
+    configuration.canbus = drive.canbus == null ? "" : drive.canbus;
+    return configuration;
   }
 }
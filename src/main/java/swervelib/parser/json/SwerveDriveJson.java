@@ -10,6 +10,10 @@ public class SwerveDriveJson
    * Robot IMU used to determine heading of the robot.
    */
   public DeviceJson imu;
+  /**
+   * Optional secondary IMU, when given the heading is read from whichever IMU has the fresher sample.
+   */
+  public DeviceJson secondaryIMU;
   /**
    * Invert the IMU of the robot.
    */
@@ -0,0 +1,84 @@
+package frc.robot.subsystems.swervedrive;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.wpi.first.math.Matrix;
+import edu.wpi.first.math.VecBuilder;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.numbers.N1;
+import edu.wpi.first.math.numbers.N3;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the {@link VisionGate} recovery from odometry which vision disagrees with.
+ */
+class VisionGateTest
+{
+
+  /**
+   * Measurement standard deviations used by every case.
+   */
+  private static final Matrix<N3, N1> STD_DEVS = VecBuilder.fill(0.1, 0.1, 0.1);
+  /**
+   * Seconds between measurements.
+   */
+  private static final double         PERIOD   = 0.02;
+
+  /**
+   * Create a gate against odometry stuck at the origin.
+   *
+   * @return {@link VisionGate} with 0.1m and 0.1rad state standard deviations.
+   */
+  private static VisionGate gateAtOrigin()
+  {
+    return new VisionGate(timestamp -> Optional.of(Pose2d.kZero), 0.1, 0.1);
+  }
+
+  /**
+   * Vision which consistently disagrees with odometry is passed again after the recovery count.
+   */
+  @Test
+  void recoversFromConsistentRejections()
+  {
+    VisionGate gate   = gateAtOrigin();
+    Pose2d     offset = new Pose2d(2, 0, Rotation2d.kZero);
+    for (int i = 0; i < VisionGate.RECOVERY_COUNT; i++)
+    {
+      assertTrue(gate.gate(offset, i * PERIOD, STD_DEVS).isEmpty());
+    }
+    assertEquals(Optional.of(STD_DEVS), gate.gate(offset, VisionGate.RECOVERY_COUNT * PERIOD, STD_DEVS));
+    assertEquals(VisionGate.RECOVERY_COUNT, gate.getRejected());
+    assertEquals(1, gate.getRecovered());
+  }
+
+  /**
+   * Outliers which disagree with each other never recover.
+   */
+  @Test
+  void keepsRejectingInconsistentOutliers()
+  {
+    VisionGate gate = gateAtOrigin();
+    for (int i = 0; i < VisionGate.RECOVERY_COUNT * 4; i++)
+    {
+      Pose2d outlier = new Pose2d(i % 2 == 0 ? 2 : -2, 0, Rotation2d.kZero);
+      assertTrue(gate.gate(outlier, i * PERIOD, STD_DEVS).isEmpty());
+    }
+    assertEquals(0, gate.getRecovered());
+  }
+
+  /**
+   * The state variance grows with the time since the last passed measurement.
+   */
+  @Test
+  void widensWithTimeSincePassed()
+  {
+    VisionGate gate = gateAtOrigin();
+    Pose2d     near = new Pose2d(0.5, 0, Rotation2d.kZero);
+    assertTrue(gate.gate(Pose2d.kZero, 0, STD_DEVS).isPresent());
+    assertTrue(gate.gate(near, PERIOD, STD_DEVS).isEmpty());
+    assertTrue(gate.gate(near, 10, STD_DEVS).isPresent());
+  }
+}
@@ -0,0 +1,215 @@
+package swervelib.math;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import edu.wpi.first.math.MathUtil;
+import edu.wpi.first.math.geometry.Pose2d;
+import edu.wpi.first.math.geometry.Rotation2d;
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.geometry.Twist2d;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Property tests checking {@link SwerveGeometry} against the WPILib geometry classes it replaces over random inputs.
+ */
+class SwerveGeometryTest
+{
+
+  /**
+   * Number of random cases per property.
+   */
+  private static final int      CASES     = 10_000;
+  /**
+   * Allowed difference from the WPILib result.
+   */
+  private static final double   TOLERANCE = 1e-9;
+  /**
+   * Output buffer.
+   */
+  private final        double[] out       = new double[3];
+  /**
+   * Seeded source of the random cases, so failures are reproducible.
+   */
+  private              Random   random;
+
+  /**
+   * Reset the random source before each property.
+   */
+  @BeforeEach
+  void setUp()
+  {
+    random = new Random(2025);
+  }
+
+  /**
+   * Get a random value, sometimes exactly zero or tiny to cover the special cases.
+   *
+   * @param range Largest magnitude.
+   * @return Random value in [-range, range].
+   */
+  private double value(double range)
+  {
+    switch (random.nextInt(10))
+    {
+      case 0:
+        return 0;
+      case 1:
+        return (random.nextDouble() * 2 - 1) * 1e-8;
+      default:
+        return (random.nextDouble() * 2 - 1) * range;
+    }
+  }
+
+  /**
+   * {@link SwerveGeometry#norm} matches {@link Translation2d#getNorm()}.
+   */
+  @Test
+  void normMatchesTranslation()
+  {
+    for (int i = 0; i < CASES; i++)
+    {
+      double x = value(10);
+      double y = value(10);
+      assertEquals(new Translation2d(x, y).getNorm(), SwerveGeometry.norm(x, y), TOLERANCE);
+    }
+  }
+
+  /**
+   * {@link SwerveGeometry#wrapRadians} and {@link SwerveGeometry#wrapDegrees} match {@link Rotation2d}.
+   */
+  @Test
+  void wrapMatchesRotation()
+  {
+    for (int i = 0; i < CASES; i++)
+    {
+      double radians = value(20 * Math.PI);
+      double degrees = value(3600);
+      assertEquals(new Rotation2d(radians).getRadians(), SwerveGeometry.wrapRadians(radians), TOLERANCE);
+      assertEquals(Rotation2d.fromDegrees(degrees).getDegrees(), SwerveGeometry.wrapDegrees(degrees), 1e-7);
+    }
+  }
+
+  /**
+   * {@link SwerveGeometry#rotate} matches {@link Translation2d#rotateBy(Rotation2d)}, including in place.
+   */
+  @Test
+  void rotateMatchesTranslation()
+  {
+    for (int i = 0; i < CASES; i++)
+    {
+      double        x        = value(10);
+      double        y        = value(10);
+      double        radians  = value(10);
+      Translation2d expected = new Translation2d(x, y).rotateBy(new Rotation2d(radians));
+      out[0] = x;
+      out[1] = y;
+      SwerveGeometry.rotate(out[0], out[1], radians, out);
+      assertEquals(expected.getX(), out[0], TOLERANCE);
+      assertEquals(expected.getY(), out[1], TOLERANCE);
+    }
+  }
+
+  /**
+   * {@link SwerveGeometry#cube} matches cubing the polar magnitude of a {@link Translation2d}.
+   */
+  @Test
+  void cubeMatchesPolarTranslation()
+  {
+    for (int i = 0; i < CASES; i++)
+    {
+      double        x           = value(1.5);
+      double        y           = value(1.5);
+      Translation2d translation = new Translation2d(x, y);
+      Translation2d expected    = translation.getNorm() > SwerveGeometry.EPSILON
+                                  ? new Translation2d(Math.pow(translation.getNorm(), 3), translation.getAngle())
+                                  : translation;
+      SwerveGeometry.cube(x, y, out);
+      assertEquals(expected.getX(), out[0], TOLERANCE);
+      assertEquals(expected.getY(), out[1], TOLERANCE);
+    }
+  }
+
+  /**
+   * {@link SwerveGeometry#scale} matches scaling the polar magnitude of a {@link Translation2d}.
+   */
+  @Test
+  void scaleMatchesPolarTranslation()
+  {
+    for (int i = 0; i < CASES; i++)
+    {
+      double        x           = value(1.5);
+      double        y           = value(1.5);
+      double        scalar      = value(2);
+      Translation2d translation = new Translation2d(x, y);
+      Translation2d expected    = translation.getNorm() > SwerveGeometry.EPSILON
+                                  ? new Translation2d(translation.getNorm() * scalar, translation.getAngle())
+                                  : translation;
+      SwerveGeometry.scale(x, y, scalar, out);
+      assertEquals(expected.getX(), out[0], TOLERANCE);
+      assertEquals(expected.getY(), out[1], TOLERANCE);
+    }
+  }
+
+  /**
+   * {@link SwerveGeometry#deadband} matches {@link MathUtil#applyDeadband(double, double)} on each component.
+   */
+  @Test
+  void deadbandMatchesMathUtil()
+  {
+    for (int i = 0; i < CASES; i++)
+    {
+      double x        = value(1);
+      double y        = value(1);
+      double deadband = random.nextDouble() * 0.5;
+      SwerveGeometry.deadband(x, y, deadband, out);
+      assertEquals(MathUtil.applyDeadband(x, deadband), out[0], TOLERANCE);
+      assertEquals(MathUtil.applyDeadband(y, deadband), out[1], TOLERANCE);
+    }
+  }
+
+  /**
+   * {@link SwerveGeometry#log} matches {@link Pose2d#log(Pose2d)} from the origin.
+   */
+  @Test
+  void logMatchesPose()
+  {
+    for (int i = 0; i < CASES; i++)
+    {
+      double  x        = value(10);
+      double  y        = value(10);
+      double  theta    = SwerveGeometry.wrapRadians(value(Math.PI));
+      Twist2d expected = Pose2d.kZero.log(new Pose2d(x, y, new Rotation2d(theta)));
+      SwerveGeometry.log(x, y, theta, out);
+      assertEquals(expected.dx, out[0], TOLERANCE);
+      assertEquals(expected.dy, out[1], TOLERANCE);
+      assertEquals(expected.dtheta, out[2], TOLERANCE);
+    }
+  }
+
+  /**
+   * {@link SwerveGeometry#exp} matches {@link Pose2d#exp(Twist2d)} from the origin, and undoes
+   * {@link SwerveGeometry#log}.
+   */
+  @Test
+  void expMatchesPoseAndInvertsLog()
+  {
+    for (int i = 0; i < CASES; i++)
+    {
+      double dx       = value(10);
+      double dy       = value(10);
+      double dtheta   = value(Math.PI);
+      Pose2d expected = Pose2d.kZero.exp(new Twist2d(dx, dy, dtheta));
+      SwerveGeometry.exp(dx, dy, dtheta, out);
+      assertEquals(expected.getX(), out[0], TOLERANCE);
+      assertEquals(expected.getY(), out[1], TOLERANCE);
+      assertEquals(expected.getRotation().getRadians(), out[2], TOLERANCE);
+
+      SwerveGeometry.log(out[0], out[1], out[2], out);
+      assertEquals(dx, out[0], 1e-6);
+      assertEquals(dy, out[1], 1e-6);
+      assertEquals(dtheta, out[2], 1e-9);
+    }
+  }
+}
@@ -0,0 +1,188 @@
+package swervelib.math;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.wpi.first.math.geometry.Translation2d;
+import edu.wpi.first.math.kinematics.ChassisSpeeds;
+import edu.wpi.first.math.kinematics.SwerveDriveKinematics;
+import edu.wpi.first.math.kinematics.SwerveModuleState;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks {@link SwerveSetpointGenerator} keeps every step within the Team 254 steering velocity and drive acceleration
+ * limits, and converges to the chassis speeds WPILib desaturation gives.
+ */
+class SwerveSetpointGeneratorTest
+{
+
+  /**
+   * Module locations of a 0.6 m square drive.
+   */
+  private static final Translation2d[]       MODULES         = {new Translation2d(0.3, 0.3),
+                                                                new Translation2d(0.3, -0.3),
+                                                                new Translation2d(-0.3, 0.3),
+                                                                new Translation2d(-0.3, -0.3)};
+  /**
+   * Maximum module speed in meters per second.
+   */
+  private static final double                MAX_SPEED       = 4.5;
+  /**
+   * Maximum module drive acceleration in meters per second squared.
+   */
+  private static final double                MAX_ACCEL       = 8;
+  /**
+   * Maximum module steering velocity in radians per second.
+   */
+  private static final double                MAX_STEER       = 4 * Math.PI;
+  /**
+   * Loop period in seconds.
+   */
+  private static final double                DT              = 0.02;
+  /**
+   * Module speed in meters per second above which the steering limit is checked.
+   */
+  private static final double                MOVING          = 0.05;
+  /**
+   * WPILib kinematics of the same drive.
+   */
+  private final        SwerveDriveKinematics kinematics      = new SwerveDriveKinematics(MODULES);
+
+  /**
+   * Create a generator starting at rest with every module facing forward.
+   *
+   * @return {@link SwerveSetpointGenerator} at rest.
+   */
+  private static SwerveSetpointGenerator createGenerator()
+  {
+    SwerveSetpointGenerator generator = new SwerveSetpointGenerator(MODULES, MAX_SPEED, MAX_ACCEL, MAX_STEER);
+    generator.reset(new double[MODULES.length], new double[MODULES.length], 0, 0, 0);
+    return generator;
+  }
+
+  /**
+   * Get the heading change of a module, ignoring flips since a module may reverse its drive instead of steering.
+   *
+   * @param from Previous heading in radians.
+   * @param to   New heading in radians.
+   * @return Heading change in radians in [0, PI / 2].
+   */
+  private static double steeringChange(double from, double to)
+  {
+    double change = Math.abs(SwerveGeometry.wrapRadians(to - from));
+    return Math.min(change, Math.PI - change);
+  }
+
+  /**
+   * Every step of random setpoint changes stays within the drive acceleration limit with the default and the smallest
+   * iteration budget, and within the steering velocity limit with the default budget. Modules barely moving are left
+   * out of the steering check, their heading swings with the smallest change in velocity as with Team 254's generator.
+   */
+  @Test
+  void stepsRespectLimits()
+  {
+    for (boolean defaultBudget : new boolean[]{true, false})
+    {
+      Random                  random    = new Random(254);
+      SwerveSetpointGenerator generator = createGenerator();
+      if (!defaultBudget)
+      {
+        generator.setIterationBudget(1, 1);
+      }
+      double[] speeds = new double[MODULES.length];
+      double[] angles = new double[MODULES.length];
+      double   vx     = 0;
+      double   vy     = 0;
+      double   omega  = 0;
+      for (int step = 0; step < 5000; step++)
+      {
+        if (step % 25 == 0)
+        {
+          vx = (random.nextDouble() * 2 - 1) * MAX_SPEED;
+          vy = (random.nextDouble() * 2 - 1) * MAX_SPEED;
+          omega = random.nextInt(4) == 0 ? 0 : (random.nextDouble() * 2 - 1) * 8;
+          if (random.nextInt(5) == 0)
+          {
+            vx = vy = omega = 0;
+          }
+        }
+        System.arraycopy(generator.getModuleSpeeds(), 0, speeds, 0, speeds.length);
+        System.arraycopy(generator.getModuleAngles(), 0, angles, 0, angles.length);
+        generator.generate(vx, vy, omega, DT);
+        for (int i = 0; i < MODULES.length; i++)
+        {
+          double speedChange = Math.abs(Math.abs(generator.getModuleSpeeds()[i]) - Math.abs(speeds[i]));
+          assertTrue(speedChange <= MAX_ACCEL * DT * 1.05 + 1e-6,
+                     "Module " + i + " speed changed by " + speedChange + " at step " + step);
+          if (defaultBudget && Math.abs(speeds[i]) > MOVING && Math.abs(generator.getModuleSpeeds()[i]) > MOVING)
+          {
+            double steerChange = steeringChange(angles[i], generator.getModuleAngles()[i]);
+            assertTrue(steerChange <= MAX_STEER * DT * 1.05 + 1e-6,
+                       "Module " + i + " steered by " + steerChange + " at step " + step);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Holding a desired chassis speed converges to the WPILib desaturated speed, with module states matching WPILib
+   * kinematics.
+   */
+  @Test
+  void convergesToWpilibDesaturatedSpeeds()
+  {
+    Random random = new Random(1678);
+    for (int trial = 0; trial < 50; trial++)
+    {
+      SwerveSetpointGenerator generator = createGenerator();
+      ChassisSpeeds           desired   = new ChassisSpeeds((random.nextDouble() * 2 - 1) * 2 * MAX_SPEED,
+                                                            (random.nextDouble() * 2 - 1) * 2 * MAX_SPEED,
+                                                            (random.nextDouble() * 2 - 1) * 10);
+      for (int step = 0; step < 500; step++)
+      {
+        generator.generate(desired.vxMetersPerSecond, desired.vyMetersPerSecond, desired.omegaRadiansPerSecond, DT);
+      }
+
+      SwerveModuleState[] states = kinematics.toSwerveModuleStates(desired);
+      SwerveDriveKinematics.desaturateWheelSpeeds(states, MAX_SPEED);
+      ChassisSpeeds expected = kinematics.toChassisSpeeds(states);
+      double[]      actual   = generator.getChassisSpeeds();
+      assertEquals(expected.vxMetersPerSecond, actual[0], 1e-6);
+      assertEquals(expected.vyMetersPerSecond, actual[1], 1e-6);
+      assertEquals(expected.omegaRadiansPerSecond, actual[2], 1e-6);
+
+      for (int i = 0; i < MODULES.length; i++)
+      {
+        double speed = generator.getModuleSpeeds()[i];
+        double angle = generator.getModuleAngles()[i];
+        assertEquals(states[i].speedMetersPerSecond * states[i].angle.getCos(), speed * Math.cos(angle), 1e-6);
+        assertEquals(states[i].speedMetersPerSecond * states[i].angle.getSin(), speed * Math.sin(angle), 1e-6);
+      }
+    }
+  }
+
+  /**
+   * Accelerating straight ahead from rest reports the limited drive acceleration on every module, and none once the
+   * desired speed is held.
+   */
+  @Test
+  void reportsModuleAccelerations()
+  {
+    SwerveSetpointGenerator generator = createGenerator();
+    generator.generate(MAX_SPEED, 0, 0, DT);
+    for (double acceleration : generator.getModuleAccelerations())
+    {
+      assertEquals(MAX_ACCEL, acceleration, MAX_ACCEL * 0.05);
+    }
+    for (int step = 0; step < 100; step++)
+    {
+      generator.generate(MAX_SPEED, 0, 0, DT);
+    }
+    for (double acceleration : generator.getModuleAccelerations())
+    {
+      assertEquals(0, acceleration, 1e-6);
+    }
+  }
+}